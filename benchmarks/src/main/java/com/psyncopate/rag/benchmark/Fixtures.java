@@ -0,0 +1,205 @@
+package com.psyncopate.rag.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic, reproducible benchmark inputs: Word, Excel and PDF files shaped like the
+ * production-support documents the assistant ingests, and chunks for a vector store. Every
+ * generator is seeded, so the same size always produces the same content.
+ */
+public final class Fixtures {
+
+    private static final String[] VOCABULARY = ("""
+            alert incident server database connection timeout latency error queue consumer broker kafka
+            topic partition offset lag restart deploy rollback release pod node cluster memory heap cpu
+            disk volume certificate expired renewal dns gateway proxy load balancer health check endpoint
+            request response status retry backoff threshold escalate ticket runbook on-call engineer
+            customer impact severity priority root cause mitigation workaround monitoring dashboard metric
+            log trace span job batch schedule cron failed succeeded pending stuck replica primary failover
+            backup restore snapshot index query slow lock deadlock transaction commit config property
+            environment production staging credential token secret rotate permission access denied user
+            """).trim().split("\\s+");
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return {@code count} words drawn from a production-support vocabulary
+     */
+    public static String words(Random random, int count) {
+        var text = new StringBuilder(count * 8);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes a DOCX file of headed paragraphs followed by a table.
+     *
+     * @param directory  target directory
+     * @param paragraphs number of paragraphs of 40-80 words
+     * @param tableRows  number of rows of the 4-column table
+     * @return the file
+     */
+    public static Path docx(Path directory, int paragraphs, int tableRows) throws IOException {
+        var random = new Random(1);
+        Path file = directory.resolve("runbook-" + paragraphs + ".docx");
+        try (var document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < paragraphs; i++) {
+                if (i % 10 == 0) {
+                    document.createParagraph().createRun().setText("Section " + (i / 10 + 1) + ": " + words(random, 4));
+                }
+                document.createParagraph().createRun().setText(words(random, 40 + random.nextInt(41)) + ".");
+            }
+            XWPFTable table = document.createTable(tableRows + 1, 4);
+            for (int row = 0; row <= tableRows; row++) {
+                for (int column = 0; column < 4; column++) {
+                    table.getRow(row).getCell(column).setText(row == 0 ? "Column " + column : words(random, 3));
+                }
+            }
+            document.write(out);
+        }
+        return file;
+    }
+
+    /**
+     * Writes an XLSX file with a header row, e.g. an incident export.
+     *
+     * @param directory target directory
+     * @param rows      data rows
+     * @param columns   columns per row
+     * @return the file
+     */
+    public static Path xlsx(Path directory, int rows, int columns) throws IOException {
+        var random = new Random(2);
+        Path file = directory.resolve("incidents-" + rows + ".xlsx");
+        var workbook = new SXSSFWorkbook(100);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Incidents");
+            Row header = sheet.createRow(0);
+            for (int column = 0; column < columns; column++) {
+                header.createCell(column).setCellValue("Field " + column);
+            }
+            for (int row = 1; row <= rows; row++) {
+                Row data = sheet.createRow(row);
+                data.createCell(0).setCellValue(row);
+                for (int column = 1; column < columns; column++) {
+                    data.createCell(column).setCellValue(words(random, 2 + random.nextInt(6)));
+                }
+            }
+            workbook.write(out);
+        } finally {
+            workbook.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes a text PDF.
+     *
+     * @param directory    target directory
+     * @param pages        number of pages
+     * @param linesPerPage lines of about 12 words per page
+     * @return the file
+     */
+    public static Path pdf(Path directory, int pages, int linesPerPage) throws IOException {
+        var random = new Random(3);
+        Path file = directory.resolve("guide-" + pages + ".pdf");
+        var font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        try (var document = new PDDocument()) {
+            for (int page = 0; page < pages; page++) {
+                var pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (var content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(font, 9);
+                    content.setLeading(11);
+                    content.newLineAtOffset(40, 750);
+                    for (int line = 0; line < linesPerPage; line++) {
+                        content.showText(words(random, 12));
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+
+    /**
+     * Creates chunks as they would come out of ingestion. Every fifth chunk is a near-duplicate of
+     * the one before (a few words changed), as overlapping splits and re-exported documents produce.
+     *
+     * @param count         number of chunks
+     * @param wordsPerChunk words per chunk
+     * @return the chunks
+     */
+    public static List<Document> chunks(int count, int wordsPerChunk) {
+        var random = new Random(4);
+        var chunks = new ArrayList<Document>(count);
+        String previous = null;
+        for (int i = 0; i < count; i++) {
+            String text;
+            if (previous != null && i % 5 == 0) {
+                text = words(random, 3) + previous.substring(previous.indexOf(' ', 20));
+            } else {
+                text = words(random, wordsPerChunk);
+            }
+            chunks.add(new Document("chunk-" + i, text, Map.of("source", "fixture-" + (i / 50))));
+            previous = text;
+        }
+        return chunks;
+    }
+
+    /**
+     * @return {@code count} short questions over the fixture vocabulary
+     */
+    public static List<String> questions(int count) {
+        var random = new Random(5);
+        var questions = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            questions.add("How do I handle " + words(random, 6) + "?");
+        }
+        return questions;
+    }
+
+    /**
+     * Deletes a fixture directory and everything in it.
+     */
+    public static void delete(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
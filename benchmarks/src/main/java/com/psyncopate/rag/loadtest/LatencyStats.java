@@ -0,0 +1,55 @@
+package com.psyncopate.rag.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latency samples of one series (the client-side request time, or one server-side stage), in
+ * microseconds. Percentiles are exact, computed by nearest rank over all samples; a load test
+ * produces few enough of them that no histogram approximation is needed.
+ */
+final class LatencyStats {
+
+    private long[] samples = new long[1024];
+    private int count;
+
+    synchronized void record(long micros) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = micros;
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /**
+     * @return count, mean, p50, p95, p99 and max, latencies in milliseconds
+     */
+    synchronized Map<String, Number> summary() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        var summary = new LinkedHashMap<String, Number>();
+        summary.put("count", count);
+        summary.put("mean", count == 0 ? 0 : millis(Arrays.stream(sorted).sum() / count));
+        summary.put("p50", percentile(sorted, 50));
+        summary.put("p95", percentile(sorted, 95));
+        summary.put("p99", percentile(sorted, 99));
+        summary.put("max", count == 0 ? 0 : millis(sorted[count - 1]));
+        return summary;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return millis(sorted[Math.max(rank, 1) - 1]);
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / 100.0) / 10.0;
+    }
+}
@@ -0,0 +1,337 @@
+package com.psyncopate.rag.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.psyncopate.Application;
+import com.psyncopate.rag.benchmark.Fixtures;
+import com.psyncopate.rag.source.IngestionJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of {@code POST /api/rag/query}.
+ *
+ * <p>
+ * Starts an {@link OpenAiStub}, then the application with its OpenAI base URL pointed at the stub
+ * (Postgres comes from {@code compose.yaml} as in development, or from {@code --spring.datasource.*}),
+ * and drives the endpoint either with a fixed number of concurrent clients ({@code --concurrency}) or
+ * at a fixed arrival rate ({@code --rate}, requests per second, open loop). Requests ask for their
+ * stage timings, so besides throughput and client-side latency the report has p50/p95/p99 per
+ * server-side stage. Samples taken during {@code --warmup} are discarded. With {@code --target} an
+ * already running instance is driven instead and nothing is started.
+ * </p>
+ *
+ * <p>
+ * The answer and retrieval caches are disabled unless {@code --caches=true}, so every request goes
+ * through the whole pipeline. Arguments the harness does not know, such as
+ * {@code --rag.llm-bulkhead.max-in-flight=16}, are passed on to the application.
+ * </p>
+ *
+ * <p>
+ * Run from the project root (so the compose file and the documents are found):
+ * <pre>
+ * mvn -f benchmarks/pom.xml compile exec:java -Dexec.args="--concurrency=32 --duration=60s"
+ * </pre>
+ * </p>
+ */
+public final class LoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        var objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+        OpenAiStub stub = null;
+        ConfigurableApplicationContext application = null;
+        try {
+            String target = options.target();
+            if (target == null) {
+                stub = new OpenAiStub(0, options.stub());
+                application = startApplication(stub, options);
+                target = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+            }
+            Map<String, Object> report = new Run(options, target, objectMapper).execute();
+            if (stub != null) {
+                report.put("stub", Map.of("chatRequests", stub.chatRequests(), "embeddingRequests", stub.embeddingRequests()));
+            }
+            String json = objectMapper.writeValueAsString(report);
+            Files.writeString(options.output(), json);
+            System.out.println(json);
+            log.info("Report written to {}", options.output().toAbsolutePath());
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(OpenAiStub stub, Options options) {
+        var properties = new ArrayList<String>(List.of(
+                "server.port=0",
+                "spring.ai.openai.base-url=" + stub.baseUrl(),
+                "spring.ai.openai.api-key=stub",
+                "spring.shell.interactive.enabled=false",
+                "rag.watch.enabled=false",
+                "rag.answer-cache.enabled=" + options.caches(),
+                "rag.retrieval.cache-enabled=" + options.caches(),
+                "spring.vectorstore.pgvector.dimension=" + options.stub().dimensions(),
+                "rag.quantization.dimensions=" + options.stub().dimensions()));
+        log.info("Starting the application against the OpenAI stub");
+        ConfigurableApplicationContext application = new SpringApplicationBuilder(Application.class)
+                .properties(properties.toArray(String[]::new))
+                .run(options.applicationArgs());
+
+        // Documents are ingested in the background; measure against the complete index
+        IngestionJobService jobs = application.getBean(IngestionJobService.class);
+        jobs.current().ifPresent(job -> {
+            log.info("Waiting for ingestion job {} to finish", job.id());
+            try {
+                jobs.await(job.id(), Duration.ofHours(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return application;
+    }
+
+    /**
+     * One load test run against a running instance.
+     */
+    private static final class Run {
+
+        private final Options options;
+        private final URI endpoint;
+        private final ObjectMapper objectMapper;
+        private final HttpClient httpClient;
+        private final List<String> questions;
+        private final AtomicInteger nextQuestion = new AtomicInteger();
+        private final LatencyStats client = new LatencyStats();
+        private final Map<String, LatencyStats> stages = new ConcurrentHashMap<>();
+        private final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        private final AtomicLong failures = new AtomicLong();
+        private volatile long measureFromNanos;
+
+        Run(Options options, String target, ObjectMapper objectMapper) {
+            this.options = options;
+            this.endpoint = URI.create(target + "/api/rag/query");
+            this.objectMapper = objectMapper;
+            this.httpClient = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(Executors.newCachedThreadPool(daemonThreads("loadtest-http")))
+                    .build();
+            this.questions = Fixtures.questions(options.questions());
+        }
+
+        Map<String, Object> execute() throws InterruptedException {
+            long start = System.nanoTime();
+            measureFromNanos = start + options.warmup().toNanos();
+            long end = measureFromNanos + options.duration().toNanos();
+            log.info("Driving {} {} for {} after {} of warm-up", endpoint,
+                    options.rate() > 0 ? options.rate() + " requests/s" : options.concurrency() + " concurrent clients",
+                    options.duration(), options.warmup());
+
+            if (options.rate() > 0) {
+                openLoop(end);
+            } else {
+                closedLoop(end);
+            }
+
+            double seconds = options.duration().toNanos() / 1e9;
+            var report = new LinkedHashMap<String, Object>();
+            report.put("target", endpoint.toString());
+            report.put("mode", options.rate() > 0 ? "rate " + options.rate() + "/s" : "concurrency " + options.concurrency());
+            report.put("durationSeconds", seconds);
+            report.put("requests", client.count());
+            report.put("throughputPerSecond", Math.round(client.count() / seconds * 10) / 10.0);
+            var statusCounts = new TreeMap<Integer, Long>();
+            statuses.forEach((status, count) -> statusCounts.put(status, count.get()));
+            report.put("statuses", statusCounts);
+            report.put("transportFailures", failures.get());
+            report.put("latencyMs", client.summary());
+            var stageReport = new LinkedHashMap<String, Object>();
+            stages.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(entry -> stageReport.put(entry.getKey(), entry.getValue().summary()));
+            report.put("stagesMs", stageReport);
+            return report;
+        }
+
+        /**
+         * Each client sends its next request as soon as the previous one completed.
+         */
+        private void closedLoop(long end) throws InterruptedException {
+            ExecutorService clients = Executors.newFixedThreadPool(options.concurrency(), daemonThreads("loadtest-client"));
+            for (int i = 0; i < options.concurrency(); i++) {
+                clients.submit(() -> {
+                    while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                        send(System.nanoTime());
+                    }
+                });
+            }
+            clients.shutdown();
+            clients.awaitTermination(options.duration().plus(options.warmup()).toSeconds() + 300, TimeUnit.SECONDS);
+        }
+
+        /**
+         * Requests are issued on a fixed schedule whether or not earlier ones completed. Latency is measured
+         * from the scheduled send time, so a stalled server is not hidden by the client slowing down.
+         */
+        private void openLoop(long end) throws InterruptedException {
+            ExecutorService senders = Executors.newCachedThreadPool(daemonThreads("loadtest-sender"));
+            long intervalNanos = (long) (1e9 / options.rate());
+            long scheduled = System.nanoTime();
+            while (scheduled < end) {
+                long delay = scheduled - System.nanoTime();
+                if (delay > 0) {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                }
+                long intended = scheduled;
+                senders.submit(() -> send(intended));
+                scheduled += intervalNanos;
+            }
+            senders.shutdown();
+            senders.awaitTermination(300, TimeUnit.SECONDS);
+        }
+
+        private void send(long intendedNanos) {
+            String question = questions.get(Math.floorMod(nextQuestion.getAndIncrement(), questions.size()));
+            try {
+                byte[] body = objectMapper.writeValueAsBytes(Map.of("question", question, "timings", true));
+                var request = HttpRequest.newBuilder(endpoint)
+                        .timeout(Duration.ofSeconds(300))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                        .build();
+                HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                if (intendedNanos < measureFromNanos) {
+                    return;
+                }
+                client.record((System.nanoTime() - intendedNanos) / 1_000);
+                statuses.computeIfAbsent(response.statusCode(), status -> new AtomicLong()).incrementAndGet();
+                if (response.statusCode() == 200) {
+                    recordStages(objectMapper.readTree(response.body()).path("timings"));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                if (intendedNanos >= measureFromNanos) {
+                    failures.incrementAndGet();
+                }
+                log.debug("Request failed: {}", e.getMessage());
+            }
+        }
+
+        private void recordStages(JsonNode timings) {
+            for (Iterator<Map.Entry<String, JsonNode>> fields = timings.fields(); fields.hasNext(); ) {
+                Map.Entry<String, JsonNode> stage = fields.next();
+                stages.computeIfAbsent(stage.getKey(), name -> new LatencyStats()).record(Math.round(stage.getValue().asDouble() * 1_000));
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Harness settings, parsed from {@code --name=value} arguments.
+     *
+     * @param target          base URL of a running instance; {@code null} starts the stub and the application
+     * @param concurrency     concurrent clients in closed-loop mode
+     * @param rate            requests per second in open-loop mode; 0 selects closed-loop mode
+     * @param duration        measured duration
+     * @param warmup          duration before measuring starts
+     * @param questions       distinct questions cycled through
+     * @param caches          whether the answer and retrieval caches stay enabled
+     * @param output          JSON report file
+     * @param stub            OpenAI stub behaviour
+     * @param applicationArgs remaining arguments, passed to the application
+     */
+    record Options(String target, int concurrency, double rate, Duration duration, Duration warmup, int questions,
+                   boolean caches, Path output, OpenAiStub.Settings stub, String[] applicationArgs) {
+
+        private static final List<String> KNOWN = List.of("target", "concurrency", "rate", "duration", "warmup",
+                "questions", "caches", "output", "stub-chat-latency", "stub-tokens-per-second",
+                "stub-completion-tokens", "stub-embedding-latency", "stub-dimensions");
+
+        static Options parse(String[] args) {
+            var values = new LinkedHashMap<String, String>();
+            var applicationArgs = new ArrayList<String>();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                String name = arg.startsWith("--") && separator > 2 ? arg.substring(2, separator) : null;
+                if (name != null && KNOWN.contains(name)) {
+                    values.put(name, arg.substring(separator + 1));
+                } else {
+                    applicationArgs.add(arg);
+                }
+            }
+            return new Options(
+                    values.get("target"),
+                    Integer.parseInt(values.getOrDefault("concurrency", "16")),
+                    Double.parseDouble(values.getOrDefault("rate", "0")),
+                    duration(values.getOrDefault("duration", "60s")),
+                    duration(values.getOrDefault("warmup", "15s")),
+                    Integer.parseInt(values.getOrDefault("questions", "200")),
+                    Boolean.parseBoolean(values.getOrDefault("caches", "false")),
+                    Path.of(values.getOrDefault("output", "loadtest-result.json")),
+                    new OpenAiStub.Settings(
+                            duration(values.getOrDefault("stub-chat-latency", "400ms")),
+                            Double.parseDouble(values.getOrDefault("stub-tokens-per-second", "60")),
+                            Integer.parseInt(values.getOrDefault("stub-completion-tokens", "200")),
+                            duration(values.getOrDefault("stub-embedding-latency", "60ms")),
+                            Integer.parseInt(values.getOrDefault("stub-dimensions", "1536"))),
+                    applicationArgs.toArray(String[]::new));
+        }
+
+        /**
+         * Parses {@code 250ms}, {@code 30s} or {@code 2m}.
+         */
+        private static Duration duration(String value) {
+            if (value.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+            }
+            if (value.endsWith("m")) {
+                return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+            }
+            return Duration.ofSeconds(Long.parseLong(value.endsWith("s") ? value.substring(0, value.length() - 1) : value));
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.psyncopate.rag.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.psyncopate.rag.benchmark.FakeEmbeddingModel;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the OpenAI API, serving {@code /v1/chat/completions} (plain and streamed) and
+ * {@code /v1/embeddings} with fixed, configurable latencies so load tests are repeatable.
+ *
+ * <p>
+ * A chat completion takes {@code chatLatency} until the first token, then produces
+ * {@code completionTokens} tokens at {@code tokensPerSecond}; a non-streamed completion returns once
+ * the last token would have been produced. An embedding request takes {@code embeddingLatency},
+ * whatever the number of inputs, and returns deterministic vectors. Prompt token usage is estimated
+ * at four characters per token.
+ * </p>
+ */
+public class OpenAiStub implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenAiStub.class);
+
+    private static final String TOKEN = "lorem ";
+
+    static {
+        // Without TCP_NODELAY the JDK server holds small responses back for tens of milliseconds
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FakeEmbeddingModel embeddingModel;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong chatRequests = new AtomicLong();
+    private final AtomicLong embeddingRequests = new AtomicLong();
+
+    /**
+     * Starts the stub.
+     *
+     * @param port     port to listen on; 0 picks a free one
+     * @param settings simulated latencies and sizes
+     */
+    public OpenAiStub(int port, Settings settings) throws IOException {
+        this.settings = settings;
+        this.embeddingModel = new FakeEmbeddingModel(settings.dimensions());
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        // Simulated latency is spent sleeping, one thread per open request, like a real remote API
+        var counter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "openai-stub-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", exchange -> handle(exchange, this::chat));
+        server.createContext("/v1/embeddings", exchange -> handle(exchange, this::embeddings));
+        server.start();
+        log.info("OpenAI stub listening on {} ({})", baseUrl(), settings);
+    }
+
+    /**
+     * @return the URL to configure as {@code spring.ai.openai.base-url}
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return chat completion requests served so far
+     */
+    public long chatRequests() {
+        return chatRequests.get();
+    }
+
+    /**
+     * @return embedding requests served so far
+     */
+    public long embeddingRequests() {
+        return embeddingRequests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void chat(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        chatRequests.incrementAndGet();
+        int promptTokens = estimateTokens(request.path("messages").toString());
+        String model = request.path("model").asText("gpt-4");
+        Map<String, Object> usage = usage(promptTokens, settings.completionTokens());
+        sleep(settings.chatLatency());
+
+        if (!request.path("stream").asBoolean(false)) {
+            sleep(generationTime(settings.completionTokens()));
+            var body = new LinkedHashMap<String, Object>();
+            body.put("id", "chatcmpl-stub");
+            body.put("object", "chat.completion");
+            body.put("created", 0);
+            body.put("model", model);
+            body.put("choices", List.of(Map.of(
+                    "index", 0,
+                    "message", Map.of("role", "assistant", "content", TOKEN.repeat(settings.completionTokens()).trim()),
+                    "finish_reason", "stop")));
+            body.put("usage", usage);
+            respond(exchange, 200, "application/json", objectMapper.writeValueAsBytes(body));
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            Duration perToken = generationTime(1);
+            for (int i = 0; i < settings.completionTokens(); i++) {
+                if (i > 0) {
+                    sleep(perToken);
+                }
+                writeEvent(out, chunk(model, Map.of("content", TOKEN), null));
+            }
+            writeEvent(out, chunk(model, Map.of(), "stop"));
+            if (request.path("stream_options").path("include_usage").asBoolean(false)) {
+                var usageChunk = new LinkedHashMap<>(chunk(model, null, null));
+                usageChunk.put("choices", List.of());
+                usageChunk.put("usage", usage);
+                writeEvent(out, usageChunk);
+            }
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void embeddings(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        embeddingRequests.incrementAndGet();
+        var inputs = new ArrayList<String>();
+        JsonNode input = request.path("input");
+        if (input.isArray()) {
+            input.forEach(node -> inputs.add(node.asText()));
+        } else {
+            inputs.add(input.asText());
+        }
+        sleep(settings.embeddingLatency());
+
+        var data = new ArrayList<Map<String, Object>>(inputs.size());
+        int tokens = 0;
+        for (String text : inputs) {
+            data.add(Map.of("object", "embedding", "index", data.size(), "embedding", embeddingModel.embed(text)));
+            tokens += estimateTokens(text);
+        }
+        var body = new LinkedHashMap<String, Object>();
+        body.put("object", "list");
+        body.put("data", data);
+        body.put("model", request.path("model").asText("text-embedding-ada-002"));
+        body.put("usage", Map.of("prompt_tokens", tokens, "total_tokens", tokens));
+        respond(exchange, 200, "application/json", objectMapper.writeValueAsBytes(body));
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "text/plain", new byte[0]);
+                return;
+            }
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            handler.handle(exchange, request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("OpenAI stub failed to answer {}: {}", exchange.getRequestURI(), e.getMessage());
+        }
+    }
+
+    private Map<String, Object> chunk(String model, Map<String, Object> delta, String finishReason) {
+        var chunk = new LinkedHashMap<String, Object>();
+        chunk.put("id", "chatcmpl-stub");
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", 0);
+        chunk.put("model", model);
+        if (delta != null) {
+            var choice = new LinkedHashMap<String, Object>();
+            choice.put("index", 0);
+            choice.put("delta", delta);
+            choice.put("finish_reason", finishReason);
+            chunk.put("choices", List.of(choice));
+        }
+        return chunk;
+    }
+
+    private void writeEvent(OutputStream out, Object data) throws IOException {
+        out.write(("data: " + objectMapper.writeValueAsString(data) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private Duration generationTime(int tokens) {
+        return Duration.ofNanos((long) (tokens * 1_000_000_000.0 / settings.tokensPerSecond()));
+    }
+
+    private static Map<String, Object> usage(int promptTokens, int completionTokens) {
+        return Map.of("prompt_tokens", promptTokens, "completion_tokens", completionTokens,
+                "total_tokens", promptTokens + completionTokens);
+    }
+
+    private static int estimateTokens(String text) {
+        return Math.max(1, text.length() / 4);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private static void sleep(Duration duration) throws InterruptedException {
+        if (!duration.isZero()) {
+            Thread.sleep(duration.toMillis(), duration.toNanosPart() % 1_000_000);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Behaviour of the stub.
+     *
+     * @param chatLatency      time until the first token of a chat completion
+     * @param tokensPerSecond  generation rate after the first token
+     * @param completionTokens tokens per answer
+     * @param embeddingLatency time per embedding request
+     * @param dimensions       embedding dimensions; must match the pgvector column
+     */
+    public record Settings(Duration chatLatency, double tokensPerSecond, int completionTokens,
+                           Duration embeddingLatency, int dimensions) {
+    }
+}
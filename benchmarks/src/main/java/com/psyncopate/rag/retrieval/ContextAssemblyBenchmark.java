@@ -0,0 +1,81 @@
+package com.psyncopate.rag.retrieval;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.psyncopate.rag.benchmark.FakeEmbeddingModel;
+import com.psyncopate.rag.benchmark.Fixtures;
+import com.psyncopate.rag.metrics.RagMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the prompt context from retrieved documents: {@link ContextAssembler#assemble}
+ * (vector search over an in-memory store, near-duplicate removal, token packing) and
+ * {@link ContextAssembler#prompt} (template rendering). The store is a Spring AI
+ * {@link SimpleVectorStore} over {@code corpus} fixture chunks, embedded by a {@link FakeEmbeddingModel},
+ * so no database or API is involved. The retrieval cache is off, so every call searches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextAssemblyBenchmark {
+
+    @Param({"1000", "10000"})
+    public int corpus;
+
+    @Param({"12"})
+    public int candidates;
+
+    private ContextAssembler contextAssembler;
+    private List<String> questions;
+    private List<String> assembled;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createStore() {
+        var embeddingModel = new FakeEmbeddingModel(384);
+        var vectorStore = SimpleVectorStore.builder(embeddingModel).build();
+        vectorStore.add(Fixtures.chunks(corpus, 180));
+
+        var quantizedSearch = new QuantizedSearch(null, null, embeddingModel, new ObjectMapper(),
+                new QuantizationProperties(QuantizationMode.NONE, 4, 384, 200, false));
+        var hybridSearch = new HybridSearch(null, embeddingModel, quantizedSearch, new ObjectMapper());
+        var retrievalService = new RetrievalService(vectorStore, embeddingModel, hybridSearch, quantizedSearch,
+                new RetrievalProperties(RetrievalMode.VECTOR, 60, false, 0));
+        contextAssembler = new ContextAssembler(retrievalService, new ContextProperties(candidates, 3000, 0.8),
+                new RagMetrics(new SimpleMeterRegistry()), new ClassPathResource("prompts/prompt.st"));
+
+        questions = Fixtures.questions(64);
+        assembled = contextAssembler.assemble(questions.get(0), RetrievalMode.VECTOR).documents();
+    }
+
+    @Benchmark
+    public AssembledContext assemble() {
+        String question = questions.get(next++ & 63);
+        return contextAssembler.assemble(question, RetrievalMode.VECTOR);
+    }
+
+    @Benchmark
+    public Prompt prompt() {
+        return contextAssembler.prompt(questions.get(0), assembled);
+    }
+}
@@ -0,0 +1,65 @@
+package com.psyncopate.rag.source;
+
+import com.psyncopate.rag.benchmark.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the PDF splitter stage ({@link DocumentParsers#splitPdf}) on parsed PDF pages, as
+ * configured for {@link DocsLoader}. {@code scale} multiplies the size of the parsed input like in
+ * {@link DocumentParsingBenchmark}. Word documents are chunked while they are parsed (see
+ * {@link DocxStructureChunker}), so they are measured by {@link DocumentParsingBenchmark#parseDocx()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkingBenchmark {
+
+    @Param({"1", "10"})
+    public int scale;
+
+    private DocumentParsers parsers;
+    private List<Document> parsed;
+
+    @Setup(Level.Trial)
+    public void parseFixtures() throws Exception {
+        parsers = new DocumentParsers(new IngestionProperties(4, 2, 2, 16, 256, 8191, 0.1, 50, 800, 500, 800, 50, 4, 400));
+        Path directory = Files.createTempDirectory("rag-bench-split");
+        try {
+            parsed = parsers.parsePdf(Fixtures.pdf(directory, 10 * scale, 60));
+        } finally {
+            Fixtures.delete(directory);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeParsers() {
+        parsers.close();
+    }
+
+    @Benchmark
+    public List<Document> split() {
+        // The splitter copies the input documents, so the fixture can be reused across invocations
+        return parsers.splitPdf(parsed);
+    }
+}
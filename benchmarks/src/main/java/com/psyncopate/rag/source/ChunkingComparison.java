@@ -0,0 +1,248 @@
+package com.psyncopate.rag.source;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.psyncopate.rag.benchmark.Fixtures;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the prompt context needed per answer with DOCX chunks cut by the {@link DocxStructureChunker}
+ * and with the previous ingestion, which flattened all paragraphs and then all tables into one text
+ * and cut it with the default {@link TokenTextSplitter}.
+ *
+ * <p>
+ * The fixture is a runbook with one chapter per service: an overview, a numbered restart procedure, a
+ * configuration table and known issues. Each question has an answer made of known pieces of text — every
+ * step of a procedure with its headings, or one table row together with the table's header. For each
+ * question the comparison takes the chunks a perfect retriever would have to put into the prompt to
+ * cover all pieces (the chunk holding a piece, preferring the one nearest to the answer) and reports
+ * their average number and tokens per answer. Retrieval quality itself is left out: with real
+ * embeddings, smaller self-contained chunks also rank better, which this figure does not credit.
+ * </p>
+ *
+ * <p>
+ * Run after {@code mvn -f benchmarks/pom.xml package}:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.psyncopate.rag.source.ChunkingComparison --services=40 --chunk-tokens=500
+ * </pre>
+ * </p>
+ */
+public final class ChunkingComparison {
+
+    private static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    private static final String TABLE_HEADER = "Property Default Description";
+
+    private ChunkingComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = new LinkedHashMap<String, String>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith("--") && separator > 2) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        int services = Integer.parseInt(options.getOrDefault("services", "40"));
+        int chunkTokens = Integer.parseInt(options.getOrDefault("chunk-tokens", "500"));
+
+        Path directory = Files.createTempDirectory("rag-chunking");
+        try {
+            List<Answer> answers = new ArrayList<>();
+            Path file = runbook(directory, services, answers);
+
+            var results = new LinkedHashMap<String, Result>();
+            results.put("flattened + TokenTextSplitter(800)", measure(new TokenTextSplitter().apply(flattened(file)), answers));
+            results.put("structure-aware (" + chunkTokens + ")", measure(new DocxStructureChunker(chunkTokens).chunk(file), answers));
+            if (chunkTokens != 800) {
+                results.put("structure-aware (800)", measure(new DocxStructureChunker(800).chunk(file), answers));
+            }
+
+            System.out.printf("%d answers (%d procedures, %d table rows) over %s%n%n", answers.size(), services,
+                    answers.size() - services, file.getFileName());
+            System.out.printf("%-36s %8s %12s %16s %16s%n", "chunking", "chunks", "avg tokens", "chunks/answer", "tokens/answer");
+            results.forEach((name, result) -> System.out.printf("%-36s %8d %12.0f %16.2f %16.0f%n", name,
+                    result.chunks(), result.averageChunkTokens(), result.chunksPerAnswer(), result.tokensPerAnswer()));
+        } finally {
+            Fixtures.delete(directory);
+        }
+    }
+
+    /**
+     * Writes the runbook and records the pieces of text each answer needs.
+     */
+    private static Path runbook(Path directory, int services, List<Answer> answers) throws IOException {
+        var random = new Random(6);
+        Path file = directory.resolve("runbook-structured-" + services + ".docx");
+        try (var document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+            var rowAnswers = new ArrayList<Answer>();
+            for (int service = 1; service <= services; service++) {
+                String chapter = "Service %03d".formatted(service);
+                heading(document, 1, chapter);
+                paragraph(document, Fixtures.words(random, 60 + random.nextInt(41)) + ".");
+
+                heading(document, 2, "Restart procedure");
+                paragraph(document, Fixtures.words(random, 30) + ".");
+                var procedure = new ArrayList<>(List.of(chapter, "Restart procedure"));
+                for (int step = 1; step <= 6; step++) {
+                    String ref = "(ref R%03d.%d)".formatted(service, step);
+                    paragraph(document, "Step " + step + ": " + Fixtures.words(random, 12 + random.nextInt(9)) + " " + ref + ".");
+                    procedure.add(ref);
+                }
+                answers.add(new Answer(procedure.get(2), procedure));
+
+                heading(document, 2, "Configuration");
+                paragraph(document, Fixtures.words(random, 40) + ".");
+                XWPFTable table = document.createTable(13, 3);
+                table.getRow(0).getCell(0).setText("Property");
+                table.getRow(0).getCell(1).setText("Default");
+                table.getRow(0).getCell(2).setText("Description");
+                for (int row = 1; row <= 12; row++) {
+                    String property = "svc%03d.prop%02d".formatted(service, row);
+                    String value = "%d%s".formatted(random.nextInt(10_000), Fixtures.words(random, 1));
+                    table.getRow(row).getCell(0).setText(property);
+                    table.getRow(row).getCell(1).setText(value);
+                    table.getRow(row).getCell(2).setText(Fixtures.words(random, 6 + random.nextInt(7)));
+                    String cells = property + " " + value;
+                    rowAnswers.add(new Answer(cells, List.of(cells, TABLE_HEADER)));
+                }
+
+                heading(document, 2, "Known issues");
+                for (int issue = 0; issue < 3; issue++) {
+                    paragraph(document, Fixtures.words(random, 50 + random.nextInt(41)) + ".");
+                }
+            }
+            answers.addAll(rowAnswers);
+            document.write(out);
+        }
+        return file;
+    }
+
+    private static void heading(XWPFDocument document, int level, String text) {
+        XWPFParagraph paragraph = document.createParagraph();
+        paragraph.setStyle("Heading" + level);
+        paragraph.createRun().setText(text);
+    }
+
+    private static void paragraph(XWPFDocument document, String text) {
+        document.createParagraph().createRun().setText(text);
+    }
+
+    /**
+     * The DOCX text as it was ingested before the structure-aware chunker: all paragraphs, then all tables.
+     */
+    private static List<Document> flattened(Path file) throws IOException {
+        try (InputStream is = Files.newInputStream(file); XWPFDocument document = new XWPFDocument(is)) {
+            var content = new StringBuilder("Document: ").append(file.getFileName()).append("\n");
+            for (var paragraph : document.getParagraphs()) {
+                var text = paragraph.getText();
+                if (text != null && !text.isBlank()) {
+                    content.append("\n").append(text.trim());
+                }
+            }
+            for (var table : document.getTables()) {
+                content.append("\n\nTable:\n");
+                for (var row : table.getRows()) {
+                    for (var cell : row.getTableCells()) {
+                        var text = cell.getText();
+                        if (text != null && !text.isBlank()) {
+                            content.append("| ").append(text.trim());
+                        }
+                    }
+                    content.append("\n");
+                }
+            }
+            return List.of(new Document(content.toString()));
+        }
+    }
+
+    private static Result measure(List<Document> chunks, List<Answer> answers) {
+        List<String> texts = chunks.stream().map(chunk -> normalize(chunk.getText())).toList();
+        int[] tokens = chunks.stream().mapToInt(chunk -> ENCODING.countTokens(chunk.getText())).toArray();
+
+        long chunksNeeded = 0;
+        long tokensNeeded = 0;
+        for (Answer answer : answers) {
+            int anchor = nearest(texts, normalize(answer.anchor()), 0);
+            Set<Integer> needed = new LinkedHashSet<>();
+            for (String piece : answer.pieces()) {
+                String normalized = normalize(piece);
+                int index = nearest(texts, normalized, anchor);
+                if (index >= 0) {
+                    needed.add(index);
+                } else {
+                    // Cut between two chunks: both are needed
+                    for (int i = 0; i + 1 < texts.size(); i++) {
+                        if ((texts.get(i) + " " + texts.get(i + 1)).contains(normalized)) {
+                            needed.add(i);
+                            needed.add(i + 1);
+                            break;
+                        }
+                    }
+                }
+            }
+            chunksNeeded += needed.size();
+            for (int index : needed) {
+                tokensNeeded += tokens[index];
+            }
+        }
+        long totalTokens = 0;
+        for (int count : tokens) {
+            totalTokens += count;
+        }
+        return new Result(chunks.size(), (double) totalTokens / chunks.size(),
+                (double) chunksNeeded / answers.size(), (double) tokensNeeded / answers.size());
+    }
+
+    /**
+     * @return the chunk containing the text that is closest to {@code anchor}, preferring earlier chunks, or -1
+     */
+    private static int nearest(List<String> texts, String text, int anchor) {
+        int best = -1;
+        for (int i = 0; i < texts.size(); i++) {
+            if (texts.get(i).contains(text)) {
+                int distance = i <= anchor ? 2 * (anchor - i) : 2 * (i - anchor) + 1;
+                int bestDistance = best < 0 ? Integer.MAX_VALUE : best <= anchor ? 2 * (anchor - best) : 2 * (best - anchor) + 1;
+                if (distance < bestDistance) {
+                    best = i;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Ignores table pipes and whitespace, which the two renderings place differently.
+     */
+    private static String normalize(String text) {
+        return text.replaceAll("[|\\s]+", " ").strip();
+    }
+
+    /**
+     * @param anchor a piece of the answer that locates it in the document
+     * @param pieces all pieces of text the answer needs
+     */
+    private record Answer(String anchor, List<String> pieces) {
+    }
+
+    private record Result(int chunks, double averageChunkTokens, double chunksPerAnswer, double tokensPerAnswer) {
+    }
+}
@@ -0,0 +1,76 @@
+package com.psyncopate.rag.source;
+
+import com.psyncopate.rag.benchmark.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.document.Document;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing cost of each format {@link DocsLoader} ingests, through its {@link DocumentParsers}, on
+ * synthetic files. {@code scale} multiplies the file sizes: 100 paragraphs and a 20-row table of Word,
+ * 1,000 rows of Excel and 10 pages of PDF per unit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentParsingBenchmark {
+
+    @Param({"1", "10"})
+    public int scale;
+
+    private Path directory;
+    private Path docx;
+    private Path xlsx;
+    private Path pdf;
+    private DocumentParsers parsers;
+
+    @Setup(Level.Trial)
+    public void createFixtures() throws Exception {
+        directory = Files.createTempDirectory("rag-bench-parse");
+        docx = Fixtures.docx(directory, 100 * scale, 20 * scale);
+        xlsx = Fixtures.xlsx(directory, 1_000 * scale, 8);
+        pdf = Fixtures.pdf(directory, 10 * scale, 60);
+        parsers = new DocumentParsers(new IngestionProperties(4, 2, 2, 16, 256, 8191, 0.1, 50, 800, 500, 800, 50, 4, 400));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFixtures() throws Exception {
+        parsers.close();
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public List<Document> parseDocx() throws Exception {
+        return parsers.parseDocx(docx);
+    }
+
+    @Benchmark
+    public void parseExcel(Blackhole blackhole) throws Exception {
+        parsers.parseExcel(xlsx, blackhole::consume);
+    }
+
+    @Benchmark
+    public List<Document> parsePdf() throws Exception {
+        return parsers.parsePdf(pdf);
+    }
+}
@@ -0,0 +1,18 @@
+package com.psyncopate.rag.batch;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the batch question API, bound from {@code rag.batch.*}.
+ *
+ * @param maxQuestions     largest accepted batch
+ * @param retrievalThreads number of vector searches run concurrently across all batches
+ * @param llmConcurrency   number of chat model calls in flight at once across all batches
+ */
+@ConfigurationProperties(prefix = "rag.batch")
+public record BatchProperties(
+        @DefaultValue("32") int maxQuestions,
+        @DefaultValue("8") int retrievalThreads,
+        @DefaultValue("4") int llmConcurrency) {
+}
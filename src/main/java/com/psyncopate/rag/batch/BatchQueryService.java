@@ -0,0 +1,204 @@
+package com.psyncopate.rag.batch;
+
+import com.psyncopate.rag.cache.SemanticAnswerCache;
+import com.psyncopate.rag.cache.SemanticAnswerCache.Lookup;
+import com.psyncopate.rag.dto.RagBatchItem;
+import com.psyncopate.rag.dto.RagRequest;
+import com.psyncopate.rag.dto.RagResponse;
+import com.psyncopate.rag.llm.LlmBulkhead;
+import com.psyncopate.rag.metrics.QueryTimings;
+import com.psyncopate.rag.metrics.RagMetrics;
+import com.psyncopate.rag.retrieval.AssembledContext;
+import com.psyncopate.rag.retrieval.ContextAssembler;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers a batch of questions with shared work and bounded parallelism.
+ *
+ * <p>
+ * All distinct questions are embedded in a single embedding-model call up front, and each
+ * question's vector is handed to its answer-cache lookup and its search, so neither calls the
+ * API again. Retrieval then runs concurrently on a pool of {@code retrievalThreads}, and each question
+ * moves on to the chat model as soon as its context is ready, on a separate pool that caps the
+ * number of model calls in flight at {@code llmConcurrency}; those calls also count against the shared
+ * {@link LlmBulkhead}, so a batch cannot starve interactive requests. Every question succeeds or fails on
+ * its own; the results come back in request order.
+ * </p>
+ */
+@Service
+@EnableConfigurationProperties(BatchProperties.class)
+public class BatchQueryService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchQueryService.class);
+
+    private final ChatClient chatClient;
+    private final ContextAssembler contextAssembler;
+    private final SemanticAnswerCache answerCache;
+    private final EmbeddingModel embeddingModel;
+    private final LlmBulkhead llmBulkhead;
+    private final RagMetrics metrics;
+    private final BatchProperties properties;
+    private final ExecutorService retrievalExecutor;
+    private final ExecutorService llmExecutor;
+
+    public BatchQueryService(ChatClient chatClient, ContextAssembler contextAssembler, SemanticAnswerCache answerCache,
+                             EmbeddingModel embeddingModel, LlmBulkhead llmBulkhead, RagMetrics metrics,
+                             BatchProperties properties) {
+        this.chatClient = chatClient;
+        this.contextAssembler = contextAssembler;
+        this.answerCache = answerCache;
+        this.embeddingModel = embeddingModel;
+        this.llmBulkhead = llmBulkhead;
+        this.metrics = metrics;
+        this.properties = properties;
+        this.retrievalExecutor = Executors.newFixedThreadPool(properties.retrievalThreads(), namedThreads("batch-retrieve"));
+        this.llmExecutor = Executors.newFixedThreadPool(properties.llmConcurrency(), namedThreads("batch-llm"));
+    }
+
+    /**
+     * @return the largest accepted batch
+     */
+    public int maxQuestions() {
+        return properties.maxQuestions();
+    }
+
+    /**
+     * Answers every question of the batch.
+     *
+     * @param requests the questions, in order
+     * @return one result per question, in the same order
+     */
+    public List<RagBatchItem> answerAll(List<RagRequest> requests) {
+        long start = System.nanoTime();
+        Map<String, float[]> embeddings = embedQuestions(requests);
+
+        var futures = new ArrayList<CompletableFuture<RagBatchItem>>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            RagRequest request = requests.get(i);
+            futures.add(CompletableFuture
+                    .supplyAsync(() -> retrieve(request, embeddings), retrievalExecutor)
+                    .thenApplyAsync(this::generate, llmExecutor)
+                    .handle((response, error) -> error == null
+                            ? RagBatchItem.success(index, response)
+                            : RagBatchItem.failure(index, describe(error))));
+        }
+
+        List<RagBatchItem> results = futures.stream().map(CompletableFuture::join).toList();
+        log.info("Answered batch of {} questions ({} failed) in {} ms", requests.size(),
+                results.stream().filter(result -> result.error() != null).count(),
+                (System.nanoTime() - start) / 1_000_000);
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retrievalExecutor.shutdownNow();
+        llmExecutor.shutdownNow();
+    }
+
+    /**
+     * Embeds the distinct questions in one call. A failure here is not fatal: each question is then
+     * embedded on its own by its lookup.
+     *
+     * @return the embedding of each distinct question; empty if the call failed
+     */
+    private Map<String, float[]> embedQuestions(List<RagRequest> requests) {
+        List<String> questions = requests.stream()
+                .map(request -> request == null ? null : request.question())
+                .filter(Objects::nonNull)
+                .filter(question -> !question.isBlank())
+                .distinct()
+                .toList();
+        var embeddings = new HashMap<String, float[]>();
+        if (questions.isEmpty()) {
+            return embeddings;
+        }
+        try {
+            List<float[]> vectors = embeddingModel.embed(questions);
+            for (int i = 0; i < questions.size(); i++) {
+                embeddings.put(questions.get(i), vectors.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Batch embedding of {} questions failed, embedding one by one: {}", questions.size(), e.getMessage());
+        }
+        return embeddings;
+    }
+
+    private Pending retrieve(RagRequest request, Map<String, float[]> embeddings) {
+        if (request == null || request.question() == null || request.question().isBlank()) {
+            throw new IllegalArgumentException("Question must not be empty");
+        }
+        QueryTimings timings = metrics.startQuery();
+        // null if the batch call failed: the lookup embeds the question itself
+        float[] embedding = embeddings.get(request.question());
+        Lookup lookup = timings.time("answer_cache",
+                () -> answerCache.lookup(request.question(), embedding, request.mode(), request.filter()));
+        if (lookup.hit() != null) {
+            return new Pending(request, lookup, null, timings);
+        }
+        // After a failed batch call the lookup embedded the question (normalized, which cosine search ignores)
+        float[] searchEmbedding = embedding != null ? embedding : lookup.embedding();
+        return new Pending(request, lookup,
+                contextAssembler.assemble(request.question(), searchEmbedding, request.mode(), request.filter(), timings),
+                timings);
+    }
+
+    private RagResponse generate(Pending pending) {
+        RagResponse response = pending.lookup().hit() != null ? pending.lookup().hit() : callModel(pending);
+        return pending.request().timings() ? response.withTimings(pending.timings().toMap()) : response;
+    }
+
+    private RagResponse callModel(Pending pending) {
+        String question = pending.request().question();
+        QueryTimings timings = pending.timings();
+        Prompt prompt = timings.time("prompt", () -> contextAssembler.prompt(question, pending.context().documents()));
+        ChatResponse chatResponse = timings.time("generate",
+                () -> llmBulkhead.call(() -> chatClient.prompt(prompt).call().chatResponse()));
+        metrics.recordUsage(chatResponse);
+        var response = new RagResponse(chatResponse.getResult().getOutput().getText(),
+                pending.context().documents(), pending.context().citations());
+        answerCache.put(pending.lookup(), response);
+        return response;
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return "Failed to process request: " + cause.getMessage();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A question whose context has been retrieved (or whose answer was cached), waiting for the model.
+     */
+    private record Pending(RagRequest request, Lookup lookup, AssembledContext context, QueryTimings timings) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.psyncopate.rag.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the semantic answer cache, bound from {@code rag.answer-cache.*}.
+ *
+ * @param enabled             whether answers are cached at all
+ * @param similarityThreshold minimum cosine similarity between two question embeddings for the
+ *                            cached answer of one to be served for the other
+ * @param maxEntries          maximum number of cached answers; the least recently used one is evicted
+ *                            beyond it. Each entry holds one question embedding (~6 KB at 1536 dimensions)
+ *                            plus the answer and its documents
+ * @param ttl                 time after which a cached answer expires regardless of use
+ */
+@ConfigurationProperties(prefix = "rag.answer-cache")
+public record AnswerCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("0.95") double similarityThreshold,
+        @DefaultValue("500") int maxEntries,
+        @DefaultValue("6h") Duration ttl) {
+}
@@ -0,0 +1,239 @@
+package com.psyncopate.rag.cache;
+
+import com.psyncopate.rag.dto.Citation;
+import com.psyncopate.rag.dto.RagFilter;
+import com.psyncopate.rag.dto.RagResponse;
+import com.psyncopate.rag.retrieval.RetrievalMode;
+import com.psyncopate.rag.retrieval.RetrievalProperties;
+import com.psyncopate.rag.source.CorpusChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache of generated answers, keyed by the embedding of the question.
+ *
+ * <p>
+ * A lookup embeds the question, unless the caller passes the embedding it already has, and compares it
+ * with every cached question; the best match at
+ * or above the configured cosine-similarity threshold is a hit, so rephrasings such as
+ * "consumer lag" and "what is consumer lag?" share one answer. Only answers to questions with the
+ * same {@link RagFilter} and the same effective {@link RetrievalMode} are candidates, since a filtered
+ * question is answered from other documents, and the modes retrieve different contexts.
+ * Entries are kept in LRU order,
+ * bounded by {@code maxEntries} and expired after {@code ttl}. The whole cache is cleared
+ * whenever the {@link com.psyncopate.rag.source.DocsLoader} changes the corpus, and answers
+ * that were being generated while it changed are not stored.
+ * </p>
+ */
+@Component
+@EnableConfigurationProperties(AnswerCacheProperties.class)
+public class SemanticAnswerCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticAnswerCache.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final AnswerCacheProperties properties;
+    private final RetrievalProperties retrievalProperties;
+
+    // Access-ordered, so iteration starts at the least recently used entry; guarded by "this"
+    private final LinkedHashMap<String, CachedAnswer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long generation;
+
+    public SemanticAnswerCache(EmbeddingModel embeddingModel, AnswerCacheProperties properties,
+                               RetrievalProperties retrievalProperties) {
+        this.embeddingModel = embeddingModel;
+        this.properties = properties;
+        this.retrievalProperties = retrievalProperties;
+    }
+
+    /**
+     * Returns the cached answer of a sufficiently similar question, or computes, caches and
+     * returns a new one.
+     *
+     * @param question  the user's question
+     * @param embedding the question's embedding, or {@code null} to embed it here
+     * @param mode      the question's retrieval mode, or {@code null} for the configured default
+     * @param filter    the question's corpus filter, or {@code null}
+     * @param loader    produces the answer on a cache miss
+     * @return the answer; {@link RagResponse#cached()} tells whether it came from the cache
+     */
+    public RagResponse getOrCompute(String question, float[] embedding, RetrievalMode mode, RagFilter filter,
+                                    Supplier<RagResponse> loader) {
+        Lookup lookup = lookup(question, embedding, mode, filter);
+        if (lookup.hit() != null) {
+            return lookup.hit();
+        }
+        RagResponse response = loader.get();
+        put(lookup, response);
+        return response;
+    }
+
+    /**
+     * Looks up the answer of a sufficiently similar question. For callers that produce the
+     * answer asynchronously and hand it to {@link #put} once it is complete.
+     *
+     * @param question the user's question
+     * @param mode     the question's retrieval mode, or {@code null} for the configured default
+     * @param filter   the question's corpus filter, or {@code null}
+     * @return the lookup; its {@link Lookup#hit()} is the cached answer, or {@code null} on a miss
+     */
+    public Lookup lookup(String question, RetrievalMode mode, RagFilter filter) {
+        return lookup(question, null, mode, filter);
+    }
+
+    /**
+     * Looks up the answer of a sufficiently similar question, for a question the caller has already embedded.
+     *
+     * @param question          the user's question
+     * @param questionEmbedding the question's embedding, or {@code null} to embed it here
+     * @param mode              the question's retrieval mode, or {@code null} for the configured default
+     * @param filter            the question's corpus filter, or {@code null}
+     * @return the lookup; its {@link Lookup#hit()} is the cached answer, or {@code null} on a miss
+     */
+    public Lookup lookup(String question, float[] questionEmbedding, RetrievalMode mode, RagFilter filter) {
+        RetrievalMode effectiveMode = mode != null ? mode : retrievalProperties.mode();
+        RagFilter scope = filter == null || filter.isEmpty() ? null : filter;
+        if (!properties.enabled() || question == null || question.isBlank()) {
+            return new Lookup(question, effectiveMode, scope, null, 0, null);
+        }
+
+        float[] embedding = normalize(questionEmbedding != null ? questionEmbedding : embeddingModel.embed(question));
+        synchronized (this) {
+            CachedAnswer hit = findSimilar(embedding, effectiveMode, scope);
+            if (hit != null) {
+                log.debug("Answer cache hit for '{}' (cached question '{}')", question, hit.question());
+                return new Lookup(question, effectiveMode, scope, embedding, generation,
+                        new RagResponse(hit.answer(), hit.relevantDocuments(), hit.citations(), true, null));
+            }
+            return new Lookup(question, effectiveMode, scope, embedding, generation, null);
+        }
+    }
+
+    /**
+     * Caches the answer produced after a missed lookup, unless the corpus changed in the meantime.
+     *
+     * @param lookup   the missed lookup
+     * @param response the answer produced for its question
+     */
+    public synchronized void put(Lookup lookup, RagResponse response) {
+        // No embedding: caching disabled or blank question. Generation moved: the answer may already be stale
+        if (lookup.embedding() == null || lookup.hit() != null || lookup.generation() != generation) {
+            return;
+        }
+        entries.put(key(lookup.question(), lookup.mode(), lookup.filter()), new CachedAnswer(lookup.question(),
+                lookup.mode(), lookup.filter(), lookup.embedding(), response.answer(), response.relevantDocuments(),
+                response.citations(), System.nanoTime()));
+        while (entries.size() > properties.maxEntries()) {
+            Iterator<String> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops every cached answer once the corpus has changed.
+     *
+     * @param event the corpus change published by the docs loader
+     */
+    @EventListener
+    public synchronized void onCorpusChanged(CorpusChangedEvent event) {
+        generation = event.generation();
+        if (!entries.isEmpty()) {
+            log.info("Corpus changed ({} files changed, {} deleted), discarding {} cached answers",
+                    event.changedFiles(), event.deletedFiles(), entries.size());
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return number of answers currently cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Scans the cache for the most similar unexpired question with the same mode and filter, removing
+     * expired entries on the way. Touches the returned entry so it moves to the most recently used end.
+     */
+    private CachedAnswer findSimilar(float[] embedding, RetrievalMode mode, RagFilter filter) {
+        long expiredBefore = System.nanoTime() - properties.ttl().toNanos();
+        CachedAnswer best = null;
+        double bestSimilarity = properties.similarityThreshold();
+
+        for (Iterator<CachedAnswer> it = entries.values().iterator(); it.hasNext(); ) {
+            CachedAnswer entry = it.next();
+            if (entry.createdNanos() - expiredBefore < 0) {
+                it.remove();
+                continue;
+            }
+            if (mode != entry.mode() || !Objects.equals(filter, entry.filter())) {
+                continue;
+            }
+            double similarity = dot(embedding, entry.embedding());
+            if (similarity >= bestSimilarity) {
+                best = entry;
+                bestSimilarity = similarity;
+            }
+        }
+        if (best != null) {
+            entries.get(key(best.question(), best.mode(), best.filter()));
+        }
+        return best;
+    }
+
+    private static String key(String question, RetrievalMode mode, RagFilter filter) {
+        String key = question + '\0' + mode;
+        return filter == null ? key : key + '\0' + filter;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        float[] normalized = new float[vector.length];
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                normalized[i] = (float) (vector[i] / norm);
+            }
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Result of {@link #lookup(String, float[], RetrievalMode, RagFilter)}, to be passed back to {@link #put} on a miss.
+     *
+     * @param question   the question looked up
+     * @param mode       its effective retrieval mode
+     * @param filter     its corpus filter, or {@code null} if it searches everything
+     * @param embedding  its normalized embedding, or {@code null} if it is not cacheable
+     * @param generation corpus generation at lookup time
+     * @param hit        the cached answer, or {@code null} on a miss
+     */
+    public record Lookup(String question, RetrievalMode mode, RagFilter filter, float[] embedding, long generation,
+                         RagResponse hit) {
+    }
+
+    private record CachedAnswer(String question, RetrievalMode mode, RagFilter filter, float[] embedding, String answer,
+                                List<String> relevantDocuments, List<Citation> citations, long createdNanos) {
+    }
+}
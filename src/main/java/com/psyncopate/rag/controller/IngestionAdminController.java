@@ -0,0 +1,122 @@
+package com.psyncopate.rag.controller;
+
+import com.psyncopate.rag.source.IngestionJob;
+import com.psyncopate.rag.source.IngestionJobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Admin API of the background ingestion jobs (requires the {@code ADMIN} role, authenticated by HTTP Basic
+ * credentials on every request; see {@code SecurityConfig}).
+ *
+ * <ul>
+ *     <li>{@code POST /api/admin/ingestion/jobs}: start a synchronization of all document folders;
+ *     {@code ?mode=REBUILD} re-ingests every file into a new table that replaces the current one when done</li>
+ *     <li>{@code GET /api/admin/ingestion/jobs}: the most recent jobs, newest first</li>
+ *     <li>{@code GET /api/admin/ingestion/jobs/{id}}: one job</li>
+ *     <li>{@code GET /api/admin/ingestion/jobs/{id}/progress}: Server-Sent Events with the job's state every
+ *     second, ending once the job has finished</li>
+ *     <li>{@code POST /api/admin/ingestion/jobs/{id}/cancel}: cancel a queued or running job</li>
+ * </ul>
+ * Starting while a job is active, or cancelling a finished one, answers {@code 409 Conflict}.
+ */
+@RestController
+@RequestMapping("/api/admin/ingestion")
+public class IngestionAdminController {
+
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(1);
+
+    private final IngestionJobService jobs;
+
+    public IngestionAdminController(IngestionJobService jobs) {
+        this.jobs = jobs;
+    }
+
+    /**
+     * Starts a synchronization or rebuild job.
+     *
+     * @param mode {@code SYNC} (default) or {@code REBUILD}
+     * @return the new job, with {@code 202 Accepted}
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<IngestionJob> start(@RequestParam(defaultValue = "SYNC") IngestionJob.Mode mode) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobs.start("api", mode));
+    }
+
+    /**
+     * @param limit maximum number of jobs
+     * @return the most recent jobs, newest first
+     */
+    @GetMapping("/jobs")
+    public List<IngestionJob> recent(@RequestParam(defaultValue = "20") int limit) {
+        return jobs.recent(Math.max(1, Math.min(limit, 100)));
+    }
+
+    /**
+     * @param id the job id
+     * @return the job
+     */
+    @GetMapping("/jobs/{id}")
+    public IngestionJob job(@PathVariable UUID id) {
+        return jobs.find(id).orElseThrow(() -> notFound(id));
+    }
+
+    /**
+     * Streams the job's state every second until it has finished.
+     *
+     * @param id the job id
+     * @return {@code progress} events carrying the job
+     */
+    @GetMapping(value = "/jobs/{id}/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<IngestionJob>> progress(@PathVariable UUID id) {
+        IngestionJob first = job(id);
+        // Lookups of finished jobs hit the database; keep them off the timer thread
+        Flux<IngestionJob> updates = Flux.interval(PROGRESS_INTERVAL)
+                .publishOn(Schedulers.boundedElastic())
+                .map(tick -> jobs.find(id).orElse(first));
+        return Flux.concat(Flux.just(first), updates)
+                .takeUntil(job -> job.status().isFinished())
+                .map(job -> ServerSentEvent.builder(job).event("progress").build());
+    }
+
+    /**
+     * Cancels a queued or running job. Files already written stay indexed.
+     *
+     * @param id the job id
+     * @return the job, with {@code 202 Accepted}; it turns {@code CANCELLED} once the pipeline has stopped
+     */
+    @PostMapping("/jobs/{id}/cancel")
+    public ResponseEntity<IngestionJob> cancel(@PathVariable UUID id) {
+        return jobs.cancel(id)
+                .map(job -> ResponseEntity.status(HttpStatus.ACCEPTED).body(job))
+                .orElseThrow(() -> jobs.find(id).isPresent()
+                        ? new ResponseStatusException(HttpStatus.CONFLICT, "Ingestion job " + id + " is not running")
+                        : notFound(id));
+    }
+
+    /**
+     * Answers a start while a job is active, or a cancel of a finished job, with {@code 409}.
+     *
+     * @param e the rejection
+     * @return the error response
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, String>> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+    }
+
+    private static ResponseStatusException notFound(UUID id) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "No ingestion job " + id);
+    }
+}
@@ -1,76 +1,136 @@
 package com.psyncopate.rag.controller;
 
 
+import com.psyncopate.rag.batch.BatchQueryService;
+import com.psyncopate.rag.cache.SemanticAnswerCache;
+import com.psyncopate.rag.cache.SemanticAnswerCache.Lookup;
+import com.psyncopate.rag.conversation.ConversationHistory;
+import com.psyncopate.rag.conversation.ConversationMemory;
+import com.psyncopate.rag.conversation.QuestionRewriter;
+import com.psyncopate.rag.dto.RagBatchItem;
 import com.psyncopate.rag.dto.RagRequest;
 import com.psyncopate.rag.dto.RagResponse;
+import com.psyncopate.rag.dto.RagStreamSources;
+import com.psyncopate.rag.dto.RagStreamToken;
+import com.psyncopate.rag.llm.LlmBulkhead;
+import com.psyncopate.rag.llm.LlmBusyException;
+import com.psyncopate.rag.metrics.QueryTimings;
+import com.psyncopate.rag.metrics.RagMetrics;
+import com.psyncopate.rag.retrieval.AssembledContext;
+import com.psyncopate.rag.retrieval.ContextAssembler;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.prompt.PromptTemplate;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.security.Principal;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * REST controller that exposes an endpoint for Retrieval-Augmented Generation (RAG) using Spring AI.
  * <p>
- * The controller accepts a user query, retrieves relevant documents from the {@link VectorStore},
+ * The controller accepts a user query, assembles relevant documents through the {@link ContextAssembler},
  * and sends a prompt to the {@link ChatClient} to generate a context-aware answer.
+ * The answer is either returned whole ({@code /query}) or streamed as Server-Sent Events ({@code /stream}).
+ * Model calls go through the {@link LlmBulkhead}; when it is saturated the endpoints answer
+ * {@code 429 Too Many Requests} with a {@code Retry-After} header. Each stage is timed through
+ * {@link RagMetrics}; a request can ask for its own timings to be returned with the answer.
+ * <p>
+ * Questions asked within an HTTP session form a conversation kept by the {@link ConversationMemory}:
+ * a follow-up is rewritten into a standalone question by the {@link QuestionRewriter} for the cache
+ * lookup and retrieval, and the prompt carries the (bounded) earlier turns. The standalone question is
+ * embedded once ({@code embed} stage), and that embedding serves both the cache lookup and the search. Requests without a session,
+ * and batches, are answered statelessly. Only such answers, generated without earlier turns in the prompt,
+ * are put into the answer cache, which is shared by all users and sessions.
  */
 @RestController
 @RequestMapping("/api/rag")
 public class RagEndpoint {
 
+    private static final Logger log = LoggerFactory.getLogger(RagEndpoint.class);
+
     private final ChatClient chatClient;
-    private final VectorStore vectorStore;
-    private final Resource promptTemplate;
+    private final ContextAssembler contextAssembler;
+    private final SemanticAnswerCache answerCache;
+    private final EmbeddingModel embeddingModel;
+    private final BatchQueryService batchQueryService;
+    private final LlmBulkhead llmBulkhead;
+    private final ConversationMemory conversationMemory;
+    private final QuestionRewriter questionRewriter;
+    private final RagMetrics metrics;
 
     /**
      * Constructs the RagEndpoint with required dependencies.
      *
-     * @param chatClient     the AI chat client used to process prompts
-     * @param vectorStore    the vector store used to retrieve similar documents
-     * @param promptTemplate the resource template for structuring AI prompts
+     * @param chatClient        the AI chat client used to process prompts
+     * @param contextAssembler  retrieves the relevant documents and builds the prompt
+     * @param answerCache       cache of answers to previously asked, similar questions
+     * @param embeddingModel    embeds the question for the cache lookup and the search
+     * @param batchQueryService answers batches of questions with bounded parallelism
+     * @param llmBulkhead        limits concurrent chat model calls
+     * @param conversationMemory earlier turns of the session's conversation
+     * @param questionRewriter   turns follow-ups into standalone questions
+     * @param metrics            records stage timings and token usage
      */
-    public RagEndpoint(ChatClient chatClient, VectorStore vectorStore,
-                       @Value("classpath:/prompts/prompt.st") Resource promptTemplate) {
+    public RagEndpoint(ChatClient chatClient, ContextAssembler contextAssembler, SemanticAnswerCache answerCache,
+                       EmbeddingModel embeddingModel, BatchQueryService batchQueryService, LlmBulkhead llmBulkhead,
+                       ConversationMemory conversationMemory, QuestionRewriter questionRewriter, RagMetrics metrics) {
         this.chatClient = chatClient;
-        this.vectorStore = vectorStore;
-        this.promptTemplate = promptTemplate;
+        this.contextAssembler = contextAssembler;
+        this.answerCache = answerCache;
+        this.embeddingModel = embeddingModel;
+        this.batchQueryService = batchQueryService;
+        this.llmBulkhead = llmBulkhead;
+        this.conversationMemory = conversationMemory;
+        this.questionRewriter = questionRewriter;
+        this.metrics = metrics;
     }
 
     /**
      * POST endpoint to submit a question and receive an AI-generated answer based on relevant documents.
+     * Answers to questions similar enough to a recent one are served from the {@link SemanticAnswerCache}.
      *
-     * @param request the user's question payload
+     * @param request     the user's question payload
+     * @param httpRequest the HTTP request, whose session identifies the conversation
      * @return the AI-generated answer and supporting documents
      */
     @PostMapping("/query")
-    public RagResponse query(@RequestBody RagRequest request) {
+    public RagResponse query(@RequestBody RagRequest request, HttpServletRequest httpRequest) {
         try {
-            List<String> relevantDocuments = findSimilarDocuments(request.question());
-            
-            // Build prompt parameters with user question and retrieved documents
-            Map<String, Object> promptParameters = Map.of(
-                    "input", request.question(),
-                    "documents", String.join("\n", relevantDocuments)
-            );
-
-            // Generate the prompt and get the response from the chat client
-            String answer = chatClient
-                    .prompt(new PromptTemplate(promptTemplate).create(promptParameters))
-                    .call()
-                    .content();
-
-            // Return response with answer and documents
-            return new RagResponse(answer, relevantDocuments);
+            QueryTimings timings = metrics.startQuery();
+            String conversationId = conversationId(httpRequest);
+            ConversationHistory history = conversationMemory.history(conversationId);
+            String standalone = questionRewriter.rewrite(request.question(), history, timings);
+            float[] embedding = timings.time("embed", () -> embeddingModel.embed(standalone));
+            Lookup lookup = timings.time("answer_cache", () -> answerCache.lookup(standalone, embedding, request.mode(), request.filter()));
+            RagResponse response = lookup.hit();
+            if (response == null) {
+                response = answer(request, standalone, embedding, history, timings);
+                if (history.isEmpty()) {
+                    answerCache.put(lookup, response);
+                }
+            }
+            conversationMemory.record(conversationId, user(httpRequest), request.question(), response.answer());
+            return request.timings() ? response.withTimings(timings.toMap()) : response;
+        } catch (LlmBusyException e) {
+            throw e;
         } catch (Exception e) {
             throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR,
@@ -79,24 +139,220 @@ public class RagEndpoint {
         }
     }
 
+    /**
+     * POST endpoint to submit several questions at once, e.g. the diagnostic questions generated for an alert.
+     * Questions are embedded together and answered in parallel; each result carries either an answer or the
+     * reason that question failed, so one failure does not fail the batch.
+     *
+     * @param requests the questions
+     * @return one result per question, in request order
+     */
+    @PostMapping("/query/batch")
+    public List<RagBatchItem> queryBatch(@RequestBody List<RagRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one question is required");
+        }
+        if (requests.size() > batchQueryService.maxQuestions()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + batchQueryService.maxQuestions() + " questions per batch");
+        }
+        return batchQueryService.answerAll(requests);
+    }
 
     /**
-     * Helper method to search the vector store for documents similar to the given question.
+     * Forgets the conversation of the caller's session, so the next question starts a new one.
      *
-     * @param question the user's query
-     * @return a list of formatted document contents related to the query
+     * @param httpRequest the HTTP request, whose session identifies the conversation
+     */
+    @DeleteMapping("/conversation")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void clearConversation(HttpServletRequest httpRequest) {
+        conversationMemory.clear(conversationId(httpRequest));
+    }
+
+    /**
+     * Retrieves the relevant documents and asks the chat model for an answer.
+     *
+     * @param request    the user's question payload
+     * @param standalone the question rewritten for retrieval
+     * @param embedding  the standalone question's embedding
+     * @param history    the earlier turns of the conversation
+     * @param timings    the question's stage timings
+     * @return the AI-generated answer, supporting documents and their citations
+     */
+    private RagResponse answer(RagRequest request, String standalone, float[] embedding, ConversationHistory history,
+                               QueryTimings timings) {
+        AssembledContext context = contextAssembler.assemble(standalone, embedding, request.mode(), request.filter(), timings);
+        
+        // Generate the prompt and get the response from the chat client
+        Prompt prompt = timings.time("prompt",
+                () -> contextAssembler.prompt(request.question(), context.documents(), history));
+        ChatResponse response = timings.time("generate",
+                () -> llmBulkhead.call(() -> chatClient.prompt(prompt).call().chatResponse()));
+        metrics.recordUsage(response);
+
+        // Return response with answer and documents
+        return new RagResponse(response.getResult().getOutput().getText(), context.documents(), context.citations());
+    }
+
+    /**
+     * POST endpoint that streams the answer as Server-Sent Events, so the first words show up as soon as
+     * the model produces them instead of after the whole answer has been generated.
+     *
+     * <p>
+     * Events, in order:
+     * <ul>
+     *     <li>{@code sources}: a {@link RagStreamSources} with the retrieved document chunks and their citations</li>
+     *     <li>{@code token}: one {@link RagStreamToken} per answer fragment received from the model</li>
+     *     <li>{@code done}: the answer is complete; carries the stage {@code timings} if the request asked for them</li>
+     * </ul>
+     * A failure ends the stream with an {@code error} event carrying a {@code message} (and a
+     * {@code retryAfterSeconds} if the model was busy). If the client
+     * disconnects, the subscription is cancelled, which cancels the upstream model call.
+     * </p>
+     *
+     * @param request     the user's question payload
+     * @param httpRequest the HTTP request, whose session identifies the conversation
+     * @return the stream of answer events
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> stream(@RequestBody RagRequest request, HttpServletRequest httpRequest) {
+        String question = request.question();
+        // Fail fast while the response can still carry a 429 status
+        llmBulkhead.checkCapacity();
+
+        QueryTimings timings = metrics.startQuery();
+        // The servlet request must not be touched once the stream runs asynchronously
+        String conversationId = conversationId(httpRequest);
+        String user = user(httpRequest);
+        ConversationHistory history = conversationMemory.history(conversationId);
+        // Rewriting, cache lookup and retrieval are blocking (model and embedding calls, JDBC); keep them off the request thread
+        return Mono.fromCallable(() -> {
+                    String standalone = questionRewriter.rewrite(question, history, timings);
+                    float[] embedding = timings.time("embed", () -> embeddingModel.embed(standalone));
+                    return new EmbeddedLookup(embedding,
+                            timings.time("answer_cache", () -> answerCache.lookup(standalone, embedding, request.mode(),
+                                    request.filter())));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(embedded -> {
+                    Lookup lookup = embedded.lookup();
+                    if (lookup.hit() != null) {
+                        RagResponse cached = lookup.hit();
+                        return Flux.just(
+                                event("sources", new RagStreamSources(cached.relevantDocuments(), cached.citations(), true)),
+                                event("token", new RagStreamToken(cached.answer())))
+                                .concatWith(Mono.fromCallable(() -> {
+                                    conversationMemory.record(conversationId, user, question, cached.answer());
+                                    return done(request, timings);
+                                }));
+                    }
+                    // The lookup carries the standalone question
+                    return Mono.fromCallable(() -> contextAssembler.assemble(lookup.question(), embedded.embedding(),
+                                    request.mode(), request.filter(), timings))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .flatMapMany(context -> {
+                                var answer = new StringBuilder();
+                                Prompt prompt = timings.time("prompt",
+                                        () -> contextAssembler.prompt(question, context.documents(), history));
+                                long generateStart = System.nanoTime();
+                                Flux<ServerSentEvent<Object>> tokens = llmBulkhead
+                                        .<ChatResponse>stream(() -> chatClient.prompt(prompt)
+                                                // Asks for a final chunk carrying the token usage; set per call because
+                                                // the model logs a warning when blocking calls carry stream options
+                                                .options(OpenAiChatOptions.builder().streamUsage(true).build())
+                                                .stream()
+                                                .chatResponse())
+                                        .doOnNext(metrics::recordUsage)
+                                        .mapNotNull(RagEndpoint::text)
+                                        .doOnNext(token -> {
+                                            if (answer.isEmpty()) {
+                                                timings.mark("first_token");
+                                            }
+                                            answer.append(token);
+                                        })
+                                        .doOnComplete(() -> timings.record("generate", System.nanoTime() - generateStart))
+                                        .map(token -> event("token", new RagStreamToken(token)));
+                                return Flux.concat(
+                                        Flux.just(event("sources",
+                                                new RagStreamSources(context.documents(), context.citations(), false))),
+                                        tokens,
+                                        Mono.fromCallable(() -> {
+                                            // Only complete answers are cached and remembered; answers shaped by
+                                            // earlier turns are not cached for other sessions
+                                            if (history.isEmpty()) {
+                                                answerCache.put(lookup, new RagResponse(answer.toString(),
+                                                        context.documents(), context.citations()));
+                                            }
+                                            conversationMemory.record(conversationId, user, question, answer.toString());
+                                            return done(request, timings);
+                                        }));
+                            });
+                })
+                .doOnCancel(() -> log.debug("Client disconnected, cancelled streaming answer for '{}'", question))
+                .onErrorResume(e -> {
+                    if (e instanceof LlmBusyException busy) {
+                        return Flux.just(event("error", Map.of(
+                                "message", busy.getMessage(),
+                                "retryAfterSeconds", busy.getRetryAfter().toSeconds())));
+                    }
+                    log.error("Failed to stream answer for '{}': {}", question, e.getMessage(), e);
+                    return Flux.just(event("error", Map.of("message", "Failed to process request: " + e.getMessage())));
+                });
+    }
+
+    /**
+     * Answers requests rejected by the {@link LlmBulkhead} with {@code 429} and a {@code Retry-After} header.
+     *
+     * @param e the rejection
+     * @return the error response
+     */
+    @ExceptionHandler(LlmBusyException.class)
+    public ResponseEntity<Map<String, String>> busy(LlmBusyException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                .body(Map.of("message", e.getMessage()));
+    }
+
+    /**
+     * @return the id of the request's session, which is the conversation id, or {@code null} if it has none
+     */
+    private static String conversationId(HttpServletRequest httpRequest) {
+        HttpSession session = httpRequest.getSession(false);
+        return session != null ? session.getId() : null;
+    }
+
+    /**
+     * @return the signed-in user's name, or {@code null} for anonymous callers
+     */
+    private static String user(HttpServletRequest httpRequest) {
+        Principal principal = httpRequest.getUserPrincipal();
+        return principal != null ? principal.getName() : null;
+    }
+
+    private static ServerSentEvent<Object> done(RagRequest request, QueryTimings timings) {
+        var data = new LinkedHashMap<String, Object>();
+        if (request.timings()) {
+            data.put("timings", timings.toMap());
+        }
+        return event("done", data);
+    }
+
+    private static String text(ChatResponse response) {
+        if (response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        String text = response.getResult().getOutput().getText();
+        return text == null || text.isEmpty() ? null : text;
+    }
+
+    private static ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
+
+    /**
+     * A streamed question's embedding and answer cache lookup, handed from the lookup to the retrieval step.
      */
-    private List<String> findSimilarDocuments(String question) {
-        SearchRequest searchRequest = SearchRequest.builder()
-                .query(question)
-                .topK(3) // retrieve top 3 matches
-                .build();
-
-        List<Document> similarDocuments = vectorStore.similaritySearch(searchRequest);
-
-        // Extract the textual content of each similar document
-        return similarDocuments.stream()
-                .map(Document::getFormattedContent)
-                .collect(Collectors.toList());
+    private record EmbeddedLookup(float[] embedding, Lookup lookup) {
     }
 }
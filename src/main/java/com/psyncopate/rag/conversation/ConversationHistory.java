@@ -0,0 +1,52 @@
+package com.psyncopate.rag.conversation;
+
+import java.util.List;
+
+/**
+ * The part of a conversation that goes into the next prompt: the rolling summary of older turns
+ * and the most recent turns, together within {@code rag.conversation.max-history-tokens}.
+ *
+ * @param summary summary of the turns no longer kept verbatim, empty if there is none
+ * @param turns   the most recent turns, oldest first
+ */
+public record ConversationHistory(String summary, List<Turn> turns) {
+
+    /**
+     * History of a new conversation, or of a request without one.
+     */
+    public static final ConversationHistory EMPTY = new ConversationHistory("", List.of());
+
+    /**
+     * One question and its answer.
+     *
+     * @param question the user's question as asked
+     * @param answer   the assistant's answer, possibly truncated
+     * @param tokens   tokens of question and answer together
+     */
+    public record Turn(String question, String answer, int tokens) {
+    }
+
+    /**
+     * @return whether there is nothing to remember
+     */
+    public boolean isEmpty() {
+        return summary.isEmpty() && turns.isEmpty();
+    }
+
+    /**
+     * @return the history as prompt text
+     */
+    public String render() {
+        if (isEmpty()) {
+            return "None.";
+        }
+        var text = new StringBuilder();
+        if (!summary.isEmpty()) {
+            text.append("Summary of earlier turns: ").append(summary).append('\n');
+        }
+        for (Turn turn : turns) {
+            text.append("\nUser: ").append(turn.question()).append("\nAssistant: ").append(turn.answer()).append('\n');
+        }
+        return text.toString().strip();
+    }
+}
@@ -0,0 +1,320 @@
+package com.psyncopate.rag.conversation;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.psyncopate.rag.conversation.ConversationHistory.Turn;
+import com.psyncopate.rag.llm.LlmBulkhead;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.security.web.session.HttpSessionDestroyedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory conversation history per HTTP session, so follow-up questions ("and how do I change it?")
+ * are answered with the earlier turns in mind.
+ *
+ * <p>
+ * The store is bounded three ways: at most {@code maxConversations} conversations in total (least
+ * recently used evicted first), at most {@code maxConversationsPerUser} per signed-in user, and
+ * conversations idle for longer than {@code idleTimeout} are swept. A conversation also ends with
+ * its session (logout or session timeout).
+ * </p>
+ *
+ * <p>
+ * The history handed to the prompt never exceeds {@code maxHistoryTokens}, however long the
+ * conversation: once the turns not yet summarized exceed {@code summarizeAfterTokens}, all but the
+ * latest {@code keepRecentTurns} are folded into a rolling summary by the chat model, on a
+ * background thread and through the {@link LlmBulkhead}, so answering never waits for it. Until
+ * the summary is ready, and if summarizing fails, the oldest turns simply fall out of the budget.
+ * </p>
+ */
+@Component
+@EnableConfigurationProperties(ConversationProperties.class)
+public class ConversationMemory {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationMemory.class);
+
+    private static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    private final ChatClient chatClient;
+    private final LlmBulkhead llmBulkhead;
+    private final ConversationProperties properties;
+    private final PromptTemplate summaryTemplate;
+    private final ScheduledExecutorService executor;
+
+    // Access-ordered, so iteration starts at the least recently used conversation; guarded by "this"
+    private final LinkedHashMap<String, Conversation> conversations = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param chatClient      summarizes older turns
+     * @param llmBulkhead     limits concurrent chat model calls
+     * @param properties      history budget, summarization threshold and store bounds
+     * @param summaryTemplate the prompt used to fold turns into the rolling summary
+     */
+    public ConversationMemory(ChatClient chatClient, LlmBulkhead llmBulkhead, ConversationProperties properties,
+                              @Value("classpath:/prompts/summarize.st") Resource summaryTemplate) {
+        this.chatClient = chatClient;
+        this.llmBulkhead = llmBulkhead;
+        this.properties = properties;
+        this.summaryTemplate = new PromptTemplate(summaryTemplate);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conversation-memory");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepMillis = Math.max(1000, Math.min(properties.idleTimeout().toMillis() / 2, 60_000));
+        executor.scheduleWithFixedDelay(this::evictIdle, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the part of a conversation that goes into the next prompt: the rolling summary and as
+     * many of the latest turns as fit into {@code maxHistoryTokens}.
+     *
+     * @param conversationId the conversation (session) id, or {@code null} for a stateless request
+     * @return the history, empty for an unknown conversation or when memory is disabled
+     */
+    public synchronized ConversationHistory history(String conversationId) {
+        Conversation conversation = conversationId == null || !properties.enabled() ? null : conversations.get(conversationId);
+        if (conversation == null) {
+            return ConversationHistory.EMPTY;
+        }
+        conversation.lastAccessNanos = System.nanoTime();
+
+        int budget = properties.maxHistoryTokens() - conversation.summaryTokens;
+        var recent = new ArrayDeque<Turn>();
+        for (Iterator<StoredTurn> it = conversation.turns.descendingIterator(); it.hasNext(); ) {
+            Turn turn = it.next().turn();
+            if (turn.tokens() > budget) {
+                break;
+            }
+            recent.addFirst(turn);
+            budget -= turn.tokens();
+        }
+        return new ConversationHistory(conversation.summary, List.copyOf(recent));
+    }
+
+    /**
+     * Appends a completed turn to a conversation, starting the conversation if needed, and schedules
+     * summarization once the turns not yet summarized exceed {@code summarizeAfterTokens}.
+     *
+     * @param conversationId the conversation (session) id, or {@code null} for a stateless request
+     * @param user           the signed-in user the conversation belongs to, or {@code null} if anonymous
+     * @param question       the question as the user asked it
+     * @param answer         the answer given
+     */
+    public void record(String conversationId, String user, String question, String answer) {
+        if (conversationId == null || !properties.enabled() || question == null || answer == null) {
+            return;
+        }
+        String storedAnswer = truncate(answer, Math.max(0, properties.maxTurnTokens() - ENCODING.countTokens(question)));
+        var turn = new Turn(question, storedAnswer, ENCODING.countTokens(question) + ENCODING.countTokens(storedAnswer));
+
+        boolean summarize;
+        synchronized (this) {
+            Conversation conversation = conversations.get(conversationId);
+            if (conversation == null) {
+                conversation = start(conversationId, user);
+            }
+            conversation.lastAccessNanos = System.nanoTime();
+            conversation.turns.addLast(new StoredTurn(conversation.nextSeq++, turn));
+            conversation.turnTokens += turn.tokens();
+            while (conversation.turns.size() > properties.maxTurns()) {
+                conversation.turnTokens -= conversation.turns.removeFirst().turn().tokens();
+            }
+            summarize = !conversation.summarizing
+                    && conversation.turnTokens > properties.summarizeAfterTokens()
+                    && conversation.turns.size() > properties.keepRecentTurns();
+            conversation.summarizing |= summarize;
+        }
+        if (summarize) {
+            try {
+                executor.execute(() -> summarize(conversationId));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+            }
+        }
+    }
+
+    /**
+     * Forgets a conversation, e.g. when the user starts a new chat.
+     *
+     * @param conversationId the conversation (session) id
+     */
+    public synchronized void clear(String conversationId) {
+        if (conversationId != null) {
+            conversations.remove(conversationId);
+        }
+    }
+
+    /**
+     * Forgets the conversation of a session that was invalidated (logout) or timed out.
+     *
+     * @param event the session destruction published by Spring Security's {@code HttpSessionEventPublisher}
+     */
+    @EventListener
+    public void onSessionDestroyed(HttpSessionDestroyedEvent event) {
+        clear(event.getId());
+    }
+
+    /**
+     * @return number of conversations currently held
+     */
+    public synchronized int size() {
+        return conversations.size();
+    }
+
+    /**
+     * Stops the summarization and eviction thread; pending summaries are abandoned.
+     */
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Adds a conversation, first evicting the user's least recently used conversation if the user is at
+     * {@code maxConversationsPerUser}, and the overall least recently used one if the store is full.
+     */
+    private Conversation start(String conversationId, String user) {
+        if (user != null) {
+            List<String> owned = new ArrayList<>();
+            conversations.forEach((id, conversation) -> {
+                if (user.equals(conversation.user)) {
+                    owned.add(id);
+                }
+            });
+            // Least recently used first
+            for (int i = 0; i <= owned.size() - properties.maxConversationsPerUser(); i++) {
+                conversations.remove(owned.get(i));
+            }
+        }
+        while (!conversations.isEmpty() && conversations.size() >= properties.maxConversations()) {
+            Iterator<String> eldest = conversations.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        var conversation = new Conversation(user);
+        conversations.put(conversationId, conversation);
+        return conversation;
+    }
+
+    /**
+     * Folds all but the latest {@code keepRecentTurns} turns into the conversation's summary. The model
+     * call happens outside the lock; turns recorded meanwhile are kept, and a conversation cleared or
+     * evicted meanwhile stays gone.
+     */
+    private void summarize(String conversationId) {
+        Conversation conversation;
+        String previousSummary;
+        List<StoredTurn> folded;
+        synchronized (this) {
+            conversation = conversations.get(conversationId);
+            if (conversation == null) {
+                return;
+            }
+            int count = conversation.turns.size() - properties.keepRecentTurns();
+            if (count <= 0) {
+                conversation.summarizing = false;
+                return;
+            }
+            previousSummary = conversation.summary;
+            folded = new ArrayList<>(conversation.turns).subList(0, count);
+        }
+
+        String summary = null;
+        try {
+            var turns = new ArrayList<Turn>();
+            folded.forEach(stored -> turns.add(stored.turn()));
+            Map<String, Object> parameters = Map.of(
+                    "summary", previousSummary.isEmpty() ? "None." : previousSummary,
+                    "turns", new ConversationHistory("", turns).render(),
+                    "maxTokens", properties.summaryMaxTokens());
+            summary = llmBulkhead.call(() -> chatClient.prompt(summaryTemplate.create(parameters)).call().content());
+        } catch (RuntimeException e) {
+            log.warn("Could not summarize conversation history, keeping the latest turns only: {}", e.getMessage());
+        }
+
+        synchronized (this) {
+            if (conversations.get(conversationId) != conversation) {
+                return;
+            }
+            conversation.summarizing = false;
+            if (summary == null || summary.isBlank()) {
+                return;
+            }
+            long lastFolded = folded.get(folded.size() - 1).seq();
+            while (!conversation.turns.isEmpty() && conversation.turns.peekFirst().seq() <= lastFolded) {
+                conversation.turnTokens -= conversation.turns.removeFirst().turn().tokens();
+            }
+            conversation.summary = truncate(summary.strip(), properties.summaryMaxTokens());
+            conversation.summaryTokens = ENCODING.countTokens(conversation.summary);
+            log.debug("Summarized {} turns of a conversation into {} tokens", folded.size(), conversation.summaryTokens);
+        }
+    }
+
+    private synchronized void evictIdle() {
+        long idleBefore = System.nanoTime() - properties.idleTimeout().toNanos();
+        int evicted = 0;
+        for (Iterator<Conversation> it = conversations.values().iterator(); it.hasNext(); ) {
+            if (it.next().lastAccessNanos - idleBefore < 0) {
+                it.remove();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} idle conversations, {} remain", evicted, conversations.size());
+        }
+    }
+
+    private static String truncate(String text, int maxTokens) {
+        if (ENCODING.countTokens(text) <= maxTokens) {
+            return text;
+        }
+        return ENCODING.decode(ENCODING.encode(text, maxTokens).getTokens()) + " …";
+    }
+
+    /**
+     * A turn with its position in the conversation, so summarization removes exactly the turns it folded.
+     */
+    private record StoredTurn(long seq, Turn turn) {
+    }
+
+    /**
+     * Mutable state of one conversation; guarded by the enclosing {@link ConversationMemory}.
+     */
+    private static final class Conversation {
+
+        private final String user;
+        private final Deque<StoredTurn> turns = new ArrayDeque<>();
+        private String summary = "";
+        private int summaryTokens;
+        private int turnTokens;
+        private long nextSeq;
+        private boolean summarizing;
+        private long lastAccessNanos = System.nanoTime();
+
+        private Conversation(String user) {
+            this.user = user;
+        }
+    }
+}
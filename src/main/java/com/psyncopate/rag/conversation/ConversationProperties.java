@@ -0,0 +1,36 @@
+package com.psyncopate.rag.conversation;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the per-session conversation memory, bound from {@code rag.conversation.*}.
+ *
+ * @param enabled                  whether follow-up questions see the earlier turns of their session
+ * @param maxHistoryTokens         token budget of the conversation history in the prompt (summary and recent turns)
+ * @param summarizeAfterTokens     unsummarized turn tokens above which the older turns are summarized in the background
+ * @param keepRecentTurns          latest turns always kept verbatim, never folded into the summary
+ * @param summaryMaxTokens         token cap of the rolling summary
+ * @param maxTurnTokens            token cap of one stored turn; longer answers are truncated when stored
+ * @param maxTurns                 turns kept per conversation; the oldest are dropped if summarization falls behind
+ * @param maxConversations         conversations kept in memory across all users, least recently used evicted first
+ * @param maxConversationsPerUser  conversations (sessions) kept per user
+ * @param idleTimeout              conversations idle for longer are evicted
+ * @param rewriteQuestions         whether follow-ups are rewritten into standalone questions for retrieval
+ */
+@ConfigurationProperties(prefix = "rag.conversation")
+public record ConversationProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1200") int maxHistoryTokens,
+        @DefaultValue("800") int summarizeAfterTokens,
+        @DefaultValue("2") int keepRecentTurns,
+        @DefaultValue("300") int summaryMaxTokens,
+        @DefaultValue("600") int maxTurnTokens,
+        @DefaultValue("40") int maxTurns,
+        @DefaultValue("10000") int maxConversations,
+        @DefaultValue("5") int maxConversationsPerUser,
+        @DefaultValue("30m") Duration idleTimeout,
+        @DefaultValue("true") boolean rewriteQuestions) {
+}
@@ -0,0 +1,79 @@
+package com.psyncopate.rag.conversation;
+
+import com.psyncopate.rag.llm.LlmBulkhead;
+import com.psyncopate.rag.metrics.QueryTimings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Turns a follow-up question into a standalone one for retrieval and the answer cache, e.g.
+ * "and how do I change it?" after a question about topic retention becomes "How do I change the
+ * retention of a Kafka topic?". Without this the search would run on "change it" alone.
+ *
+ * <p>
+ * The first question of a conversation is used as is, without a model call. If the model is busy or
+ * the call fails, the previous question is prepended instead, which keeps the search on topic.
+ * </p>
+ */
+@Component
+public class QuestionRewriter {
+
+    private static final Logger log = LoggerFactory.getLogger(QuestionRewriter.class);
+
+    private final ChatClient chatClient;
+    private final LlmBulkhead llmBulkhead;
+    private final ConversationProperties properties;
+    private final PromptTemplate rewriteTemplate;
+
+    /**
+     * @param chatClient      rewrites the question
+     * @param llmBulkhead     limits concurrent chat model calls
+     * @param properties      whether rewriting is enabled
+     * @param rewriteTemplate the prompt asking for a standalone question
+     */
+    public QuestionRewriter(ChatClient chatClient, LlmBulkhead llmBulkhead, ConversationProperties properties,
+                            @Value("classpath:/prompts/rewrite.st") Resource rewriteTemplate) {
+        this.chatClient = chatClient;
+        this.llmBulkhead = llmBulkhead;
+        this.properties = properties;
+        this.rewriteTemplate = new PromptTemplate(rewriteTemplate);
+    }
+
+    /**
+     * Rewrites a question in the light of the conversation so far, timing the {@code rewrite} stage.
+     *
+     * @param question the question as the user asked it
+     * @param history  the conversation so far
+     * @param timings  the question's stage timings
+     * @return the standalone question to retrieve documents for
+     */
+    public String rewrite(String question, ConversationHistory history, QueryTimings timings) {
+        if (!properties.rewriteQuestions() || history.isEmpty() || question == null || question.isBlank()) {
+            return question;
+        }
+        return timings.time("rewrite", () -> {
+            try {
+                Map<String, Object> parameters = Map.of("history", history.render(), "input", question);
+                String rewritten = llmBulkhead.call(
+                        () -> chatClient.prompt(rewriteTemplate.create(parameters)).call().content());
+                if (rewritten != null && !rewritten.isBlank()) {
+                    log.debug("Rewrote follow-up '{}' as '{}'", question, rewritten.strip());
+                    return rewritten.strip();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not rewrite follow-up question, searching with the previous question added: {}",
+                        e.getMessage());
+            }
+            return history.turns().isEmpty()
+                    ? question
+                    : history.turns().get(history.turns().size() - 1).question() + " " + question;
+        });
+    }
+}
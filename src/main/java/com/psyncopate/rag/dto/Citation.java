@@ -0,0 +1,32 @@
+package com.psyncopate.rag.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Where a chunk of the answer's context came from.
+ *
+ * @param source   path of the source file
+ * @param fileName file name without directories
+ * @param format   document format ({@code docx}, {@code pdf}, {@code excel})
+ * @param area     product area (first-level sub-folder), if the file is in one
+ * @param location position within the file, e.g. {@code page 4}, {@code sheet Topics, rows 2-51} or
+ *                 {@code section Kafka > Restart procedure}; omitted if unknown
+ * @param alsoIn   other places holding the same text, collapsed into this chunk at ingestion: other files,
+ *                 and other positions in the same file
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public record Citation(String source, String fileName, String format, String area, String location,
+                       List<Copy> alsoIn) {
+
+    /**
+     * A near-identical copy of the cited text.
+     *
+     * @param source   path of the file holding the copy
+     * @param location position of the copy within that file; omitted if unknown
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Copy(String source, String location) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.psyncopate.rag.dto;
+
+/**
+ * Result of one question of a batch, at the same position as the question in the request.
+ *
+ * @param index    position of the question in the batch
+ * @param response the answer, or {@code null} if this question failed
+ * @param error    why this question failed, or {@code null} on success
+ */
+public record RagBatchItem(int index, RagResponse response, String error) {
+
+    public static RagBatchItem success(int index, RagResponse response) {
+        return new RagBatchItem(index, response, null);
+    }
+
+    public static RagBatchItem failure(int index, String error) {
+        return new RagBatchItem(index, null, error);
+    }
+}
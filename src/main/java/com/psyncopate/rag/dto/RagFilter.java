@@ -0,0 +1,73 @@
+package com.psyncopate.rag.dto;
+
+import com.psyncopate.rag.source.ChunkMetadata;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Restricts a question to part of the corpus. Values within a field are alternatives, fields are combined,
+ * e.g. {@code {"formats": ["excel"], "areas": ["kafka"]}} searches only the Excel files below a {@code kafka} folder.
+ *
+ * @param formats document formats ({@code docx}, {@code pdf}, {@code excel}); see {@link ChunkMetadata#FORMAT}
+ * @param areas   product areas, i.e. first-level sub-folders of the document folders; see {@link ChunkMetadata#AREA}
+ * @param files   file names; see {@link ChunkMetadata#FILE_NAME}
+ */
+public record RagFilter(List<String> formats, List<String> areas, List<String> files) {
+
+    // Values end up inside a jsonpath literal; keep them to characters that need no escaping there
+    private static final Pattern VALUE = Pattern.compile("[\\p{L}\\p{N} ._()+/-]{1,200}");
+
+    public RagFilter {
+        formats = validated(formats, "formats");
+        areas = validated(areas, "areas");
+        files = validated(files, "files");
+    }
+
+    /**
+     * @return whether the filter restricts nothing
+     */
+    public boolean isEmpty() {
+        return formats.isEmpty() && areas.isEmpty() && files.isEmpty();
+    }
+
+    /**
+     * @return the filter as a vector store filter expression, or {@code null} if it restricts nothing
+     */
+    public Filter.Expression toExpression() {
+        var b = new FilterExpressionBuilder();
+        var conditions = new ArrayList<FilterExpressionBuilder.Op>();
+        if (!formats.isEmpty()) {
+            conditions.add(b.in(ChunkMetadata.FORMAT, formats.toArray()));
+        }
+        if (!areas.isEmpty()) {
+            conditions.add(b.in(ChunkMetadata.AREA, areas.toArray()));
+        }
+        if (!files.isEmpty()) {
+            conditions.add(b.in(ChunkMetadata.FILE_NAME, files.toArray()));
+        }
+        if (conditions.isEmpty()) {
+            return null;
+        }
+        FilterExpressionBuilder.Op combined = conditions.get(0);
+        for (int i = 1; i < conditions.size(); i++) {
+            combined = b.and(combined, conditions.get(i));
+        }
+        return combined.build();
+    }
+
+    private static List<String> validated(List<String> values, String field) {
+        if (values == null) {
+            return List.of();
+        }
+        for (String value : values) {
+            if (value == null || !VALUE.matcher(value).matches()) {
+                throw new IllegalArgumentException("Invalid " + field + " filter value: " + value);
+            }
+        }
+        return List.copyOf(values);
+    }
+}
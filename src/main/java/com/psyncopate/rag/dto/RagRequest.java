@@ -1,4 +1,27 @@
 package com.psyncopate.rag.dto;
 
-public record RagRequest(String question) {
+import com.psyncopate.rag.retrieval.RetrievalMode;
+
+/**
+ * A question to the assistant.
+ *
+ * @param question the user's question
+ * @param mode     how relevant documents are retrieved ({@code vector} or {@code hybrid});
+ *                 optional, defaults to {@code rag.retrieval.mode}
+ * @param filter   restricts the search to part of the corpus, e.g. only Excel files; optional
+ * @param timings  whether the response should include the time spent per stage ({@link RagResponse#timings()})
+ */
+public record RagRequest(String question, RetrievalMode mode, RagFilter filter, boolean timings) {
+
+    public RagRequest(String question) {
+        this(question, null);
+    }
+
+    public RagRequest(String question, RetrievalMode mode) {
+        this(question, mode, false);
+    }
+
+    public RagRequest(String question, RetrievalMode mode, boolean timings) {
+        this(question, mode, null, timings);
+    }
 }
@@ -1,6 +1,36 @@
 package com.psyncopate.rag.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
+import java.util.Map;
+
+/**
+ * Answer to a {@link RagRequest}.
+ *
+ * @param answer            the generated answer
+ * @param relevantDocuments the document chunks the answer was grounded on
+ * @param citations         the files (and pages, sheets) those chunks came from, one per distinct location
+ * @param cached            whether the answer was served from the semantic answer cache
+ * @param timings           milliseconds spent per stage, with microsecond precision, if the request asked for them;
+ *                          omitted otherwise
+ */
+public record RagResponse(String answer, List<String> relevantDocuments, List<Citation> citations, boolean cached,
+                          @JsonInclude(JsonInclude.Include.NON_NULL) Map<String, Double> timings) {
+
+    public RagResponse(String answer, List<String> relevantDocuments) {
+        this(answer, relevantDocuments, List.of());
+    }
+
+    public RagResponse(String answer, List<String> relevantDocuments, List<Citation> citations) {
+        this(answer, relevantDocuments, citations, false, null);
+    }
 
-public record RagResponse(String answer, List<String> relevantDocuments) {
+    /**
+     * @param timings milliseconds spent per stage
+     * @return a copy of this response carrying the timings
+     */
+    public RagResponse withTimings(Map<String, Double> timings) {
+        return new RagResponse(answer, relevantDocuments, citations, cached, timings);
+    }
 }
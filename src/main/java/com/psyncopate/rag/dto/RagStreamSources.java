@@ -0,0 +1,13 @@
+package com.psyncopate.rag.dto;
+
+import java.util.List;
+
+/**
+ * First event of a streamed answer: the document chunks the answer will be grounded on.
+ *
+ * @param relevantDocuments the retrieved document chunks
+ * @param citations         the files (and pages, sheets) those chunks came from
+ * @param cached            whether the answer that follows comes from the semantic answer cache
+ */
+public record RagStreamSources(List<String> relevantDocuments, List<Citation> citations, boolean cached) {
+}
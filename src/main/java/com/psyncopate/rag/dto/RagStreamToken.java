@@ -0,0 +1,9 @@
+package com.psyncopate.rag.dto;
+
+/**
+ * A piece of a streamed answer, as produced by the chat model.
+ *
+ * @param text the next fragment of the answer, to be appended as-is
+ */
+public record RagStreamToken(String text) {
+}
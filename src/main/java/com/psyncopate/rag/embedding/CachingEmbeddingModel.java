@@ -0,0 +1,227 @@
+package com.psyncopate.rag.embedding;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link EmbeddingModel} decorator that stores the embeddings of ingested chunks in Postgres, keyed
+ * by the SHA-256 of the chunk text and the embedding model id.
+ *
+ * <p>
+ * Only document embeddings ({@link #embed(List, EmbeddingOptions, BatchingStrategy)}, the path the
+ * vector store and the bulk loader write through) are cached; their number is bounded by the corpus.
+ * Plain {@link #call(EmbeddingRequest)}s — question embeddings — go straight to the delegate, so
+ * every question ever asked does not pile up in the table.
+ * </p>
+ *
+ * <p>
+ * Each document batch is split into cached and uncached texts; only the uncached ones are sent to
+ * the delegate model, in a single call, and their embeddings are written back to the cache.
+ * Re-ingesting an unchanged or mostly-unchanged corpus therefore costs a table lookup per
+ * batch instead of an embedding API round trip. Hit and miss counts are exposed as Micrometer
+ * counters {@code rag.embedding.cache.hits} and {@code rag.embedding.cache.misses}.
+ * </p>
+ */
+public class CachingEmbeddingModel implements EmbeddingModel, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingEmbeddingModel.class);
+
+    private final EmbeddingModel delegate;
+    private final String defaultModel;
+    private final JdbcClient jdbcClient;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param delegate     the model that computes embeddings on a cache miss
+     * @param defaultModel model id used in the cache key when a request does not name one
+     * @param jdbcTemplate JDBC access to the {@code embedding_cache} table
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, String defaultModel, JdbcTemplate jdbcTemplate) {
+        this.delegate = delegate;
+        this.defaultModel = defaultModel;
+        this.jdbcTemplate = jdbcTemplate;
+        this.jdbcClient = JdbcClient.create(jdbcTemplate);
+    }
+
+    /**
+     * Creates the cache table if it does not exist yet.
+     */
+    public void initializeSchema() {
+        jdbcClient.sql("""
+                        CREATE TABLE IF NOT EXISTS embedding_cache (
+                            model text NOT NULL,
+                            content_hash text NOT NULL,
+                            embedding bytea NOT NULL,
+                            created_at timestamptz NOT NULL DEFAULT now(),
+                            PRIMARY KEY (model, content_hash)
+                        )""")
+                .update();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        var embeddings = new ArrayList<float[]>(documents.size());
+        for (List<Document> batch : batchingStrategy.batch(documents)) {
+            List<String> texts = batch.stream().map(Document::getText).toList();
+            EmbeddingResponse response = cachedCall(new EmbeddingRequest(texts, options));
+            response.getResults().forEach(embedding -> embeddings.add(embedding.getOutput()));
+        }
+        return embeddings;
+    }
+
+    /**
+     * Serves the texts of a request from the cache where possible and embeds and stores the rest.
+     */
+    private EmbeddingResponse cachedCall(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        if (texts.isEmpty()) {
+            return new EmbeddingResponse(List.of());
+        }
+        String model = request.getOptions() != null && request.getOptions().getModel() != null
+                ? request.getOptions().getModel()
+                : defaultModel;
+
+        var hashes = new ArrayList<String>(texts.size());
+        texts.forEach(text -> hashes.add(hash(text)));
+        Map<String, float[]> cached = lookup(model, hashes);
+
+        // Distinct uncached texts, in request order; duplicates within a request are embedded once
+        var missing = new LinkedHashMap<String, String>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (!cached.containsKey(hashes.get(i))) {
+                missing.putIfAbsent(hashes.get(i), texts.get(i));
+            }
+        }
+
+        hits.addAndGet(texts.size() - missing.size());
+        misses.addAndGet(missing.size());
+
+        if (!missing.isEmpty()) {
+            var missingHashes = new ArrayList<>(missing.keySet());
+            EmbeddingResponse response = delegate.call(
+                    new EmbeddingRequest(new ArrayList<>(missing.values()), request.getOptions()));
+            var computed = new HashMap<String, float[]>();
+            for (Embedding embedding : response.getResults()) {
+                computed.put(missingHashes.get(embedding.getIndex()), embedding.getOutput());
+            }
+            store(model, computed);
+            cached.putAll(computed);
+        }
+
+        log.debug("Embedding cache: {} of {} texts served from cache", texts.size() - missing.size(), texts.size());
+
+        var embeddings = new ArrayList<Embedding>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(cached.get(hashes.get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("rag.embedding.cache.hits", hits, AtomicLong::get)
+                .description("Texts whose embedding was served from the embedding cache")
+                .register(registry);
+        FunctionCounter.builder("rag.embedding.cache.misses", misses, AtomicLong::get)
+                .description("Texts that had to be sent to the embedding model")
+                .register(registry);
+    }
+
+    /**
+     * @return number of texts served from the cache since startup
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of texts sent to the embedding model since startup
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    private Map<String, float[]> lookup(String model, List<String> hashes) {
+        var found = new HashMap<String, float[]>();
+        jdbcClient.sql("SELECT content_hash, embedding FROM embedding_cache WHERE model = :model AND content_hash IN (:hashes)")
+                .param("model", model)
+                .param("hashes", hashes)
+                .query(rs -> {
+                    found.put(rs.getString("content_hash"), fromBytes(rs.getBytes("embedding")));
+                });
+        return found;
+    }
+
+    private void store(String model, Map<String, float[]> embeddings) {
+        var rows = new ArrayList<Object[]>(embeddings.size());
+        embeddings.forEach((hash, embedding) -> rows.add(new Object[]{model, hash, toBytes(embedding)}));
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO embedding_cache (model, content_hash, embedding) VALUES (?, ?, ?) ON CONFLICT DO NOTHING",
+                rows);
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] toBytes(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        return buffer.array();
+    }
+
+    private static float[] fromBytes(byte[] bytes) {
+        float[] embedding = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(embedding);
+        return embedding;
+    }
+}
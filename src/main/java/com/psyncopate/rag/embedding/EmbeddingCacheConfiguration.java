@@ -0,0 +1,39 @@
+package com.psyncopate.rag.embedding;
+
+import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Puts a persistent, content-addressed cache in front of the OpenAI embedding model.
+ *
+ * <p>
+ * The caching model is marked {@link Primary}, so it is what the pgvector store (and any other
+ * {@code EmbeddingModel} consumer) receives. Disable with {@code rag.embedding-cache.enabled=false}.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "rag.embedding-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class EmbeddingCacheConfiguration {
+
+    /**
+     * Wraps the auto-configured OpenAI embedding model with the Postgres-backed cache.
+     *
+     * @param openAiEmbeddingModel the model called on cache misses
+     * @param jdbcTemplate         JDBC access to the cache table
+     * @param model                embedding model id, part of the cache key
+     * @return the caching embedding model
+     */
+    @Bean
+    @Primary
+    public CachingEmbeddingModel cachingEmbeddingModel(OpenAiEmbeddingModel openAiEmbeddingModel, JdbcTemplate jdbcTemplate,
+                                                       @Value("${spring.ai.openai.embedding.options.model:text-embedding-ada-002}") String model) {
+        var cachingModel = new CachingEmbeddingModel(openAiEmbeddingModel, model, jdbcTemplate);
+        cachingModel.initializeSchema();
+        return cachingModel;
+    }
+}
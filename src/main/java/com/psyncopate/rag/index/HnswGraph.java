@@ -0,0 +1,209 @@
+package com.psyncopate.rag.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Hierarchical Navigable Small World graph over the slots of a {@link VectorSegments} store.
+ *
+ * <p>
+ * Each slot is a node with a random top level; on every level it keeps links to its nearest
+ * neighbours ({@code m} per upper level, {@code 2m} on level 0). Inserting a node searches the
+ * graph from the top for its neighbours, and a query descends greedily through the upper levels
+ * before a beam search of width {@code efSearch} on level 0. Nodes are never removed; callers
+ * skip deleted slots when collecting results and rebuild the graph when too many accumulate.
+ * </p>
+ *
+ * <p>
+ * Not thread-safe; {@link InMemoryVectorIndex} guards it with a read-write lock.
+ * </p>
+ */
+class HnswGraph {
+
+    private final VectorSegments vectors;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    // links.get(slot)[level] = neighbour slots on that level
+    private final List<int[][]> links = new ArrayList<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswGraph(VectorSegments vectors, int m, int efConstruction) {
+        this.vectors = vectors;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    /**
+     * Links a slot into the graph. Slots must be inserted in increasing order.
+     *
+     * @param slot the slot of a vector already appended to the store
+     */
+    void insert(int slot) {
+        while (links.size() <= slot) {
+            links.add(null);
+        }
+        int level = (int) Math.floor(-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[0];
+        }
+        links.set(slot, nodeLinks);
+
+        if (entryPoint < 0) {
+            entryPoint = slot;
+            maxLevel = level;
+            return;
+        }
+
+        float[] query = vectors.get(slot);
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> found = searchLayer(query, current, efConstruction, l);
+            int[] neighbours = closest(found, m);
+            nodeLinks[l] = neighbours;
+            for (int neighbour : neighbours) {
+                connect(neighbour, slot, l);
+            }
+            current = found.get(0).slot();
+        }
+
+        if (level > maxLevel) {
+            entryPoint = slot;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * Approximate nearest neighbours of a normalized query.
+     *
+     * @param query    the normalized query vector
+     * @param ef       beam width on level 0; at least the number of results wanted
+     * @param excluded slots to leave out of the results (deleted vectors); still traversed
+     * @return candidates, most similar first
+     */
+    List<Candidate> search(float[] query, int ef, BitSet excluded) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        List<Candidate> found = searchLayer(query, current, ef, 0);
+        found.removeIf(candidate -> excluded.get(candidate.slot()));
+        return found;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = vectors.similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : links.get(current)[level]) {
+                float similarity = vectors.similarity(query, neighbour);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one level.
+     *
+     * @return up to {@code ef} candidates, most similar first
+     */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level) {
+        var visited = new BitSet();
+        var frontier = new PriorityQueue<>(Comparator.comparingDouble(Candidate::similarity).reversed());
+        var results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::similarity));
+
+        var first = new Candidate(start, vectors.similarity(query, start));
+        visited.set(start);
+        frontier.add(first);
+        results.add(first);
+
+        while (!frontier.isEmpty()) {
+            Candidate candidate = frontier.poll();
+            if (results.size() >= ef && candidate.similarity() < results.peek().similarity()) {
+                break;
+            }
+            int[][] candidateLinks = links.get(candidate.slot());
+            if (level >= candidateLinks.length) {
+                continue;
+            }
+            for (int neighbour : candidateLinks[level]) {
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float similarity = vectors.similarity(query, neighbour);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    var next = new Candidate(neighbour, similarity);
+                    frontier.add(next);
+                    results.add(next);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        var ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+        return ordered;
+    }
+
+    private void connect(int node, int neighbour, int level) {
+        int[][] nodeLinks = links.get(node);
+        int[] current = nodeLinks[level];
+        int[] extended = new int[current.length + 1];
+        System.arraycopy(current, 0, extended, 0, current.length);
+        extended[current.length] = neighbour;
+
+        int maxLinks = level == 0 ? 2 * m : m;
+        if (extended.length <= maxLinks) {
+            nodeLinks[level] = extended;
+            return;
+        }
+        // Over capacity: keep the closest neighbours of this node
+        float[] nodeVector = vectors.get(node);
+        var candidates = new ArrayList<Candidate>(extended.length);
+        for (int slot : extended) {
+            candidates.add(new Candidate(slot, vectors.similarity(nodeVector, slot)));
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+        nodeLinks[level] = closest(candidates, maxLinks);
+    }
+
+    private static int[] closest(List<Candidate> sorted, int count) {
+        int n = Math.min(count, sorted.size());
+        int[] slots = new int[n];
+        for (int i = 0; i < n; i++) {
+            slots[i] = sorted.get(i).slot();
+        }
+        return slots;
+    }
+
+    /**
+     * A slot and its similarity to the current query.
+     */
+    record Candidate(int slot, float similarity) {
+    }
+}
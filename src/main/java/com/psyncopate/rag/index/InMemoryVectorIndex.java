@@ -0,0 +1,230 @@
+package com.psyncopate.rag.index;
+
+import com.psyncopate.rag.index.HnswGraph.Candidate;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe in-memory nearest-neighbour index of chunk embeddings.
+ *
+ * <p>
+ * Embeddings live off-heap in {@link VectorSegments}; chunk ids, text and metadata stay on the
+ * heap so results can be returned without touching the database. Below {@code hnswThreshold}
+ * live vectors a query is an exact brute-force scan; from the threshold on, an {@link HnswGraph}
+ * is built once and then maintained on every insert. Removing a chunk only marks its slot
+ * deleted; when deleted slots make up more than a quarter of the store, the live vectors are
+ * copied into fresh segments and the graph is rebuilt.
+ * </p>
+ */
+class InMemoryVectorIndex {
+
+    private static final int SEGMENT_CAPACITY = 4096;
+
+    private final int dimensions;
+    private final VectorIndexProperties properties;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private VectorSegments vectors;
+    private HnswGraph graph;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+
+    InMemoryVectorIndex(int dimensions, VectorIndexProperties properties) {
+        this.dimensions = dimensions;
+        this.properties = properties;
+        this.vectors = new VectorSegments(dimensions, SEGMENT_CAPACITY);
+    }
+
+    /**
+     * Adds a chunk, replacing any chunk with the same id.
+     *
+     * @param id        chunk id, as in the {@code vector_store} table
+     * @param text      chunk content
+     * @param metadata  chunk metadata
+     * @param embedding chunk embedding
+     */
+    void put(String id, String text, Map<String, Object> metadata, float[] embedding) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            int slot = vectors.append(embedding);
+            chunks.add(new Chunk(id, text, metadata));
+            slotsById.put(id, slot);
+            if (graph != null) {
+                graph.insert(slot);
+            } else if (liveCount() >= properties.hnswThreshold()) {
+                buildGraph();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the chunks with the given ids, if present.
+     *
+     * @param ids chunk ids
+     */
+    void remove(Iterable<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                removeLocked(id);
+            }
+            if (deleted.cardinality() > vectors.size() / 4) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the chunks most similar to a query embedding.
+     *
+     * @param embedding           the query embedding
+     * @param topK                maximum number of results
+     * @param similarityThreshold minimum cosine similarity of a result
+     * @return matching chunks, most similar first, with the similarity as score
+     */
+    List<Document> search(float[] embedding, int topK, double similarityThreshold) {
+        float[] query = VectorSegments.normalize(embedding);
+        lock.readLock().lock();
+        try {
+            List<Candidate> candidates = graph != null
+                    ? graph.search(query, Math.max(properties.efSearch(), topK), deleted)
+                    : scan(query, topK);
+
+            var results = new ArrayList<Document>(Math.min(topK, candidates.size()));
+            for (Candidate candidate : candidates) {
+                if (results.size() == topK || candidate.similarity() < similarityThreshold) {
+                    break;
+                }
+                Chunk chunk = chunks.get(candidate.slot());
+                results.add(Document.builder()
+                        .id(chunk.id())
+                        .text(chunk.text())
+                        .metadata(new HashMap<>(chunk.metadata()))
+                        .score((double) candidate.similarity())
+                        .build());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of chunks in the index
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return whether queries are answered by the HNSW graph rather than a scan
+     */
+    boolean usesGraph() {
+        lock.readLock().lock();
+        try {
+            return graph != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return off-heap bytes reserved for embeddings
+     */
+    long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return vectors.reservedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact search: scores every live slot, keeping the best {@code topK} in a min-heap.
+     */
+    private List<Candidate> scan(float[] query, int topK) {
+        var best = new PriorityQueue<>(Comparator.comparingDouble(Candidate::similarity));
+        for (int slot = 0; slot < vectors.size(); slot++) {
+            if (deleted.get(slot)) {
+                continue;
+            }
+            float similarity = vectors.similarity(query, slot);
+            if (best.size() < topK) {
+                best.add(new Candidate(slot, similarity));
+            } else if (similarity > best.peek().similarity()) {
+                best.poll();
+                best.add(new Candidate(slot, similarity));
+            }
+        }
+        var ordered = new ArrayList<>(best);
+        ordered.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+        return ordered;
+    }
+
+    private void removeLocked(String id) {
+        Integer slot = slotsById.remove(id);
+        if (slot != null) {
+            deleted.set(slot);
+            chunks.set(slot, null);
+        }
+    }
+
+    private int liveCount() {
+        return slotsById.size();
+    }
+
+    private void buildGraph() {
+        graph = new HnswGraph(vectors, properties.m(), properties.efConstruction());
+        for (int slot = 0; slot < vectors.size(); slot++) {
+            // Deleted slots are linked too, keeping slot order; they are filtered out of results
+            graph.insert(slot);
+        }
+    }
+
+    /**
+     * Copies the live vectors into fresh segments, dropping deleted slots, and rebuilds the graph.
+     */
+    private void compact() {
+        VectorSegments old = vectors;
+        var oldChunks = new ArrayList<>(chunks);
+        vectors = new VectorSegments(dimensions, SEGMENT_CAPACITY);
+        chunks.clear();
+        slotsById.clear();
+        for (int slot = 0; slot < old.size(); slot++) {
+            if (!deleted.get(slot)) {
+                Chunk chunk = oldChunks.get(slot);
+                slotsById.put(chunk.id(), vectors.append(old.get(slot)));
+                chunks.add(chunk);
+            }
+        }
+        deleted.clear();
+        graph = null;
+        if (liveCount() >= properties.hnswThreshold()) {
+            buildGraph();
+        }
+    }
+
+    private record Chunk(String id, String text, Map<String, Object> metadata) {
+    }
+}
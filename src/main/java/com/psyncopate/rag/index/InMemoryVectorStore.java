@@ -0,0 +1,206 @@
+package com.psyncopate.rag.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import com.psyncopate.rag.source.CorpusChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link VectorStore} that answers similarity searches from an {@link InMemoryVectorIndex} while
+ * pgvector remains the source of truth.
+ *
+ * <p>
+ * At startup every row of {@code vector_store} is loaded into the index. Writes go to the
+ * {@link PgVectorStore} first (which embeds the documents) and are then mirrored into the index,
+ * reading the stored embeddings back; deletes are applied to both. Searches embed the query and
+ * scan or walk the index without a database round trip. Searches with a filter expression are
+ * delegated to pgvector, which evaluates metadata filters natively.
+ * </p>
+ *
+ * <p>
+ * When a bulk load replaces {@code vector_store} as a whole, a new index is built from the new table
+ * on the ingestion job's thread and swapped in; searches use the previous one until then.
+ * </p>
+ */
+public class InMemoryVectorStore implements VectorStore {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryVectorStore.class);
+
+    private static final String SELECT_CHUNKS = "SELECT id::text AS id, content, metadata::text AS metadata, embedding FROM vector_store";
+
+    private final PgVectorStore delegate;
+    private final JdbcClient jdbcClient;
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final VectorIndexProperties properties;
+    private final PgVectorFilterExpressionConverter filterConverter = new PgVectorFilterExpressionConverter();
+
+    private volatile InMemoryVectorIndex index;
+
+    public InMemoryVectorStore(PgVectorStore delegate, JdbcClient jdbcClient, EmbeddingModel embeddingModel,
+                               ObjectMapper objectMapper, VectorIndexProperties properties) {
+        this.delegate = delegate;
+        this.jdbcClient = jdbcClient;
+        this.embeddingModel = embeddingModel;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * Loads every stored chunk and its embedding into memory.
+     */
+    public void load() {
+        long start = System.nanoTime();
+        jdbcClient.sql(SELECT_CHUNKS).query(this::putRow);
+        logLoaded(index, start);
+    }
+
+    /**
+     * Builds a new index from every stored chunk and replaces the current one with it.
+     */
+    public void reload() {
+        long start = System.nanoTime();
+        var loaded = new AtomicReference<InMemoryVectorIndex>();
+        jdbcClient.sql(SELECT_CHUNKS).query(rs -> {
+            float[] embedding = new PGvector(rs.getString("embedding")).toArray();
+            if (loaded.get() == null) {
+                loaded.set(new InMemoryVectorIndex(embedding.length, properties));
+            }
+            loaded.get().put(rs.getString("id"), rs.getString("content"), parseMetadata(rs.getString("metadata")), embedding);
+        });
+        index = loaded.get();
+        logLoaded(loaded.get(), start);
+    }
+
+    /**
+     * Reloads the index after a bulk load replaced the table; other changes were mirrored as they were written.
+     *
+     * @param event the change
+     */
+    @EventListener
+    public void onCorpusChanged(CorpusChangedEvent event) {
+        if (event.corpusReplaced()) {
+            reload();
+        }
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<UUID> ids = documents.stream().map(document -> UUID.fromString(document.getId())).toList();
+        jdbcClient.sql(SELECT_CHUNKS + " WHERE id IN (:ids)")
+                .param("ids", ids)
+                .query(this::putRow);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+        if (index != null) {
+            index.remove(idList);
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        // Same jsonpath translation as PgVectorStore, so both sides remove exactly the same chunks
+        List<String> ids = jdbcClient.sql("SELECT id::text FROM vector_store WHERE metadata::jsonb @@ CAST(:filter AS jsonpath)")
+                .param("filter", filterConverter.convertExpression(filterExpression))
+                .query(String.class)
+                .list();
+        delegate.delete(filterExpression);
+        if (index != null) {
+            index.remove(ids);
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        InMemoryVectorIndex current = index;
+        if (request.hasFilterExpression() || current == null) {
+            return delegate.similaritySearch(request);
+        }
+        float[] embedding = embeddingModel.embed(request.getQuery());
+        return current.search(embedding, request.getTopK(), request.getSimilarityThreshold());
+    }
+
+    /**
+     * Searches the index for an already embedded query, without a filter.
+     *
+     * @param embedding the query embedding
+     * @param topK      number of chunks to return
+     * @return the nearest chunks, best first, scored by cosine similarity; empty while nothing is loaded
+     */
+    public List<Document> similaritySearch(float[] embedding, int topK) {
+        InMemoryVectorIndex current = index;
+        return current != null ? current.search(embedding, topK, 0.0) : List.of();
+    }
+
+    @Override
+    public String getName() {
+        return "InMemoryVectorStore";
+    }
+
+    private void putRow(ResultSet rs) throws SQLException {
+        float[] embedding = new PGvector(rs.getString("embedding")).toArray();
+        indexFor(embedding.length).put(rs.getString("id"), rs.getString("content"),
+                parseMetadata(rs.getString("metadata")), embedding);
+    }
+
+    private static void logLoaded(InMemoryVectorIndex loaded, long startNanos) {
+        log.info("Loaded {} chunks into the in-memory vector index in {} ms ({} MB off-heap, {})",
+                loaded != null ? loaded.size() : 0,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                loaded != null ? loaded.offHeapBytes() / (1024 * 1024) : 0,
+                loaded != null && loaded.usesGraph() ? "HNSW" : "brute force");
+    }
+
+    private InMemoryVectorIndex indexFor(int dimensions) {
+        InMemoryVectorIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    index = new InMemoryVectorIndex(dimensions, properties);
+                }
+                current = index;
+            }
+        }
+        return current;
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        if (json == null) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, new TypeReference<HashMap<String, Object>>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid chunk metadata: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.psyncopate.rag.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+/**
+ * Serves vector similarity searches from memory when {@code rag.vector-index.enabled=true}.
+ *
+ * <p>
+ * The in-memory store is marked {@link Primary}, so the docs loader writes through it and the
+ * retrieval service searches it; pgvector keeps every chunk and stays the source of truth.
+ * </p>
+ */
+@Configuration
+@EnableConfigurationProperties(VectorIndexProperties.class)
+@ConditionalOnProperty(prefix = "rag.vector-index", name = "enabled", havingValue = "true")
+public class VectorIndexConfiguration {
+
+    /**
+     * Wraps the auto-configured pgvector store with the in-memory index and loads the index.
+     *
+     * @param pgVectorStore  the pgvector store holding all chunks
+     * @param jdbcClient     JDBC access to the {@code vector_store} table
+     * @param embeddingModel embeds search queries
+     * @param objectMapper   parses chunk metadata
+     * @param properties     index settings
+     * @return the in-memory vector store
+     */
+    @Bean
+    @Primary
+    public InMemoryVectorStore inMemoryVectorStore(PgVectorStore pgVectorStore, JdbcClient jdbcClient,
+                                                   EmbeddingModel embeddingModel, ObjectMapper objectMapper,
+                                                   VectorIndexProperties properties) {
+        var store = new InMemoryVectorStore(pgVectorStore, jdbcClient, embeddingModel, objectMapper, properties);
+        store.load();
+        return store;
+    }
+}
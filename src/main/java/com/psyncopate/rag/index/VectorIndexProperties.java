@@ -0,0 +1,22 @@
+package com.psyncopate.rag.index;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the in-process vector index, bound from {@code rag.vector-index.*}.
+ *
+ * @param enabled        serve similarity searches from memory instead of pgvector
+ * @param hnswThreshold  number of chunks from which an HNSW graph replaces the exact brute-force scan
+ * @param m              HNSW links per node on upper levels (twice as many on level 0)
+ * @param efConstruction HNSW beam width while inserting; higher builds a better graph, slower
+ * @param efSearch       HNSW beam width while querying; higher gives better recall, slower
+ */
+@ConfigurationProperties(prefix = "rag.vector-index")
+public record VectorIndexProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("20000") int hnswThreshold,
+        @DefaultValue("16") int m,
+        @DefaultValue("100") int efConstruction,
+        @DefaultValue("64") int efSearch) {
+}
@@ -0,0 +1,115 @@
+package com.psyncopate.rag.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only store of unit-length float vectors in off-heap memory.
+ *
+ * <p>
+ * Vectors are laid out back to back in direct buffers of {@code segmentCapacity} vectors each,
+ * so the embeddings do not count against the Java heap or burden the garbage collector, and a
+ * scan walks contiguous memory. A vector is addressed by its slot, the order in which it was
+ * appended. Because every vector is normalized on the way in, cosine similarity is a plain dot
+ * product.
+ * </p>
+ *
+ * <p>
+ * Not thread-safe; {@link InMemoryVectorIndex} guards it with a read-write lock.
+ * </p>
+ */
+class VectorSegments {
+
+    private final int dimensions;
+    private final int segmentCapacity;
+    private final List<FloatBuffer> segments = new ArrayList<>();
+    private int size;
+
+    VectorSegments(int dimensions, int segmentCapacity) {
+        this.dimensions = dimensions;
+        this.segmentCapacity = segmentCapacity;
+    }
+
+    /**
+     * Normalizes and appends a vector.
+     *
+     * @param vector the vector, of {@link #dimensions()} components
+     * @return the slot of the stored vector
+     */
+    int append(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + vector.length);
+        }
+        if (size % segmentCapacity == 0) {
+            segments.add(ByteBuffer.allocateDirect(segmentCapacity * dimensions * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer());
+        }
+        FloatBuffer segment = segments.get(size / segmentCapacity);
+        segment.put((size % segmentCapacity) * dimensions, normalize(vector));
+        return size++;
+    }
+
+    /**
+     * Dot product of a normalized query with the vector in a slot, i.e. their cosine similarity.
+     */
+    float similarity(float[] query, int slot) {
+        FloatBuffer segment = segments.get(slot / segmentCapacity);
+        int offset = (slot % segmentCapacity) * dimensions;
+        // Four independent accumulators break the add dependency chain and let the JIT vectorize the loop
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int bound = dimensions - 3; i < bound; i += 4) {
+            s0 += query[i] * segment.get(offset + i);
+            s1 += query[i + 1] * segment.get(offset + i + 1);
+            s2 += query[i + 2] * segment.get(offset + i + 2);
+            s3 += query[i + 3] * segment.get(offset + i + 3);
+        }
+        for (; i < dimensions; i++) {
+            s0 += query[i] * segment.get(offset + i);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Copies the vector in a slot to the heap.
+     */
+    float[] get(int slot) {
+        float[] vector = new float[dimensions];
+        segments.get(slot / segmentCapacity).get((slot % segmentCapacity) * dimensions, vector);
+        return vector;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return off-heap bytes reserved by the allocated segments
+     */
+    long reservedBytes() {
+        return (long) segments.size() * segmentCapacity * dimensions * Float.BYTES;
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float component : vector) {
+            norm += component * component;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                normalized[i] = (float) (vector[i] / norm);
+            }
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,201 @@
+package com.psyncopate.rag.llm;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead around chat model calls.
+ *
+ * <p>
+ * At most {@code maxInFlight} calls run at once; up to {@code maxWaiting} further callers queue
+ * (fairly) for a free slot for at most {@code maxWait}. Callers beyond the queue, and callers whose
+ * wait runs out, get a {@link LlmBusyException} straight away instead of piling up on request
+ * threads while the model is slow or rate limited. Retrieval and cache lookups run outside the
+ * bulkhead, so a slot is held only for the model call itself.
+ * </p>
+ *
+ * <p>
+ * Each attempt of a blocking call is bounded by the HTTP client's read timeout
+ * ({@code spring.http.client.read-timeout}), but Spring AI retries failed attempts, so the call as a
+ * whole runs on one of {@code maxInFlight} call threads and the caller gives up on it once
+ * {@code callTimeout} has passed. The call is then interrupted, which cancels the JDK HTTP exchange
+ * and ends a retry back-off, but its slot is only released once the call has actually returned, so
+ * abandoned calls still count against {@code maxInFlight}.
+ * Streamed calls fail once no token has arrived for {@code tokenTimeout}.
+ * </p>
+ */
+@Component
+@EnableConfigurationProperties(LlmBulkheadProperties.class)
+public class LlmBulkhead {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmBulkhead.class);
+
+    private final LlmBulkheadProperties properties;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ExecutorService callExecutor;
+
+    public LlmBulkhead(LlmBulkheadProperties properties) {
+        this.properties = properties;
+        this.permits = new Semaphore(properties.maxInFlight(), true);
+        var counter = new AtomicInteger();
+        // A call holds its slot while it runs, so there are never more than maxInFlight calls to run
+        this.callExecutor = Executors.newFixedThreadPool(properties.maxInFlight(), runnable -> {
+            Thread thread = new Thread(runnable, "llm-call-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs a blocking chat model call once a slot is free, within the overall {@code callTimeout}. The
+     * slot is released when the call returns, which for an abandoned call may be after this method has.
+     *
+     * @param call the model call
+     * @return the call's result
+     * @throws LlmBusyException      if no slot became free in time
+     * @throws IllegalStateException if the call, retries included, did not finish within {@code callTimeout}
+     */
+    public <T> T call(Supplier<T> call) {
+        acquire();
+        // Whoever claims the call first owns the slot: the call thread when it starts, or the caller
+        // when it gives up on a call that never started
+        var claimed = new AtomicBoolean();
+        Future<T> result;
+        try {
+            result = callExecutor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return call.get();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        try {
+            return result.get(properties.callTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            abandon(result, claimed);
+            throw new IllegalStateException(
+                    "No response from the chat model within " + properties.callTimeout().toSeconds() + "s", e);
+        } catch (InterruptedException e) {
+            abandon(result, claimed);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the chat model", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void abandon(Future<?> result, AtomicBoolean claimed) {
+        if (claimed.compareAndSet(false, true)) {
+            // Never started, so no call thread will release the slot
+            result.cancel(false);
+            permits.release();
+            return;
+        }
+        result.cancel(true);
+    }
+
+    /**
+     * Subscribes to a streamed chat model call once a slot is free. The slot is held until the
+     * stream completes, fails or is cancelled.
+     *
+     * @param call creates the model stream
+     * @return the stream; it fails with {@link LlmBusyException} if no slot became free in time,
+     * and with a {@link TimeoutException} if the model stays silent for longer than {@code tokenTimeout}
+     */
+    public <T> Flux<T> stream(Supplier<Flux<T>> call) {
+        Flux<T> timeout = Flux.error(() -> new TimeoutException(
+                "No response from the chat model within " + properties.tokenTimeout().toSeconds() + "s"));
+        return Flux.using(
+                        () -> {
+                            acquire();
+                            return permits;
+                        },
+                        slot -> call.get().timeout(properties.tokenTimeout(), timeout),
+                        Semaphore::release)
+                // Waiting for a slot blocks; never do it on a non-blocking thread
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Rejects a new request up front when every slot is taken and the wait queue is full, so streamed
+     * requests can still be answered with {@code 429} before the response is committed.
+     *
+     * @throws LlmBusyException if the bulkhead is saturated
+     */
+    public void checkCapacity() {
+        if (permits.availablePermits() == 0 && waiting.get() >= properties.maxWaiting()) {
+            throw busy("all " + properties.maxInFlight() + " chat model slots and the wait queue are full");
+        }
+    }
+
+    /**
+     * @return the back-off suggested to rejected clients
+     */
+    public Duration retryAfter() {
+        return properties.retryAfter();
+    }
+
+    private void acquire() {
+        try {
+            // Zero-timeout tryAcquire honours the fairness of the semaphore, unlike tryAcquire()
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                return;
+            }
+            if (waiting.incrementAndGet() > properties.maxWaiting()) {
+                waiting.decrementAndGet();
+                throw busy("all " + properties.maxInFlight() + " chat model slots and the wait queue are full");
+            }
+            try {
+                if (!permits.tryAcquire(properties.maxWait().toNanos(), TimeUnit.NANOSECONDS)) {
+                    throw busy("no chat model slot became free within " + properties.maxWait().toMillis() + " ms");
+                }
+            } finally {
+                waiting.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw busy("interrupted while waiting for a chat model slot");
+        }
+    }
+
+    private LlmBusyException busy(String reason) {
+        log.warn("Rejected chat model call: {}", reason);
+        return new LlmBusyException("The assistant is busy: " + reason, properties.retryAfter());
+    }
+}
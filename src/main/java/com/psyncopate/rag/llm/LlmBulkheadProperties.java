@@ -0,0 +1,26 @@
+package com.psyncopate.rag.llm;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Limits on concurrent chat model calls, bound from {@code rag.llm-bulkhead.*}.
+ *
+ * @param maxInFlight  chat model calls running at once across the endpoints, the shell and batches
+ * @param maxWaiting   callers allowed to wait for a free slot; any further caller is rejected immediately
+ * @param maxWait      how long a caller waits for a free slot before it is rejected
+ * @param retryAfter   back-off suggested to rejected HTTP clients in the {@code Retry-After} header
+ * @param tokenTimeout longest silence tolerated in a streamed answer, before the first token or between two tokens
+ * @param callTimeout  overall deadline of a blocking call, retries and their back-off included
+ */
+@ConfigurationProperties(prefix = "rag.llm-bulkhead")
+public record LlmBulkheadProperties(
+        @DefaultValue("8") int maxInFlight,
+        @DefaultValue("16") int maxWaiting,
+        @DefaultValue("5s") Duration maxWait,
+        @DefaultValue("5s") Duration retryAfter,
+        @DefaultValue("60s") Duration tokenTimeout,
+        @DefaultValue("90s") Duration callTimeout) {
+}
@@ -0,0 +1,24 @@
+package com.psyncopate.rag.llm;
+
+import java.time.Duration;
+
+/**
+ * Thrown when the {@link LlmBulkhead} has no capacity left for another chat model call.
+ * HTTP endpoints answer it with {@code 429 Too Many Requests} and a {@code Retry-After} header.
+ */
+public class LlmBusyException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public LlmBusyException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return how long the client should wait before trying again
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,78 @@
+package com.psyncopate.rag.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Times the stages of answering one question. Every stage is recorded in the {@code rag.query.stage}
+ * timer, and also kept per question so the response can show where a slow answer spent its time.
+ *
+ * <p>
+ * Stages run one after another but possibly on different threads, hence the synchronization.
+ * </p>
+ */
+public final class QueryTimings {
+
+    private final RagMetrics metrics;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> nanos = new LinkedHashMap<>();
+
+    QueryTimings(RagMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs and times a stage. The stage is recorded even if it fails.
+     *
+     * @param stage the stage name
+     * @param step  the work of the stage
+     * @return the stage's result
+     */
+    public <T> T time(String stage, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the time from the start of the question until now as a stage, e.g. the time to the
+     * first streamed token.
+     *
+     * @param stage the stage name
+     */
+    public void mark(String stage) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return milliseconds per stage, to the microsecond, in the order the stages ran, plus the {@code total} so far;
+     * cache lookups and other in-memory stages take well under a millisecond
+     */
+    public synchronized Map<String, Double> toMap() {
+        var result = new LinkedHashMap<String, Double>();
+        nanos.forEach((stage, stageNanos) -> result.put(stage, millis(stageNanos)));
+        result.put("total", millis(System.nanoTime() - startNanos));
+        return result;
+    }
+
+    /**
+     * Records a stage that was timed by the caller, e.g. one that completes asynchronously.
+     *
+     * @param stage the stage name
+     * @param nanos the stage's duration in nanoseconds
+     */
+    public void record(String stage, long nanos) {
+        metrics.recordStage(stage, nanos);
+        synchronized (this) {
+            this.nanos.merge(stage, nanos, Long::sum);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -0,0 +1,176 @@
+package com.psyncopate.rag.metrics;
+
+import com.psyncopate.rag.source.IngestionPipeline.IngestionReport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the question-answering path and of document ingestion.
+ *
+ * <p>
+ * Question path:
+ * <ul>
+ *     <li>{@code rag.query.stage} – timer with percentile histogram per {@code stage}
+ *         ({@code rewrite}, {@code embed}, {@code answer_cache}, {@code retrieve}, {@code assemble}, {@code prompt}, {@code first_token},
+ *         {@code generate}); see {@link QueryTimings}</li>
+ *     <li>{@code rag.query.chunks} – chunks per question, {@code kind=retrieved} before and
+ *         {@code kind=packed} after near-duplicate removal and token packing</li>
+ *     <li>{@code rag.llm.tokens} – prompt and completion tokens reported by the chat model, by {@code type}</li>
+ * </ul>
+ * Embedding and chat model latency per call are also recorded by Spring AI's own observations
+ * ({@code gen_ai.client.operation}); the {@code embed} stage is the question's single embedding call,
+ * shared by the answer cache lookup and the search.
+ * </p>
+ *
+ * <p>
+ * Ingestion: {@code rag.ingestion.files} and {@code rag.ingestion.chunks} count what was written (their
+ * rate is the files/chunks per second), {@code rag.ingestion.embedding.batch.size} is the distribution
+ * of chunks per embedding batch, and {@code rag.ingestion.run} times whole synchronization runs.
+ * {@code rag.ingestion.duplicates} counts chunks collapsed into an identical chunk instead of being
+ * embedded, and {@code rag.ingestion.duplicate.tokens} the embedding input that saved.
+ * </p>
+ */
+@Component
+public class RagMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final DistributionSummary retrievedChunks;
+    private final DistributionSummary packedChunks;
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+    private final Counter ingestedFiles;
+    private final Counter ingestedChunks;
+    private final DistributionSummary embeddingBatchSize;
+    private final Timer ingestionRuns;
+    private final Counter duplicateChunks;
+    private final Counter duplicateTokens;
+
+    public RagMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.retrievedChunks = chunks("retrieved");
+        this.packedChunks = chunks("packed");
+        this.promptTokens = tokens("prompt");
+        this.completionTokens = tokens("completion");
+        this.ingestedFiles = Counter.builder("rag.ingestion.files")
+                .description("Files fully ingested into the vector store")
+                .register(registry);
+        this.ingestedChunks = Counter.builder("rag.ingestion.chunks")
+                .description("Chunks embedded and written to the vector store")
+                .register(registry);
+        this.embeddingBatchSize = DistributionSummary.builder("rag.ingestion.embedding.batch.size")
+                .description("Chunks per embedding batch written by the ingestion pipeline")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.ingestionRuns = Timer.builder("rag.ingestion.run")
+                .description("Duration of document synchronization runs")
+                .register(registry);
+        this.duplicateChunks = Counter.builder("rag.ingestion.duplicates")
+                .description("Near-duplicate chunks collapsed into an existing chunk instead of being embedded")
+                .register(registry);
+        this.duplicateTokens = Counter.builder("rag.ingestion.duplicate.tokens")
+                .description("Embedding input tokens saved by collapsing near-duplicate chunks")
+                .register(registry);
+    }
+
+    /**
+     * @return a new per-question stage timer
+     */
+    public QueryTimings startQuery() {
+        return new QueryTimings(this);
+    }
+
+    void recordStage(String stage, long nanos) {
+        stageTimers.computeIfAbsent(stage, name -> Timer.builder("rag.query.stage")
+                        .description("Time spent in each stage of answering a question")
+                        .tag("stage", name)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param retrieved candidate chunks returned by the search
+     * @param packed    chunks that made it into the prompt
+     */
+    public void recordChunks(int retrieved, int packed) {
+        retrievedChunks.record(retrieved);
+        packedChunks.record(packed);
+    }
+
+    /**
+     * Counts the tokens of a chat model response, or of the final chunk of a streamed one.
+     * Responses without usage information are ignored.
+     *
+     * @param response the chat model response
+     */
+    public void recordUsage(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null) {
+            return;
+        }
+        if (usage.getPromptTokens() != null && usage.getPromptTokens() > 0) {
+            promptTokens.increment(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null && usage.getCompletionTokens() > 0) {
+            completionTokens.increment(usage.getCompletionTokens());
+        }
+    }
+
+    /**
+     * @param chunks number of chunks written for a fully ingested file
+     */
+    public void recordFileIngested(int chunks) {
+        ingestedFiles.increment();
+        ingestedChunks.increment(chunks);
+    }
+
+    /**
+     * @param size chunks in a batch handed to the vector store for embedding
+     */
+    public void recordEmbeddingBatch(int size) {
+        embeddingBatchSize.record(size);
+    }
+
+    /**
+     * @param report summary of a synchronization run
+     */
+    public void recordIngestionRun(IngestionReport report) {
+        ingestionRuns.record(report.elapsed());
+    }
+
+    /**
+     * @param chunks near-duplicate chunks dropped in a synchronization run
+     * @param tokens tokens of those chunks
+     */
+    public void recordDuplicates(int chunks, long tokens) {
+        duplicateChunks.increment(chunks);
+        duplicateTokens.increment(tokens);
+    }
+
+    private DistributionSummary chunks(String kind) {
+        return DistributionSummary.builder("rag.query.chunks")
+                .description("Document chunks per question")
+                .tag("kind", kind)
+                .register(registry);
+    }
+
+    private Counter tokens(String type) {
+        return Counter.builder("rag.llm.tokens")
+                .description("Tokens consumed by chat model calls")
+                .tag("type", type)
+                .register(registry);
+    }
+}
@@ -0,0 +1,25 @@
+package com.psyncopate.rag.retrieval;
+
+import com.psyncopate.rag.dto.Citation;
+
+import java.util.List;
+
+/**
+ * The document context of a question, as packed by the {@link ContextAssembler}.
+ *
+ * @param documents the selected chunk contents, best first, within the token budget
+ * @param citations where those chunks came from, one per distinct file location, in the same order
+ * @param chunks    the selected chunks' ids, scores and token counts, in the order of {@code documents}
+ */
+public record AssembledContext(List<String> documents, List<Citation> citations, List<SelectedChunk> chunks) {
+
+    /**
+     * A chunk that made it into the context.
+     *
+     * @param id     chunk id in {@code vector_store}
+     * @param score  retrieval score: cosine similarity, or the fused rank score in hybrid mode
+     * @param tokens tokens it takes of the context budget (cl100k_base, joining newline included)
+     */
+    public record SelectedChunk(String id, double score, int tokens) {
+    }
+}
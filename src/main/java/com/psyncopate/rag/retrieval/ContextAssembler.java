@@ -0,0 +1,268 @@
+package com.psyncopate.rag.retrieval;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.psyncopate.rag.conversation.ConversationHistory;
+import com.psyncopate.rag.dto.Citation;
+import com.psyncopate.rag.dto.RagFilter;
+import com.psyncopate.rag.metrics.QueryTimings;
+import com.psyncopate.rag.metrics.RagMetrics;
+import com.psyncopate.rag.source.ChunkMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static com.psyncopate.rag.source.IngestionManifest.SOURCE_KEY;
+
+/**
+ * Builds the prompt context for a question, shared by the REST endpoint and the shell command.
+ *
+ * <p>
+ * A larger candidate set than will fit is retrieved through the {@link RetrievalService}. The
+ * candidates are visited best score first; a chunk whose word shingles overlap too much with an
+ * already selected chunk is dropped as a near-duplicate, and the rest are packed until the token
+ * budget, measured with jtokkit's cl100k_base encoding, is used up. Chunks that do not fit are
+ * skipped so that a smaller, lower-scoring chunk can still use the remaining space. If not even
+ * the best chunk fits, it is truncated to the budget so the prompt never goes without context.
+ * A question can be restricted to part of the corpus by a {@link RagFilter}; the selected chunks
+ * come back with a {@link Citation} per distinct file location, built from their metadata.
+ * </p>
+ *
+ * <p>
+ * The prompt template is read and parsed once at startup instead of on every request. Its
+ * conversation history is bounded by {@code rag.conversation.max-history-tokens}, so the prompt stays
+ * within a fixed size however long the conversation gets.
+ * </p>
+ */
+@Component
+@EnableConfigurationProperties(ContextProperties.class)
+public class ContextAssembler {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextAssembler.class);
+
+    private static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    private static final int SHINGLE_SIZE = 3;
+
+    private final RetrievalService retrievalService;
+    private final ContextProperties properties;
+    private final RagMetrics metrics;
+    private final PromptTemplate promptTemplate;
+
+    /**
+     * @param retrievalService retrieves the candidate chunks
+     * @param properties       candidate count, token budget and duplicate threshold
+     * @param metrics          records stage timings and chunk counts
+     * @param promptTemplate   the resource template for structuring AI prompts
+     */
+    public ContextAssembler(RetrievalService retrievalService, ContextProperties properties, RagMetrics metrics,
+                            @Value("classpath:/prompts/prompt.st") Resource promptTemplate) {
+        this.retrievalService = retrievalService;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.promptTemplate = new PromptTemplate(promptTemplate);
+    }
+
+    /**
+     * Retrieves, deduplicates and packs the chunks relevant to the question.
+     *
+     * @param question the user's question
+     * @param mode     retrieval mode, or {@code null} for the configured default
+     * @return the selected chunk contents and their citations, best first, within the token budget
+     */
+    public AssembledContext assemble(String question, RetrievalMode mode) {
+        return assemble(question, mode, null, metrics.startQuery());
+    }
+
+    /**
+     * Retrieves, deduplicates and packs the chunks relevant to the question, timing the
+     * {@code retrieve} and {@code assemble} stages.
+     *
+     * @param question the user's question
+     * @param mode     retrieval mode, or {@code null} for the configured default
+     * @param filter   restricts the search to part of the corpus, or {@code null} to search everything
+     * @param timings  the question's stage timings
+     * @return the selected chunk contents and their citations, best first, within the token budget
+     */
+    public AssembledContext assemble(String question, RetrievalMode mode, RagFilter filter, QueryTimings timings) {
+        return assemble(question, null, mode, filter, timings);
+    }
+
+    /**
+     * Retrieves, deduplicates and packs the chunks relevant to an already embedded question, timing the
+     * {@code retrieve} and {@code assemble} stages.
+     *
+     * @param question  the user's question
+     * @param embedding the question's embedding, or {@code null} to have the retrieval embed it
+     * @param mode      retrieval mode, or {@code null} for the configured default
+     * @param filter    restricts the search to part of the corpus, or {@code null} to search everything
+     * @param timings   the question's stage timings
+     * @return the selected chunk contents and their citations, best first, within the token budget
+     */
+    public AssembledContext assemble(String question, float[] embedding, RetrievalMode mode, RagFilter filter,
+                                     QueryTimings timings) {
+        Filter.Expression expression = filter != null ? filter.toExpression() : null;
+        List<Document> retrieved = timings.time("retrieve",
+                () -> retrievalService.retrieve(question, embedding, properties.candidates(), mode, expression));
+        AssembledContext selected = timings.time("assemble", () -> pack(question, retrieved));
+        metrics.recordChunks(retrieved.size(), selected.documents().size());
+        return selected;
+    }
+
+    private AssembledContext pack(String question, List<Document> retrieved) {
+        List<Document> candidates = new ArrayList<>(retrieved);
+        candidates.sort(Comparator.comparing(ContextAssembler::score).reversed());
+
+        var selected = new ArrayList<String>();
+        var chunks = new ArrayList<AssembledContext.SelectedChunk>();
+        var citations = new LinkedHashMap<String, Citation>();
+        var selectedShingles = new ArrayList<Set<String>>();
+        int budget = properties.maxTokens();
+        int used = 0;
+        int duplicates = 0;
+
+        for (Document candidate : candidates) {
+            String text = candidate.getFormattedContent();
+            Set<String> shingles = shingles(text);
+            if (selectedShingles.stream().anyMatch(other -> jaccard(shingles, other) >= properties.duplicateSimilarity())) {
+                duplicates++;
+                continue;
+            }
+
+            // +1 for the newline joining the chunks in the prompt
+            int tokens = ENCODING.countTokens(text) + 1;
+            if (used + tokens > budget) {
+                if (!selected.isEmpty()) {
+                    continue;
+                }
+                text = ENCODING.decode(ENCODING.encode(text, budget - 1).getTokens());
+                tokens = budget;
+            }
+            selected.add(text);
+            chunks.add(new AssembledContext.SelectedChunk(candidate.getId(), score(candidate), tokens));
+            selectedShingles.add(shingles);
+            used += tokens;
+            Citation citation = citation(candidate);
+            if (citation != null) {
+                citations.putIfAbsent(citation.source() + '\0' + citation.location(), citation);
+            }
+        }
+
+        log.debug("Context for '{}': {} of {} candidates, {} near-duplicates dropped, {}/{} tokens",
+                question, selected.size(), candidates.size(), duplicates, used, budget);
+        return new AssembledContext(selected, List.copyOf(citations.values()), chunks);
+    }
+
+    /**
+     * Fills the prompt template with the question and the assembled context.
+     *
+     * @param question  the user's question
+     * @param documents the chunk contents of the {@link #assemble(String, RetrievalMode) assembled context}
+     * @return the prompt to send to the chat client
+     */
+    public Prompt prompt(String question, List<String> documents) {
+        return prompt(question, documents, ConversationHistory.EMPTY);
+    }
+
+    /**
+     * Fills the prompt template with the question, the assembled context and the conversation so far.
+     *
+     * @param question  the user's question as asked, not the rewritten one used for retrieval
+     * @param documents the chunk contents of the {@link #assemble(String, RetrievalMode) assembled context}
+     * @param history   the earlier turns of the conversation, within their own token budget
+     * @return the prompt to send to the chat client
+     */
+    public Prompt prompt(String question, List<String> documents, ConversationHistory history) {
+        // Build prompt parameters with user question, retrieved documents and conversation history
+        Map<String, Object> promptParameters = Map.of(
+                "input", question,
+                "documents", String.join("\n", documents),
+                "history", history.render()
+        );
+        return promptTemplate.create(promptParameters);
+    }
+
+    /**
+     * Builds the citation of a chunk from its {@link ChunkMetadata}.
+     *
+     * @param chunk a retrieved chunk
+     * @return its citation, or {@code null} if the chunk carries no source
+     */
+    private static Citation citation(Document chunk) {
+        Map<String, Object> metadata = chunk.getMetadata();
+        Object source = metadata.get(SOURCE_KEY);
+        if (source == null) {
+            return null;
+        }
+        return new Citation(source.toString(), text(metadata.get(ChunkMetadata.FILE_NAME)),
+                text(metadata.get(ChunkMetadata.FORMAT)), text(metadata.get(ChunkMetadata.AREA)),
+                ChunkMetadata.location(metadata), copies(metadata));
+    }
+
+    /**
+     * Reads the copies collapsed into a chunk; chunks stored before copies were recorded only list the
+     * other files, without locations.
+     */
+    private static List<Citation.Copy> copies(Map<String, Object> metadata) {
+        if (metadata.get(ChunkMetadata.DUPLICATE_COPIES) instanceof List<?> copies) {
+            return copies.stream()
+                    .filter(Map.class::isInstance)
+                    .map(copy -> (Map<?, ?>) copy)
+                    .map(copy -> new Citation.Copy(text(copy.get("source")), text(copy.get("location"))))
+                    .toList();
+        }
+        return metadata.get(ChunkMetadata.DUPLICATE_SOURCES) instanceof List<?> sources
+                ? sources.stream().map(source -> new Citation.Copy(String.valueOf(source), null)).toList()
+                : List.of();
+    }
+
+    private static String text(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static double score(Document document) {
+        return document.getScore() != null ? document.getScore() : 0.0;
+    }
+
+    private static Set<String> shingles(String text) {
+        List<String> words = Arrays.asList(text.toLowerCase(Locale.ROOT).split("\\W+"));
+        var shingles = new HashSet<String>();
+        for (int i = 0; i + SHINGLE_SIZE <= words.size(); i++) {
+            shingles.add(String.join(" ", words.subList(i, i + SHINGLE_SIZE)));
+        }
+        if (shingles.isEmpty()) {
+            shingles.add(String.join(" ", words));
+        }
+        return shingles;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        int intersection = 0;
+        for (String shingle : smaller) {
+            if (larger.contains(shingle)) {
+                intersection++;
+            }
+        }
+        int union = a.size() + b.size() - intersection;
+        return union == 0 ? 1.0 : (double) intersection / union;
+    }
+}
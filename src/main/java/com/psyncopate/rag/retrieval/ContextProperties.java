@@ -0,0 +1,19 @@
+package com.psyncopate.rag.retrieval;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the context assembler, bound from {@code rag.context.*}.
+ *
+ * @param candidates          number of chunks retrieved per question before deduplication and packing
+ * @param maxTokens           token budget of the packed context (cl100k_base tokens), separators included
+ * @param duplicateSimilarity word-shingle Jaccard similarity at or above which a chunk is treated as a
+ *                            near-duplicate of a better-scoring one and dropped
+ */
+@ConfigurationProperties(prefix = "rag.context")
+public record ContextProperties(
+        @DefaultValue("12") int candidates,
+        @DefaultValue("3000") int maxTokens,
+        @DefaultValue("0.8") double duplicateSimilarity) {
+}
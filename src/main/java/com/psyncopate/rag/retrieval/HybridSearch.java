@@ -0,0 +1,144 @@
+package com.psyncopate.rag.retrieval;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Hybrid retrieval over the {@code vector_store} table: a cosine-distance search on the HNSW
+ * index and a full-text search on the {@code content_tsv} GIN index, fused with reciprocal-rank
+ * fusion in a single SQL statement.
+ *
+ * <p>
+ * Each branch returns its own top {@code k} chunks; a chunk scores {@code 1 / (rrfK + rank)}
+ * for every list it appears in, so chunks found by both searches rise to the top. The lexical
+ * branch ORs the question's terms and ranks with {@code ts_rank_cd}, which rewards dense
+ * matches much like BM25. Identifiers such as {@code max.poll.interval.ms} are kept whole by
+ * the Postgres parser and are therefore matched exactly. The vector branch is the one built by
+ * {@link QuantizedSearch}, so it follows the configured quantization mode and, when a metadata
+ * filter restricts both branches, scans the HNSW index iteratively until enough chunks match. When the nearest chunks were already found elsewhere, e.g. by the
+ * in-memory vector index, their ids are passed in ranked order and take the place of the vector branch.
+ * </p>
+ */
+@Component
+public class HybridSearch {
+
+    private static final String HYBRID_QUERY = """
+            WITH query AS (
+                SELECT replace(plainto_tsquery('english', :question)::text, '&', '|')::tsquery AS terms
+            ),
+            vector_hits AS (
+                %s
+            ),
+            lexical_hits AS (
+                SELECT id, row_number() OVER (ORDER BY ts_rank_cd(content_tsv, query.terms) DESC) AS rank
+                FROM vector_store, query
+                WHERE query.terms::text <> '' AND content_tsv @@ query.terms%s
+                ORDER BY ts_rank_cd(content_tsv, query.terms) DESC
+                LIMIT :k
+            )
+            SELECT v.id, v.content, v.metadata::text AS metadata,
+                   COALESCE(1.0 / (:rrfK + vector_hits.rank), 0)
+                       + COALESCE(1.0 / (:rrfK + lexical_hits.rank), 0) AS score
+            FROM vector_hits
+            FULL OUTER JOIN lexical_hits USING (id)
+            JOIN vector_store v ON v.id = COALESCE(vector_hits.id, lexical_hits.id)
+            ORDER BY score DESC
+            LIMIT :k""";
+
+    private static final String RANKED_NEAREST = "SELECT id, row_number() OVER (ORDER BY distance) AS rank FROM (%s) nearest";
+
+    private static final String GIVEN_NEAREST = "SELECT CAST(hit AS uuid) AS id, rank "
+            + "FROM unnest(CAST(:vectorHits AS text[])) WITH ORDINALITY AS hits(hit, rank)";
+
+    private final JdbcClient jdbcClient;
+    private final EmbeddingModel embeddingModel;
+    private final QuantizedSearch quantizedSearch;
+    private final ChunkRowMapper rowMapper;
+    private final String hybridQuery;
+    private final String filteredHybridQuery;
+    private final String givenNearestHybridQuery;
+
+    public HybridSearch(JdbcClient jdbcClient, EmbeddingModel embeddingModel, QuantizedSearch quantizedSearch,
+                        ObjectMapper objectMapper) {
+        this.jdbcClient = jdbcClient;
+        this.embeddingModel = embeddingModel;
+        this.quantizedSearch = quantizedSearch;
+        this.rowMapper = new ChunkRowMapper(objectMapper);
+        this.hybridQuery = HYBRID_QUERY.formatted(
+                RANKED_NEAREST.formatted(quantizedSearch.nearestSql(quantizedSearch.mode(), false)), "");
+        this.filteredHybridQuery = HYBRID_QUERY.formatted(
+                RANKED_NEAREST.formatted(quantizedSearch.nearestSql(quantizedSearch.mode(), true)),
+                " AND metadata @@ CAST(:filter AS jsonpath)");
+        this.givenNearestHybridQuery = HYBRID_QUERY.formatted(GIVEN_NEAREST, "");
+    }
+
+    /**
+     * Runs the fused lexical and vector search.
+     *
+     * @param question the user's query
+     * @param topK     number of chunks to return, also the depth of each branch
+     * @param rrfK     rank offset of reciprocal-rank fusion
+     * @param filter   metadata filter expression applied to both branches, or {@code null} to search all chunks
+     * @return the best chunks by fused score, best first
+     */
+    public List<Document> search(String question, int topK, int rrfK, Filter.Expression filter) {
+        return search(question, embeddingModel.embed(question), topK, rrfK, filter);
+    }
+
+    /**
+     * Runs the fused lexical and vector search for an already embedded question.
+     *
+     * @param question       the user's query, matched by the lexical branch
+     * @param queryEmbedding the question's embedding, searched by the vector branch
+     * @param topK           number of chunks to return, also the depth of each branch
+     * @param rrfK           rank offset of reciprocal-rank fusion
+     * @param filter         metadata filter expression applied to both branches, or {@code null} to search all chunks
+     * @return the best chunks by fused score, best first
+     */
+    public List<Document> search(String question, float[] queryEmbedding, int topK, int rrfK, Filter.Expression filter) {
+        PGvector embedding = new PGvector(queryEmbedding);
+        int candidates = quantizedSearch.candidates(topK);
+        Supplier<List<Document>> search = () -> {
+            var statement = jdbcClient.sql(filter != null ? filteredHybridQuery : hybridQuery)
+                    .param("question", question)
+                    .param("embedding", embedding)
+                    .param("k", topK)
+                    .param("candidates", candidates)
+                    .param("rrfK", rrfK);
+            if (filter != null) {
+                statement = statement.param("filter", quantizedSearch.jsonPath(filter));
+            }
+            return statement.query(rowMapper).list();
+        };
+        return quantizedSearch.enabled() || filter != null
+                ? quantizedSearch.withCandidateDepth(candidates, filter != null, search)
+                : search.get();
+    }
+
+    /**
+     * Runs the lexical search and fuses it with vector results found elsewhere, over all chunks.
+     *
+     * @param question   the user's query, matched by the lexical branch
+     * @param vectorHits ids of the nearest chunks, best first, in place of the vector branch
+     * @param topK       number of chunks to return, also the depth of the lexical branch
+     * @param rrfK       rank offset of reciprocal-rank fusion
+     * @return the best chunks by fused score, best first
+     */
+    public List<Document> search(String question, List<String> vectorHits, int topK, int rrfK) {
+        return jdbcClient.sql(givenNearestHybridQuery)
+                .param("question", question)
+                .param("vectorHits", vectorHits.toArray(String[]::new))
+                .param("k", topK)
+                .param("rrfK", rrfK)
+                .query(rowMapper)
+                .list();
+    }
+}
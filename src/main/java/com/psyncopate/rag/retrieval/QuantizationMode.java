@@ -0,0 +1,25 @@
+package com.psyncopate.rag.retrieval;
+
+/**
+ * Representation of the embeddings used for the coarse nearest-neighbour search in Postgres.
+ * Every mode other than {@link #NONE} re-ranks its candidates exactly against the full-precision
+ * {@code embedding} column.
+ */
+public enum QuantizationMode {
+
+    /**
+     * Search the float32 HNSW index directly.
+     */
+    NONE,
+
+    /**
+     * Search an HNSW index over {@code embedding::halfvec}: float16, half the index size.
+     */
+    HALFVEC,
+
+    /**
+     * Search an HNSW index over {@code binary_quantize(embedding)} by Hamming distance: one bit per
+     * dimension, 1/32 of the index size, at the cost of a coarser candidate ranking.
+     */
+    BINARY
+}
@@ -0,0 +1,24 @@
+package com.psyncopate.rag.retrieval;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Quantized storage settings for pgvector searches, bound from {@code rag.quantization.*}.
+ *
+ * @param mode       coarse search representation; {@code NONE} keeps the plain float32 search
+ * @param oversample number of coarse candidates per requested result that are re-ranked exactly
+ * @param dimensions embedding dimensions, needed for the {@code halfvec(n)} and {@code bit(n)} casts
+ * @param filteredEfSearch {@code hnsw.ef_search} of metadata-filtered searches, which scan the HNSW index
+ *                   iteratively until enough matching rows are found
+ * @param dropFloatIndex whether to drop the float32 HNSW index on {@code embedding} once the index of a
+ *                   quantized mode is built; quantized searches never read it, it only takes memory
+ */
+@ConfigurationProperties(prefix = "rag.quantization")
+public record QuantizationProperties(
+        @DefaultValue("NONE") QuantizationMode mode,
+        @DefaultValue("4") int oversample,
+        @DefaultValue("1536") int dimensions,
+        @DefaultValue("200") int filteredEfSearch,
+        @DefaultValue("false") boolean dropFloatIndex) {
+}
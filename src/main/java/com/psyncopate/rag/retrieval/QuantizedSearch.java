@@ -0,0 +1,315 @@
+package com.psyncopate.rag.retrieval;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Nearest-neighbour search in pgvector over a quantized representation of the embeddings,
+ * re-ranked exactly against the full-precision vectors.
+ *
+ * <p>
+ * The quantized representations are expression indexes on the existing {@code embedding}
+ * column ({@code embedding::halfvec(n)} or {@code binary_quantize(embedding)::bit(n)}), so no
+ * data is duplicated in the table and the chunks written by the docs loader are indexed in the
+ * same statement. The coarse search fetches {@code oversample × topK} candidates from the small
+ * index; only those rows are then read to compute their exact cosine distance. pgvector's HNSW
+ * scan returns at most {@code hnsw.ef_search} rows, so the search runs in a transaction that
+ * raises it to the candidate count. A metadata filter is applied inside the coarse scan, as the same
+ * jsonpath predicate {@code PgVectorStore} uses.
+ * </p>
+ *
+ * <p>
+ * pgvector applies such a filter to the rows the HNSW scan returns, so a selective filter would leave
+ * only the few matching rows among the first {@code ef_search} neighbours. Filtered searches therefore
+ * also set {@code hnsw.iterative_scan = relaxed_order}, which resumes the index scan until enough rows
+ * match, and start it with the larger {@code filtered-ef-search}. Relaxed order is safe here because
+ * every query sorts its rows again by exact distance.
+ * </p>
+ *
+ * <p>
+ * Used for vector retrieval and for the vector branch of {@link HybridSearch}. In mode {@code NONE}
+ * the same query searches the float32 HNSW index directly, which lets callers that already hold the
+ * question's embedding search pgvector without embedding it again.
+ * </p>
+ *
+ * <p>
+ * A quantized mode leaves the float32 HNSW index of {@code schema.sql} in place, so enabling one adds
+ * the quantized index to the memory the float32 one already takes. With {@code drop-float-index} the
+ * float32 index is dropped once the quantized one is built; going back to mode {@code NONE} then needs
+ * it recreated by running {@code schema.sql} again.
+ * </p>
+ */
+@Component
+@EnableConfigurationProperties(QuantizationProperties.class)
+public class QuantizedSearch {
+
+    private static final Logger log = LoggerFactory.getLogger(QuantizedSearch.class);
+
+    private static final int MAX_EF_SEARCH = 1000;
+
+    private final JdbcClient jdbcClient;
+    private final TransactionTemplate transactionTemplate;
+    private final EmbeddingModel embeddingModel;
+    private final QuantizationProperties properties;
+    private final ChunkRowMapper rowMapper;
+    private final PgVectorFilterExpressionConverter filterConverter = new PgVectorFilterExpressionConverter();
+
+    public QuantizedSearch(JdbcClient jdbcClient, TransactionTemplate transactionTemplate, EmbeddingModel embeddingModel,
+                           ObjectMapper objectMapper, QuantizationProperties properties) {
+        this.jdbcClient = jdbcClient;
+        this.transactionTemplate = transactionTemplate;
+        this.embeddingModel = embeddingModel;
+        this.properties = properties;
+        this.rowMapper = new ChunkRowMapper(objectMapper);
+    }
+
+    /**
+     * Creates the index of the configured quantization mode, if missing, and drops the float32 index
+     * if so configured.
+     */
+    @PostConstruct
+    public void initializeIndex() {
+        if (enabled()) {
+            createIndex(properties.mode());
+            if (properties.dropFloatIndex() && indexExists(properties.mode())) {
+                dropFloatIndex();
+            }
+        }
+    }
+
+    /**
+     * @return whether a quantized mode is configured
+     */
+    public boolean enabled() {
+        return properties.mode() != QuantizationMode.NONE;
+    }
+
+    /**
+     * @return the configured quantization mode
+     */
+    public QuantizationMode mode() {
+        return properties.mode();
+    }
+
+    /**
+     * @param topK number of results wanted
+     * @return number of coarse candidates fetched for them in quantized modes
+     */
+    public int candidates(int topK) {
+        return topK * properties.oversample();
+    }
+
+    /**
+     * Embeds the question and searches with the configured mode.
+     *
+     * @param question the user's query
+     * @param topK     number of chunks to return
+     * @return the nearest chunks, best first, scored by exact cosine similarity
+     */
+    public List<Document> search(String question, int topK) {
+        return search(question, topK, null);
+    }
+
+    /**
+     * Embeds the question and searches the chunks matching a metadata filter with the configured mode.
+     *
+     * @param question the user's query
+     * @param topK     number of chunks to return
+     * @param filter   metadata filter expression, or {@code null} to search all chunks
+     * @return the nearest matching chunks, best first, scored by exact cosine similarity
+     */
+    public List<Document> search(String question, int topK, Filter.Expression filter) {
+        return search(embeddingModel.embed(question), topK, properties.mode(), properties.oversample(), filter);
+    }
+
+    /**
+     * Searches the chunks matching a metadata filter with the configured mode, for an already embedded question.
+     *
+     * @param embedding the query embedding
+     * @param topK      number of chunks to return
+     * @param filter    metadata filter expression, or {@code null} to search all chunks
+     * @return the nearest matching chunks, best first, scored by exact cosine similarity
+     */
+    public List<Document> search(float[] embedding, int topK, Filter.Expression filter) {
+        return search(embedding, topK, properties.mode(), properties.oversample(), filter);
+    }
+
+    /**
+     * Searches with an explicit mode and oversampling factor.
+     *
+     * @param embedding  the query embedding
+     * @param topK       number of chunks to return
+     * @param mode       coarse search representation
+     * @param oversample coarse candidates per result
+     * @return the nearest chunks, best first, scored by exact cosine similarity
+     */
+    public List<Document> search(float[] embedding, int topK, QuantizationMode mode, int oversample) {
+        return search(embedding, topK, mode, oversample, null);
+    }
+
+    private List<Document> search(float[] embedding, int topK, QuantizationMode mode, int oversample,
+                                  Filter.Expression filter) {
+        String sql = "SELECT v.id, v.content, v.metadata::text AS metadata, 1 - nearest.distance AS score "
+                + "FROM (" + nearestSql(mode, filter != null) + ") nearest JOIN vector_store v USING (id) "
+                + "ORDER BY nearest.distance";
+        return withCandidateDepth(topK * oversample, filter != null, () -> {
+            var statement = jdbcClient.sql(sql)
+                    .param("embedding", new PGvector(embedding))
+                    .param("k", topK)
+                    .param("candidates", topK * oversample);
+            if (filter != null) {
+                statement = statement.param("filter", jsonPath(filter));
+            }
+            return statement.query(rowMapper).list();
+        });
+    }
+
+    /**
+     * Exact nearest neighbours by sequential scan, bypassing every index. The ground truth
+     * for recall measurements.
+     *
+     * @param embedding the query embedding
+     * @param topK      number of chunks to return
+     * @return ids of the nearest chunks, best first
+     */
+    public List<String> exactSearch(float[] embedding, int topK) {
+        // "+ 0" keeps the planner from matching the HNSW index
+        return jdbcClient.sql("SELECT id::text FROM vector_store ORDER BY (embedding <=> :embedding) + 0 LIMIT :k")
+                .param("embedding", new PGvector(embedding))
+                .param("k", topK)
+                .query(String.class)
+                .list();
+    }
+
+    /**
+     * Builds a query selecting {@code id} and exact cosine {@code distance} of the {@code :k} nearest
+     * chunks to {@code :embedding}, coarse-searching {@code :candidates} rows in quantized modes.
+     *
+     * @param mode     coarse search representation
+     * @param filtered whether only chunks whose metadata matches the jsonpath {@code :filter} are searched
+     * @return the SQL, to be embedded as a subquery
+     */
+    String nearestSql(QuantizationMode mode, boolean filtered) {
+        String where = filtered ? "WHERE metadata @@ CAST(:filter AS jsonpath) " : "";
+        int n = properties.dimensions();
+        String coarseOrder = switch (mode) {
+            case NONE -> null;
+            case HALFVEC -> "embedding::halfvec(%d) <=> CAST(:embedding AS halfvec(%d))".formatted(n, n);
+            case BINARY -> "binary_quantize(embedding)::bit(%d) <~> binary_quantize(CAST(:embedding AS vector))".formatted(n);
+        };
+        if (coarseOrder == null) {
+            return "SELECT id, embedding <=> :embedding AS distance FROM vector_store " + where
+                    + "ORDER BY embedding <=> :embedding LIMIT :k";
+        }
+        return "SELECT c.id, c.embedding <=> :embedding AS distance "
+                + "FROM (SELECT id, embedding FROM vector_store " + where + "ORDER BY " + coarseOrder + " LIMIT :candidates) c "
+                + "ORDER BY distance LIMIT :k";
+    }
+
+    /**
+     * @param filter a metadata filter expression
+     * @return the filter as the jsonpath predicate bound to {@code :filter}
+     */
+    String jsonPath(Filter.Expression filter) {
+        return filterConverter.convertExpression(filter);
+    }
+
+    /**
+     * Runs a search in a transaction whose {@code hnsw.ef_search} admits the given number of candidates,
+     * scanning the HNSW index iteratively if the search is filtered.
+     *
+     * @param candidates rows the coarse index scan must be able to return
+     * @param filtered   whether the search restricts the rows by a metadata filter
+     * @param search     the search to run
+     * @return the search result
+     */
+    <T> T withCandidateDepth(int candidates, boolean filtered, Supplier<T> search) {
+        return transactionTemplate.execute(status -> {
+            int efSearch = Math.min(Math.max(candidates, filtered ? properties.filteredEfSearch() : 40), MAX_EF_SEARCH);
+            jdbcClient.sql("SET LOCAL hnsw.ef_search = " + efSearch).update();
+            if (filtered) {
+                jdbcClient.sql("SET LOCAL hnsw.iterative_scan = relaxed_order").update();
+            }
+            return search.get();
+        });
+    }
+
+    /**
+     * Creates the expression index backing a quantization mode, if missing.
+     *
+     * @param mode the mode whose index to create
+     */
+    public void createIndex(QuantizationMode mode) {
+        int n = properties.dimensions();
+        String ddl = switch (mode) {
+            case NONE -> null;
+            case HALFVEC -> "CREATE INDEX IF NOT EXISTS " + indexName(mode)
+                    + " ON vector_store USING hnsw ((embedding::halfvec(%d)) halfvec_cosine_ops)".formatted(n);
+            case BINARY -> "CREATE INDEX IF NOT EXISTS " + indexName(mode)
+                    + " ON vector_store USING hnsw ((binary_quantize(embedding)::bit(%d)) bit_hamming_ops)".formatted(n);
+        };
+        if (ddl != null) {
+            long start = System.nanoTime();
+            jdbcClient.sql(ddl).update();
+            log.info("{} quantized index ready ({} ms)", mode, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * @param mode a quantization mode
+     * @return whether the index backing the mode exists
+     */
+    public boolean indexExists(QuantizationMode mode) {
+        if (mode == QuantizationMode.NONE) {
+            return !floatIndexes().isEmpty();
+        }
+        return jdbcClient.sql("SELECT count(*) FROM pg_indexes WHERE indexname = :name")
+                .param("name", indexName(mode))
+                .query(Integer.class)
+                .single() > 0;
+    }
+
+    /**
+     * Drops the HNSW indexes on the plain {@code embedding} column, whatever they are named; the
+     * quantized expression indexes are kept.
+     *
+     * @return names of the dropped indexes
+     */
+    public List<String> dropFloatIndex() {
+        List<String> dropped = floatIndexes();
+        for (String name : dropped) {
+            jdbcClient.sql("DROP INDEX IF EXISTS \"" + name.replace("\"", "\"\"") + "\"").update();
+            log.info("Dropped float32 index {}, {} searches use {}", name, properties.mode(), indexName(properties.mode()));
+        }
+        return dropped;
+    }
+
+    private List<String> floatIndexes() {
+        // pg_get_indexdef renders the expression indexes as "USING hnsw (((embedding)::halfvec(n)) ..."
+        return jdbcClient.sql("""
+                        SELECT indexname FROM pg_indexes
+                        WHERE schemaname = current_schema() AND tablename = 'vector_store'
+                          AND indexdef ~* 'USING hnsw \\(embedding '""")
+                .query(String.class)
+                .list();
+    }
+
+    private static String indexName(QuantizationMode mode) {
+        return "vector_store_embedding_" + mode.name().toLowerCase(Locale.ROOT) + "_idx";
+    }
+}
@@ -0,0 +1,19 @@
+package com.psyncopate.rag.retrieval;
+
+/**
+ * How candidate chunks are retrieved for a question.
+ */
+public enum RetrievalMode {
+
+    /**
+     * Cosine similarity over the embedding HNSW index only.
+     */
+    VECTOR,
+
+    /**
+     * Vector search and Postgres full-text search over the chunk content, merged with
+     * reciprocal-rank fusion. Catches exact identifiers (error codes, config keys, topic names)
+     * that embeddings tend to blur.
+     */
+    HYBRID
+}
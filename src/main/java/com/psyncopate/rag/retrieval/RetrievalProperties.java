@@ -0,0 +1,21 @@
+package com.psyncopate.rag.retrieval;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the shared retrieval service, bound from {@code rag.retrieval.*}.
+ *
+ * @param mode            retrieval mode used when a request does not choose one
+ * @param rrfK            rank offset {@code k} of reciprocal-rank fusion, {@code 1 / (k + rank)}; larger values
+ *                        flatten the advantage of top-ranked hits in either list
+ * @param cacheEnabled    whether retrieval results are cached
+ * @param cacheMaxEntries maximum number of cached results; the least recently used one is evicted beyond it
+ */
+@ConfigurationProperties(prefix = "rag.retrieval")
+public record RetrievalProperties(
+        @DefaultValue("HYBRID") RetrievalMode mode,
+        @DefaultValue("60") int rrfK,
+        @DefaultValue("true") boolean cacheEnabled,
+        @DefaultValue("1000") int cacheMaxEntries) {
+}
@@ -0,0 +1,211 @@
+package com.psyncopate.rag.retrieval;
+
+import com.psyncopate.rag.index.InMemoryVectorStore;
+import com.psyncopate.rag.source.CorpusChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Retrieves the chunks most similar to a question from the {@link VectorStore}, on behalf of the
+ * {@link ContextAssembler}.
+ *
+ * <p>
+ * Depending on the {@link RetrievalMode}, chunks come from a vector search (through the
+ * {@link VectorStore}, or the {@link QuantizedSearch} when pgvector is searched in a quantized mode)
+ * or from the {@link HybridSearch} that fuses vector and full-text results. With the in-memory
+ * vector index enabled, unfiltered searches of both modes take their nearest chunks from it; hybrid
+ * search then only runs the full-text branch in Postgres. Callers that already
+ * embedded the question pass its embedding along, so the question is embedded once per request;
+ * otherwise it is embedded here, on a cache miss only.
+ * A metadata filter expression, if given, is pushed into every mode's search, so only the matching
+ * chunks are candidates.
+ * Results are cached per normalized question (trimmed, lower-cased, whitespace collapsed),
+ * {@code topK}, mode and filter, in LRU order up to {@code cacheMaxEntries}. Concurrent lookups of the same key
+ * are coalesced: the first caller embeds the question and searches pgvector, the others wait
+ * for its result instead of repeating the call. Every key includes the corpus generation
+ * announced by the latest {@link CorpusChangedEvent}, so results retrieved before a
+ * re-ingestion are never served after it.
+ * </p>
+ */
+@Service
+@EnableConfigurationProperties(RetrievalProperties.class)
+public class RetrievalService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetrievalService.class);
+
+    private final VectorStore vectorStore;
+    private final EmbeddingModel embeddingModel;
+    private final HybridSearch hybridSearch;
+    private final QuantizedSearch quantizedSearch;
+    private final RetrievalProperties properties;
+
+    // Access-ordered for LRU eviction; guarded by "this"
+    private final LinkedHashMap<Key, List<Document>> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<Key, CompletableFuture<List<Document>>> inFlight = new ConcurrentHashMap<>();
+    private volatile long generation;
+
+    public RetrievalService(VectorStore vectorStore, EmbeddingModel embeddingModel, HybridSearch hybridSearch,
+                            QuantizedSearch quantizedSearch, RetrievalProperties properties) {
+        this.vectorStore = vectorStore;
+        this.embeddingModel = embeddingModel;
+        this.hybridSearch = hybridSearch;
+        this.quantizedSearch = quantizedSearch;
+        this.properties = properties;
+    }
+
+    /**
+     * Finds the chunks most similar to the question, from the cache when possible.
+     *
+     * @param question the user's query
+     * @param topK     number of chunks to return
+     * @param mode     retrieval mode, or {@code null} for the configured default
+     * @return the most similar chunks, best first, each carrying its (similarity or fused) score
+     */
+    public List<Document> retrieve(String question, int topK, RetrievalMode mode) {
+        return retrieve(question, topK, mode, null);
+    }
+
+    /**
+     * Finds the chunks most similar to the question among those matching a metadata filter,
+     * from the cache when possible.
+     *
+     * @param question the user's query
+     * @param topK     number of chunks to return
+     * @param mode     retrieval mode, or {@code null} for the configured default
+     * @param filter   metadata filter expression, or {@code null} to search all chunks
+     * @return the most similar matching chunks, best first, each carrying its (similarity or fused) score
+     */
+    public List<Document> retrieve(String question, int topK, RetrievalMode mode, Filter.Expression filter) {
+        return retrieve(question, null, topK, mode, filter);
+    }
+
+    /**
+     * Finds the chunks most similar to an already embedded question among those matching a metadata
+     * filter, from the cache when possible.
+     *
+     * @param question  the user's query
+     * @param embedding the question's embedding, or {@code null} to embed it here if the search runs
+     * @param topK      number of chunks to return
+     * @param mode      retrieval mode, or {@code null} for the configured default
+     * @param filter    metadata filter expression, or {@code null} to search all chunks
+     * @return the most similar matching chunks, best first, each carrying its (similarity or fused) score
+     */
+    public List<Document> retrieve(String question, float[] embedding, int topK, RetrievalMode mode,
+                                   Filter.Expression filter) {
+        RetrievalMode effectiveMode = mode != null ? mode : properties.mode();
+        if (!properties.cacheEnabled()) {
+            return search(question, embedding, topK, effectiveMode, filter);
+        }
+
+        var key = new Key(normalize(question), topK, effectiveMode, filter, generation);
+        synchronized (this) {
+            List<Document> cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        var future = new CompletableFuture<List<Document>>();
+        CompletableFuture<List<Document>> leader = inFlight.putIfAbsent(key, future);
+        if (leader != null) {
+            log.debug("Joining in-flight retrieval for '{}'", key.question());
+            try {
+                return leader.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            List<Document> documents = List.copyOf(search(question, embedding, topK, effectiveMode, filter));
+            synchronized (this) {
+                // Skip caching if the corpus changed during the search
+                if (key.generation() == generation) {
+                    cache.put(key, documents);
+                    evictOverflow();
+                }
+            }
+            future.complete(documents);
+            return documents;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Moves to the new corpus generation and drops the results cached for older ones.
+     *
+     * @param event the corpus change published by the docs loader
+     */
+    @EventListener
+    public synchronized void onCorpusChanged(CorpusChangedEvent event) {
+        generation = event.generation();
+        cache.clear();
+    }
+
+    private List<Document> search(String question, float[] embedding, int topK, RetrievalMode mode,
+                                  Filter.Expression filter) {
+        if (mode != RetrievalMode.HYBRID
+                && !(vectorStore instanceof InMemoryVectorStore) && !(vectorStore instanceof PgVectorStore)) {
+            // Any other store only searches by query text, and embeds it itself
+            return vectorStore.similaritySearch(SearchRequest.builder()
+                    .query(question)
+                    .topK(topK)
+                    .filterExpression(filter)
+                    .build());
+        }
+
+        float[] queryEmbedding = embedding != null ? embedding : embeddingModel.embed(question);
+        // Quantization applies to pgvector itself; an in-process index answers unfiltered searches on its own
+        InMemoryVectorStore inMemory = vectorStore instanceof InMemoryVectorStore store && filter == null ? store : null;
+        if (mode == RetrievalMode.HYBRID) {
+            if (inMemory != null) {
+                List<String> vectorHits = inMemory.similaritySearch(queryEmbedding, topK).stream()
+                        .map(Document::getId)
+                        .toList();
+                return hybridSearch.search(question, vectorHits, topK, properties.rrfK());
+            }
+            return hybridSearch.search(question, queryEmbedding, topK, properties.rrfK(), filter);
+        }
+        if (inMemory != null) {
+            return inMemory.similaritySearch(queryEmbedding, topK);
+        }
+        // The same nearest-neighbour query PgVectorStore runs, but for the embedding at hand
+        return quantizedSearch.search(queryEmbedding, topK, filter);
+    }
+
+    private void evictOverflow() {
+        Iterator<Key> eldest = cache.keySet().iterator();
+        while (cache.size() > properties.cacheMaxEntries() && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static String normalize(String question) {
+        return question == null ? "" : question.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private record Key(String question, int topK, RetrievalMode mode, Filter.Expression filter, long generation) {
+    }
+}
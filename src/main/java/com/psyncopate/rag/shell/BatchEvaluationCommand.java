@@ -0,0 +1,395 @@
+package com.psyncopate.rag.shell;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.psyncopate.rag.cache.SemanticAnswerCache;
+import com.psyncopate.rag.cache.SemanticAnswerCache.Lookup;
+import com.psyncopate.rag.dto.RagResponse;
+import com.psyncopate.rag.llm.LlmBulkhead;
+import com.psyncopate.rag.llm.LlmBusyException;
+import com.psyncopate.rag.metrics.QueryTimings;
+import com.psyncopate.rag.metrics.RagMetrics;
+import com.psyncopate.rag.retrieval.AssembledContext;
+import com.psyncopate.rag.retrieval.ContextAssembler;
+import com.psyncopate.rag.retrieval.ContextProperties;
+import com.psyncopate.rag.retrieval.QuantizationProperties;
+import com.psyncopate.rag.retrieval.RetrievalMode;
+import com.psyncopate.rag.retrieval.RetrievalProperties;
+import org.jline.terminal.Terminal;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shell command that replays a file of questions against the assistant, to compare retrieval and
+ * prompt settings on real questions.
+ *
+ * <p>
+ * The questions run concurrently on {@code parallelism} threads, optionally paced to at most
+ * {@code rate} question starts per second so a replay stays within the model's rate limit. Each
+ * question is answered like the {@code q} command answers it, without conversation history: the
+ * context is assembled by the {@link ContextAssembler} and the chat model is called through the
+ * shared {@link LlmBulkhead}; a caller turned away by the bulkhead waits and tries again. The
+ * {@link SemanticAnswerCache} is bypassed unless asked for, so every question measures the current
+ * settings rather than an earlier answer.
+ * </p>
+ *
+ * <p>
+ * Every answer is appended to a JSONL file as soon as it is ready, with the ids, scores and token
+ * counts of the chunks in its context, the prompt and completion tokens reported by the model and the
+ * time spent per stage. A summary — the settings in effect, throughput, token totals and latency
+ * percentiles per stage — is written next to it ({@code <name>.summary.json}) and printed.
+ * </p>
+ */
+@ShellComponent
+public class BatchEvaluationCommand {
+
+    private static final int MAX_BUSY_RETRIES = 5;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.95, 0.99};
+
+    private final ChatClient chatClient;
+    private final ContextAssembler contextAssembler;
+    private final SemanticAnswerCache answerCache;
+    private final EmbeddingModel embeddingModel;
+    private final LlmBulkhead llmBulkhead;
+    private final RagMetrics metrics;
+    private final ObjectMapper objectMapper;
+    private final ContextProperties contextProperties;
+    private final RetrievalProperties retrievalProperties;
+    private final QuantizationProperties quantizationProperties;
+    private final Terminal terminal;
+
+    public BatchEvaluationCommand(ChatClient chatClient, ContextAssembler contextAssembler, SemanticAnswerCache answerCache,
+                                  EmbeddingModel embeddingModel, LlmBulkhead llmBulkhead, RagMetrics metrics, ObjectMapper objectMapper,
+                                  ContextProperties contextProperties, RetrievalProperties retrievalProperties,
+                                  QuantizationProperties quantizationProperties, Terminal terminal) {
+        this.chatClient = chatClient;
+        this.contextAssembler = contextAssembler;
+        this.answerCache = answerCache;
+        this.embeddingModel = embeddingModel;
+        this.llmBulkhead = llmBulkhead;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
+        this.contextProperties = contextProperties;
+        this.retrievalProperties = retrievalProperties;
+        this.quantizationProperties = quantizationProperties;
+        this.terminal = terminal;
+    }
+
+    /**
+     * Answers every question of the file and records the results.
+     *
+     * @param questions   file with one question per line, or JSONL objects with {@code question} and an optional
+     *                    {@code id}; blank lines and lines starting with {@code #} are skipped
+     * @param output      JSONL file to write; {@code eval-<timestamp>.jsonl} in the working directory if omitted
+     * @param parallelism questions answered concurrently
+     * @param rate        question starts per second at most; {@code 0} for no limit
+     * @param mode        retrieval mode ({@code VECTOR} or {@code HYBRID}); the configured default if omitted
+     * @param useCache    answer from (and fill) the semantic answer cache
+     * @return the summary
+     */
+    @ShellMethod(key = "eval-batch", value = "Answer a file of questions concurrently and write the results as JSONL")
+    public String evaluate(@ShellOption(value = "--questions") String questions,
+                           @ShellOption(value = "--output", defaultValue = ShellOption.NULL) String output,
+                           @ShellOption(value = "--parallelism", defaultValue = "4") int parallelism,
+                           @ShellOption(value = "--rate", defaultValue = "0") double rate,
+                           @ShellOption(value = "--mode", defaultValue = ShellOption.NULL) RetrievalMode mode,
+                           @ShellOption(value = "--use-cache", defaultValue = "false") boolean useCache) {
+        List<Question> loaded;
+        try {
+            loaded = readQuestions(Path.of(questions));
+        } catch (IOException | IllegalArgumentException e) {
+            return "Cannot read " + questions + ": " + e.getMessage();
+        }
+        if (loaded.isEmpty()) {
+            return "No questions in " + questions + ".";
+        }
+        Path results = output != null ? Path.of(output)
+                : Path.of("eval-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jsonl");
+        int threads = Math.max(1, parallelism);
+
+        var counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "eval-batch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        var pacer = new Pacer(rate);
+        var collected = new ArrayList<Result>(loaded.size());
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        boolean interrupted = false;
+        try (BufferedWriter writer = Files.newBufferedWriter(results)) {
+            CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+            for (Question question : loaded) {
+                completion.submit(() -> {
+                    pacer.await();
+                    return answer(question, mode, useCache);
+                });
+            }
+            int progressStep = Math.max(1, loaded.size() / 10);
+            for (int done = 1; done <= loaded.size(); done++) {
+                Result result = completion.take().get();
+                collected.add(result);
+                writer.write(objectMapper.writeValueAsString(result));
+                writer.newLine();
+                if (done % progressStep == 0 && done < loaded.size()) {
+                    writer.flush();
+                    terminal.writer().printf("%d/%d questions answered%n", done, loaded.size());
+                    terminal.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            interrupted = true;
+        } catch (ExecutionException e) {
+            // answer() records its own failures; anything else is a bug worth seeing
+            throw new IllegalStateException(e.getCause());
+        } catch (IOException e) {
+            return "Cannot write " + results + ": " + e.getMessage();
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        Map<String, Object> summary = summarize(collected, loaded.size(), elapsedNanos, startedAt, threads, rate, mode,
+                useCache, results);
+        Path summaryFile = results.resolveSibling(results.getFileName().toString().replaceFirst("\\.jsonl$", "") + ".summary.json");
+        try {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(summaryFile.toFile(), summary);
+        } catch (IOException e) {
+            return "Cannot write " + summaryFile + ": " + e.getMessage();
+        }
+        return (interrupted ? "Stopped after " + collected.size() + " of " + loaded.size() + " questions.\n" : "")
+                + describe(summary) + "Results: " + results + "\nSummary: " + summaryFile;
+    }
+
+    /**
+     * Answers one question, timing its stages; failures are recorded in the result.
+     */
+    private Result answer(Question question, RetrievalMode mode, boolean useCache) {
+        QueryTimings timings = metrics.startQuery();
+        try {
+            float[] embedding = timings.time("embed", () -> embeddingModel.embed(question.text()));
+            Lookup lookup = null;
+            if (useCache) {
+                lookup = timings.time("answer_cache", () -> answerCache.lookup(question.text(), embedding, mode, null));
+                if (lookup.hit() != null) {
+                    return new Result(question.index(), question.id(), question.text(), lookup.hit().answer(), true,
+                            List.of(), null, null, null, timings.toMap(), null);
+                }
+            }
+            AssembledContext context = contextAssembler.assemble(question.text(), embedding, mode, null, timings);
+            Prompt prompt = timings.time("prompt", () -> contextAssembler.prompt(question.text(), context.documents()));
+            ChatResponse response = timings.time("generate", () -> callModel(prompt));
+            metrics.recordUsage(response);
+            String answer = response.getResult().getOutput().getText();
+            if (lookup != null) {
+                answerCache.put(lookup, new RagResponse(answer, context.documents(), context.citations()));
+            }
+            Usage usage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+            return new Result(question.index(), question.id(), question.text(), answer, false, context.chunks(),
+                    context.chunks().stream().mapToInt(AssembledContext.SelectedChunk::tokens).sum(),
+                    usage != null ? usage.getPromptTokens() : null, usage != null ? usage.getCompletionTokens() : null,
+                    timings.toMap(), null);
+        } catch (RuntimeException e) {
+            return new Result(question.index(), question.id(), question.text(), null, false, List.of(), null, null,
+                    null, timings.toMap(), e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Calls the chat model through the bulkhead, waiting for a slot when it turns the call away.
+     * An interrupt while waiting ends the retries as an interruption, not as the bulkhead's rejection.
+     */
+    private ChatResponse callModel(Prompt prompt) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return llmBulkhead.call(() -> chatClient.prompt(prompt).call().chatResponse());
+            } catch (LlmBusyException e) {
+                if (attempt >= MAX_BUSY_RETRIES) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(e.getRetryAfter().toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting to retry the chat model", interrupted);
+                }
+            }
+        }
+    }
+
+    private List<Question> readQuestions(Path file) throws IOException {
+        var questions = new ArrayList<Question>();
+        List<String> lines = Files.readAllLines(file);
+        for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+            String trimmed = lines.get(lineNumber - 1).strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String id = null;
+            String text = trimmed;
+            if (trimmed.startsWith("{")) {
+                JsonNode node = objectMapper.readTree(trimmed);
+                if (!node.hasNonNull("question")) {
+                    throw new IllegalArgumentException("line " + lineNumber + " has no \"question\"");
+                }
+                text = node.get("question").asText();
+                id = node.hasNonNull("id") ? node.get("id").asText() : null;
+            }
+            questions.add(new Question(questions.size(), id, text));
+        }
+        return questions;
+    }
+
+    private Map<String, Object> summarize(List<Result> results, int total, long elapsedNanos, Instant startedAt,
+                                          int parallelism, double rate, RetrievalMode mode, boolean useCache, Path output) {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        List<Result> succeeded = results.stream().filter(result -> result.error() == null).toList();
+
+        var settings = new LinkedHashMap<String, Object>();
+        settings.put("retrievalMode", mode != null ? mode : retrievalProperties.mode());
+        settings.put("retrieval", retrievalProperties);
+        settings.put("context", contextProperties);
+        settings.put("quantization", quantizationProperties);
+        settings.put("parallelism", parallelism);
+        settings.put("rate", rate);
+        settings.put("answerCache", useCache);
+
+        var tokens = new LinkedHashMap<String, Object>();
+        tokens.put("context", succeeded.stream().mapToLong(result -> orZero(result.contextTokens())).sum());
+        tokens.put("prompt", succeeded.stream().mapToLong(result -> orZero(result.promptTokens())).sum());
+        tokens.put("completion", succeeded.stream().mapToLong(result -> orZero(result.completionTokens())).sum());
+
+        // Percentiles per stage over the questions that went through it, successful or not
+        var stages = new LinkedHashMap<String, List<Double>>();
+        for (Result result : results) {
+            result.timings().forEach((stage, millis) -> stages.computeIfAbsent(stage, s -> new ArrayList<>()).add(millis));
+        }
+        var latency = new LinkedHashMap<String, Map<String, Object>>();
+        stages.forEach((stage, millis) -> latency.put(stage, percentiles(millis)));
+
+        var summary = new LinkedHashMap<String, Object>();
+        summary.put("startedAt", startedAt.toString());
+        summary.put("output", output.toString());
+        summary.put("settings", settings);
+        summary.put("questions", total);
+        summary.put("answered", results.size());
+        summary.put("failed", results.size() - succeeded.size());
+        summary.put("cached", succeeded.stream().filter(Result::cached).count());
+        summary.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        summary.put("questionsPerSecond", Math.round(results.size() / seconds * 100) / 100.0);
+        summary.put("tokens", tokens);
+        summary.put("latencyMs", latency);
+        return summary;
+    }
+
+    private static Map<String, Object> percentiles(List<Double> values) {
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        var result = new LinkedHashMap<String, Object>();
+        result.put("mean", Math.round(Arrays.stream(sorted).average().orElse(0) * 1_000) / 1_000.0);
+        for (double percentile : PERCENTILES) {
+            result.put("p" + Math.round(percentile * 100), sorted[(int) Math.ceil(sorted.length * percentile) - 1]);
+        }
+        result.put("max", sorted[sorted.length - 1]);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String describe(Map<String, Object> summary) {
+        var text = new StringBuilder("%s of %s questions answered (%s failed, %s from cache) in %.1f s, %s questions/s%n".formatted(
+                summary.get("answered"), summary.get("questions"), summary.get("failed"), summary.get("cached"),
+                ((Number) summary.get("elapsedMs")).longValue() / 1000.0, summary.get("questionsPerSecond")));
+        Map<String, Object> tokens = (Map<String, Object>) summary.get("tokens");
+        text.append("Tokens: %s context, %s prompt, %s completion%n".formatted(
+                tokens.get("context"), tokens.get("prompt"), tokens.get("completion")));
+        text.append("%-14s %8s %8s %8s %8s %8s %8s%n".formatted("stage (ms)", "mean", "p50", "p90", "p95", "p99", "max"));
+        ((Map<String, Map<String, Object>>) summary.get("latencyMs")).forEach((stage, values) ->
+                text.append("%-14s %8s %8s %8s %8s %8s %8s%n".formatted(stage, values.get("mean"), values.get("p50"),
+                        values.get("p90"), values.get("p95"), values.get("p99"), values.get("max"))));
+        return text.toString();
+    }
+
+    private static long orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Spaces question starts at least {@code 1 / rate} seconds apart, across all threads.
+     */
+    private static final class Pacer {
+
+        private final long intervalNanos;
+        private long nextNanos = System.nanoTime();
+
+        Pacer(double rate) {
+            this.intervalNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+        }
+
+        void await() throws InterruptedException {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long slot;
+            synchronized (this) {
+                slot = Math.max(nextNanos, System.nanoTime());
+                nextNanos = slot + intervalNanos;
+            }
+            long wait = slot - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+
+    private record Question(int index, String id, String text) {
+    }
+
+    /**
+     * One line of the results file.
+     *
+     * @param index            position of the question in the file, counting only questions
+     * @param id               the question's id from the file, if it had one
+     * @param question         the question
+     * @param answer           the model's answer
+     * @param cached           whether the answer came from the semantic answer cache
+     * @param chunks           ids, retrieval scores and token counts of the chunks in the context, best first
+     * @param contextTokens    tokens of the document context
+     * @param promptTokens     prompt tokens reported by the model
+     * @param completionTokens completion tokens reported by the model
+     * @param timings          milliseconds per stage, to the microsecond, plus the {@code total}
+     * @param error            why the question failed
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private record Result(int index, String id, String question, String answer, boolean cached,
+                          List<AssembledContext.SelectedChunk> chunks, Integer contextTokens, Integer promptTokens,
+                          Integer completionTokens, Map<String, Double> timings, String error) {
+    }
+}
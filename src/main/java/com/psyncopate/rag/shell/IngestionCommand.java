@@ -0,0 +1,121 @@
+package com.psyncopate.rag.shell;
+
+import com.psyncopate.rag.source.IngestionJob;
+import com.psyncopate.rag.source.IngestionJobService;
+import org.jline.terminal.Terminal;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Shell commands to start, cancel and follow the background ingestion jobs of the {@link IngestionJobService}.
+ */
+@ShellComponent
+public class IngestionCommand {
+
+    private final IngestionJobService jobs;
+    private final Terminal terminal;
+
+    public IngestionCommand(IngestionJobService jobs, Terminal terminal) {
+        this.jobs = jobs;
+        this.terminal = terminal;
+    }
+
+    /**
+     * Starts a synchronization of all document folders, or a full rebuild.
+     *
+     * @param rebuild re-ingest every file into a new table that replaces the current one when done
+     * @return the new job, or why none was started
+     */
+    @ShellMethod(key = "ingest-start", value = "Start synchronizing the vector store with the document folders")
+    public String start(@ShellOption(value = "--rebuild", defaultValue = "false") boolean rebuild) {
+        try {
+            return "Started " + describe(jobs.start("shell", rebuild ? IngestionJob.Mode.REBUILD : IngestionJob.Mode.SYNC));
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Cancels the current job.
+     *
+     * @return the cancelled job, or why nothing was cancelled
+     */
+    @ShellMethod(key = "ingest-cancel", value = "Cancel the running ingestion job; files already written stay indexed")
+    public String cancel() {
+        Optional<IngestionJob> current = jobs.current();
+        if (current.isEmpty()) {
+            return "No ingestion job has run since startup.";
+        }
+        try {
+            return jobs.cancel(current.get().id()).map(job -> "Cancelling " + describe(job)).orElse("");
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Lists the most recent jobs.
+     *
+     * @param limit number of jobs to list
+     * @return one line per job, newest first
+     */
+    @ShellMethod(key = "ingest-status", value = "Show the most recent ingestion jobs")
+    public String status(@ShellOption(defaultValue = "5") int limit) {
+        List<IngestionJob> recent = jobs.recent(limit);
+        if (recent.isEmpty()) {
+            return "No ingestion jobs recorded.";
+        }
+        var text = new StringBuilder();
+        recent.forEach(job -> text.append(describe(job)).append('\n'));
+        return text.toString().stripTrailing();
+    }
+
+    /**
+     * Waits for the current job to finish, printing its progress every few seconds. Interrupting the
+     * command (Ctrl+C) stops watching, not the job.
+     *
+     * @param interval seconds between progress lines
+     * @return the job's final state
+     */
+    @ShellMethod(key = "ingest-watch", value = "Follow the running ingestion job until it finishes")
+    public String watch(@ShellOption(defaultValue = "5") int interval) {
+        Optional<IngestionJob> current = jobs.current();
+        if (current.isEmpty()) {
+            return "No ingestion job has run since startup.";
+        }
+        UUID id = current.get().id();
+        try {
+            IngestionJob job = current.get();
+            while (!job.status().isFinished()) {
+                terminal.writer().println(describe(job));
+                terminal.flush();
+                job = jobs.await(id, Duration.ofSeconds(Math.max(1, interval))).orElse(job);
+            }
+            return describe(job);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Stopped watching; the job keeps running.";
+        }
+    }
+
+    private static String describe(IngestionJob job) {
+        var text = new StringBuilder("%s  %-11s %-7s %-7s".formatted(job.id(), job.status(), job.mode(), job.trigger()));
+        if (job.filesTotal() > 0 || job.status().isFinished()) {
+            text.append("  %d/%d files (%.0f%%), %d failed, %d unchanged, %d deleted, %d chunks".formatted(
+                    job.filesDone(), job.filesTotal(), job.progress() * 100, job.filesFailed(), job.unchanged(),
+                    job.deleted(), job.chunks()));
+        } else if (job.status() == IngestionJob.Status.RUNNING) {
+            text.append("  comparing files with the manifest");
+        }
+        if (job.error() != null) {
+            text.append("  error: ").append(job.error());
+        }
+        return text.toString();
+    }
+}
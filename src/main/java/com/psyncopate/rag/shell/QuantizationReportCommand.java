@@ -0,0 +1,142 @@
+package com.psyncopate.rag.shell;
+
+import com.pgvector.PGvector;
+import com.psyncopate.rag.retrieval.QuantizationMode;
+import com.psyncopate.rag.retrieval.QuantizedSearch;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shell command that measures what quantized search costs in recall and gains in latency
+ * on the current corpus.
+ *
+ * <p>
+ * Query vectors are midpoints of two random stored chunks, so they fall between documents
+ * like real questions do instead of matching one chunk exactly. For every query the exact
+ * top-k (a sequential scan) is the ground truth; each mode reports its recall@k against it
+ * and its mean and 95th-percentile latency.
+ * </p>
+ */
+@ShellComponent
+public class QuantizationReportCommand {
+
+    private final QuantizedSearch quantizedSearch;
+    private final JdbcClient jdbcClient;
+
+    public QuantizationReportCommand(QuantizedSearch quantizedSearch, JdbcClient jdbcClient) {
+        this.quantizedSearch = quantizedSearch;
+        this.jdbcClient = jdbcClient;
+    }
+
+    /**
+     * Runs the recall-vs-latency comparison of float32, halfvec and binary-quantized search.
+     *
+     * @param queries       number of sampled query vectors
+     * @param topK          results per query
+     * @param oversample    coarse candidates per result in quantized modes
+     * @param createIndexes create missing quantized indexes before measuring
+     * @return the report table
+     */
+    @ShellMethod(key = "quantization-report", value = "Compare recall and latency of float32, halfvec and binary-quantized search")
+    public String report(@ShellOption(defaultValue = "50") int queries,
+                         @ShellOption(value = "--top-k", defaultValue = "10") int topK,
+                         @ShellOption(defaultValue = "4") int oversample,
+                         @ShellOption(value = "--create-indexes", defaultValue = "false") boolean createIndexes) {
+        List<float[]> sample = sampleQueries(queries);
+        if (sample.isEmpty()) {
+            return "The vector store is empty; nothing to measure.";
+        }
+
+        var exact = new ArrayList<Set<String>>();
+        long[] exactNanos = new long[sample.size()];
+        for (int i = 0; i < sample.size(); i++) {
+            long start = System.nanoTime();
+            exact.add(new HashSet<>(quantizedSearch.exactSearch(sample.get(i), topK)));
+            exactNanos[i] = System.nanoTime() - start;
+        }
+
+        var report = new StringBuilder()
+                .append("%d queries, top-%d, oversample %d, %d chunks%n".formatted(sample.size(), topK, oversample, chunkCount()))
+                .append("%-8s %-10s %9s %9s %9s%n".formatted("mode", "index", "recall@" + topK, "mean ms", "p95 ms"))
+                .append("%-8s %-10s %9.3f %9.2f %9.2f%n".formatted("EXACT", "seq scan", 1.0, mean(exactNanos), p95(exactNanos)));
+
+        for (QuantizationMode mode : QuantizationMode.values()) {
+            if (createIndexes) {
+                quantizedSearch.createIndex(mode);
+            }
+            if (!quantizedSearch.indexExists(mode)) {
+                report.append("%-8s %-10s %s%n".formatted(mode, "missing", mode == QuantizationMode.NONE
+                        ? "(dropped by rag.quantization.drop-float-index; re-run schema.sql to restore)"
+                        : "(run with --create-indexes)"));
+                continue;
+            }
+
+            // Warm the index pages into shared buffers before timing
+            sample.stream().limit(5).forEach(query -> quantizedSearch.search(query, topK, mode, oversample));
+
+            double recall = 0;
+            long[] nanos = new long[sample.size()];
+            for (int i = 0; i < sample.size(); i++) {
+                long start = System.nanoTime();
+                List<Document> results = quantizedSearch.search(sample.get(i), topK, mode, oversample);
+                nanos[i] = System.nanoTime() - start;
+                Set<String> truth = exact.get(i);
+                recall += truth.isEmpty() ? 1.0
+                        : (double) results.stream().filter(document -> truth.contains(document.getId())).count() / truth.size();
+            }
+            report.append("%-8s %-10s %9.3f %9.2f %9.2f%n".formatted(
+                    mode, "hnsw", recall / sample.size(), mean(nanos), p95(nanos)));
+        }
+        return report.toString();
+    }
+
+    private List<float[]> sampleQueries(int queries) {
+        List<float[]> vectors = jdbcClient.sql("SELECT embedding::text FROM vector_store ORDER BY random() LIMIT :n")
+                .param("n", queries * 2)
+                .query((rs, rowNum) -> parse(rs.getString(1)))
+                .list();
+        var sample = new ArrayList<float[]>();
+        for (int i = 0; i + 1 < vectors.size(); i += 2) {
+            float[] a = vectors.get(i);
+            float[] b = vectors.get(i + 1);
+            float[] midpoint = new float[a.length];
+            for (int d = 0; d < a.length; d++) {
+                midpoint[d] = (a[d] + b[d]) / 2;
+            }
+            sample.add(midpoint);
+        }
+        if (sample.isEmpty() && !vectors.isEmpty()) {
+            sample.add(vectors.get(0));
+        }
+        return sample;
+    }
+
+    private int chunkCount() {
+        return jdbcClient.sql("SELECT count(*) FROM vector_store").query(Integer.class).single();
+    }
+
+    private static float[] parse(String vector) throws SQLException {
+        return new PGvector(vector).toArray();
+    }
+
+    private static double mean(long[] nanos) {
+        return Arrays.stream(nanos).average().orElse(0) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static double p95(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return (double) sorted[(int) Math.ceil(sorted.length * 0.95) - 1] / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
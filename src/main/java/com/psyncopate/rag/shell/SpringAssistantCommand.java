@@ -1,22 +1,31 @@
 package com.psyncopate.rag.shell;
 
+import com.psyncopate.rag.cache.SemanticAnswerCache;
+import com.psyncopate.rag.cache.SemanticAnswerCache.Lookup;
+import com.psyncopate.rag.conversation.ConversationHistory;
+import com.psyncopate.rag.conversation.ConversationMemory;
+import com.psyncopate.rag.conversation.QuestionRewriter;
+import com.psyncopate.rag.dto.Citation;
+import com.psyncopate.rag.dto.RagFilter;
+import com.psyncopate.rag.dto.RagResponse;
+import com.psyncopate.rag.llm.LlmBulkhead;
+import com.psyncopate.rag.llm.LlmBusyException;
+import com.psyncopate.rag.metrics.QueryTimings;
+import com.psyncopate.rag.metrics.RagMetrics;
+import com.psyncopate.rag.retrieval.AssembledContext;
+import com.psyncopate.rag.retrieval.ContextAssembler;
+import com.psyncopate.rag.retrieval.RetrievalMode;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.PromptTemplate;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.shell.standard.ShellOption;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * A Spring Shell command component that allows users to interact
@@ -25,64 +34,136 @@ import java.util.stream.Collectors;
  * This component uses:
  * <ul>
  *     <li>{@link ChatClient} to send prompts and receive responses</li>
- *     <li>{@link VectorStore} to retrieve relevant documents based on user input</li>
- *     <li>{@link PromptTemplate} loaded from a resource to structure the assistant prompt</li>
+ *     <li>{@link ContextAssembler} to retrieve relevant documents based on user input and structure the assistant prompt</li>
+ *     <li>{@link SemanticAnswerCache} to answer repeated questions without calling the model</li>
+ *     <li>{@link EmbeddingModel} to embed each question once, for both the cache lookup and the search</li>
+ *     <li>{@link LlmBulkhead} to share the limit on concurrent model calls with the HTTP endpoints</li>
+ *     <li>{@link ConversationMemory} and {@link QuestionRewriter} so follow-up questions see the earlier ones
+ *     of the shell session; {@code clear-conversation} starts over</li>
+ *     <li>{@link RagMetrics} to record stage timings and token usage like the HTTP endpoints do</li>
  * </ul>
  */
 @ShellComponent
 public class SpringAssistantCommand {
 
-    private final ChatClient chatClient;
-    private final VectorStore vectorStore;
+    // The shell is a single conversation
+    private static final String CONVERSATION_ID = "shell";
 
-    @Value("classpath:/prompts/prompt.st")
-    private Resource sbPromptTemplate;
+    private final ChatClient chatClient;
+    private final ContextAssembler contextAssembler;
+    private final SemanticAnswerCache answerCache;
+    private final EmbeddingModel embeddingModel;
+    private final LlmBulkhead llmBulkhead;
+    private final ConversationMemory conversationMemory;
+    private final QuestionRewriter questionRewriter;
+    private final RagMetrics metrics;
 
     @Autowired
-    public SpringAssistantCommand(ChatClient chatClient, VectorStore vectorStore) {
+    public SpringAssistantCommand(ChatClient chatClient, ContextAssembler contextAssembler, SemanticAnswerCache answerCache,
+                                  EmbeddingModel embeddingModel, LlmBulkhead llmBulkhead, ConversationMemory conversationMemory,
+                                  QuestionRewriter questionRewriter, RagMetrics metrics) {
         this.chatClient = chatClient;
-        this.vectorStore = vectorStore;
+        this.contextAssembler = contextAssembler;
+        this.answerCache = answerCache;
+        this.embeddingModel = embeddingModel;
+        this.llmBulkhead = llmBulkhead;
+        this.conversationMemory = conversationMemory;
+        this.questionRewriter = questionRewriter;
+        this.metrics = metrics;
     }
 
     /**
      * Shell command that allows the user to ask a question.
      *
      * @param message the question or input from the user
-     * @return the assistant's response as a string
+     * @param mode    retrieval mode ({@code VECTOR} or {@code HYBRID}); the configured default if omitted
+     * @param format  comma-separated document formats to search ({@code docx}, {@code pdf}, {@code excel}); all if omitted
+     * @param area    comma-separated product areas (document sub-folders) to search; all if omitted
+     * @return the assistant's response as a string, followed by its sources
      */
     @ShellMethod(key = "q", value = "Ask a question to the assistant")
-    public String question(@ShellOption(defaultValue = "") String message) {
-        // Load prompt template and prepare parameters
-        PromptTemplate promptTemplate = new PromptTemplate(sbPromptTemplate);
-        Map<String, Object> promptParameters = new HashMap<>();
-
-        promptParameters.put("input", message);
-        promptParameters.put("documents", String.join("\n", findSimilarDocuments(message)));
-
-        // Create the final prompt with parameters
-        Prompt prompt = promptTemplate.create(promptParameters);
+    public String question(@ShellOption(defaultValue = "") String message,
+                           @ShellOption(value = "--mode", defaultValue = ShellOption.NULL) RetrievalMode mode,
+                           @ShellOption(value = "--format", defaultValue = ShellOption.NULL) String format,
+                           @ShellOption(value = "--area", defaultValue = ShellOption.NULL) String area) {
+        RagFilter filter;
+        try {
+            filter = new RagFilter(values(format), values(area), null);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        try {
+            QueryTimings timings = metrics.startQuery();
+            ConversationHistory history = conversationMemory.history(CONVERSATION_ID);
+            String standalone = questionRewriter.rewrite(message, history, timings);
+            float[] embedding = timings.time("embed", () -> embeddingModel.embed(standalone));
+            Lookup lookup = answerCache.lookup(standalone, embedding, mode, filter);
+            RagResponse response = lookup.hit();
+            if (response == null) {
+                response = answer(message, standalone, embedding, history, mode, filter, timings);
+                // Answers shaped by earlier turns are not cached for other conversations
+                if (history.isEmpty()) {
+                    answerCache.put(lookup, response);
+                }
+            }
+            conversationMemory.record(CONVERSATION_ID, null, message, response.answer());
+            return response.answer() + sources(response.citations());
+        } catch (LlmBusyException e) {
+            return e.getMessage() + ". Try again in " + e.getRetryAfter().toSeconds() + "s.";
+        }
+    }
 
-        // Send prompt to chat client and return the AI response
-        return chatClient.prompt(prompt).call().content();
+    /**
+     * Shell command that forgets the earlier questions, so the next one starts a new conversation.
+     *
+     * @return a confirmation
+     */
+    @ShellMethod(key = "clear-conversation", value = "Forget the earlier questions of this session")
+    public String clearConversation() {
+        conversationMemory.clear(CONVERSATION_ID);
+        return "Conversation cleared.";
     }
 
     /**
-     * Finds similar documents from the vector store based on the user's question.
+     * Retrieves the relevant documents and asks the chat model for an answer.
      *
-     * @param message the input query
-     * @return a list of top-k similar document contents (formatted as strings)
+     * @param message    the question or input from the user
+     * @param standalone the question rewritten for retrieval
+     * @param embedding  the standalone question's embedding
+     * @param history    the earlier turns of the shell session
+     * @param mode       retrieval mode, or {@code null} for the configured default
+     * @param filter     restricts the search to part of the corpus
+     * @param timings    the question's stage timings
+     * @return the assistant's response and the documents it was based on
      */
-    private List<String> findSimilarDocuments(String message) {
-        SearchRequest searchRequest = SearchRequest.builder()
-                .query(message)
-                .topK(3)
-                .build();
+    private RagResponse answer(String message, String standalone, float[] embedding, ConversationHistory history,
+                               RetrievalMode mode, RagFilter filter, QueryTimings timings) {
+        // Assemble the context within the token budget and create the final prompt
+        AssembledContext context = contextAssembler.assemble(standalone, embedding, mode, filter, timings);
+        Prompt prompt = timings.time("prompt", () -> contextAssembler.prompt(message, context.documents(), history));
+
+        // Send prompt to chat client and return the AI response
+        ChatResponse response = timings.time("generate",
+                () -> llmBulkhead.call(() -> chatClient.prompt(prompt).call().chatResponse()));
+        metrics.recordUsage(response);
+        return new RagResponse(response.getResult().getOutput().getText(), context.documents(), context.citations());
+    }
 
-        List<Document> similarDocuments = vectorStore.similaritySearch(searchRequest);
+    private static List<String> values(String option) {
+        return option == null ? List.of() : Arrays.stream(option.split(",")).map(String::trim).filter(v -> !v.isEmpty()).toList();
+    }
 
-        // Extract formatted content of each document
-        return similarDocuments.stream()
-                .map(Document::getFormattedContent)
-                .collect(Collectors.toList());
+    private static String sources(List<Citation> citations) {
+        if (citations == null || citations.isEmpty()) {
+            return "";
+        }
+        var text = new StringBuilder("\n\nSources:");
+        for (Citation citation : citations) {
+            text.append("\n  - ").append(citation.source());
+            if (citation.location() != null) {
+                text.append(" (").append(citation.location()).append(')');
+            }
+        }
+        return text.toString();
     }
 }
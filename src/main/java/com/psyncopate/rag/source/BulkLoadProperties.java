@@ -0,0 +1,25 @@
+package com.psyncopate.rag.source;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of full rebuilds through the {@link VectorStoreBulkLoader}, bound from {@code rag.ingestion.bulk-load.*}.
+ *
+ * @param initialLoad        whether a synchronization that finds the manifest empty (the first load) bulk-loads
+ *                           instead of inserting batch by batch into the indexed table
+ * @param hnswM              {@code m} of the HNSW indexes built on the staging table (links per node)
+ * @param hnswEfConstruction {@code ef_construction} of those indexes (beam width while building); at least
+ *                           {@code 2 * hnswM}
+ * @param maintenanceWorkMem {@code maintenance_work_mem} for the index builds, e.g. {@code 1GB}; the HNSW build is
+ *                           much faster while the graph fits into it
+ * @param parallelWorkers    {@code max_parallel_maintenance_workers} for the index builds
+ */
+@ConfigurationProperties(prefix = "rag.ingestion.bulk-load")
+public record BulkLoadProperties(
+        @DefaultValue("true") boolean initialLoad,
+        @DefaultValue("16") int hnswM,
+        @DefaultValue("64") int hnswEfConstruction,
+        @DefaultValue("1GB") String maintenanceWorkMem,
+        @DefaultValue("2") int parallelWorkers) {
+}
@@ -0,0 +1,287 @@
+package com.psyncopate.rag.source;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.psyncopate.rag.source.IngestionManifest.SOURCE_KEY;
+
+/**
+ * Ingestion stage between the text splitter and the embedding writer that drops chunks which are
+ * near-duplicates of a chunk already stored or already seen in the same run.
+ *
+ * <p>
+ * Every chunk gets a 64-bit SimHash over its word 3-shingles, stored in its metadata as
+ * {@value #FINGERPRINT_KEY}. Two chunks whose fingerprints differ in at most {@code maxDistance}
+ * bits are considered the same text; the configured similarity {@code s} allows
+ * {@code floor((1 - s) * 64)} differing bits. Candidates are found without comparing against every
+ * stored fingerprint: the 64 bits are cut into {@code maxDistance + 1} bands, and by the pigeonhole
+ * principle two fingerprints within the distance agree exactly on at least one band.
+ * </p>
+ *
+ * <p>
+ * A few differing bits are enough for a changed port, version or timeout, which is exactly the kind of
+ * difference that must not be lost. So every chunk also gets a hash of its values — the words that
+ * contain a digit, in order — stored as {@value #VALUES_KEY}, and chunks are only duplicates if those
+ * hashes are equal as well. Stored chunks fingerprinted before values were hashed are never matched.
+ * </p>
+ *
+ * <p>
+ * The first chunk of a group is kept (the canonical chunk). A duplicate is not embedded; instead the
+ * file and position it came from are recorded as a {@link Duplicate}, which the loader adds to the
+ * canonical chunk's {@value ChunkMetadata#DUPLICATE_COPIES} metadata once that chunk is stored, and
+ * its file to {@value #DUPLICATE_SOURCES_KEY} if that is another file than the canonical chunk's.
+ * </p>
+ *
+ * <p>
+ * Instances live for one synchronization run and are safe to use from several splitter threads.
+ * </p>
+ */
+final class ChunkDeduplicator implements UnaryOperator<List<Document>> {
+
+    /**
+     * Chunk metadata key holding the chunk's SimHash as 16 hex digits.
+     */
+    static final String FINGERPRINT_KEY = "simhash";
+
+    /**
+     * Chunk metadata key listing the sources of other files whose near-identical chunks were collapsed into this one.
+     */
+    static final String DUPLICATE_SOURCES_KEY = ChunkMetadata.DUPLICATE_SOURCES;
+
+    /**
+     * Chunk metadata key holding the hash of the chunk's values as 16 hex digits.
+     */
+    static final String VALUES_KEY = "value_hash";
+
+    private static final int BITS = 64;
+    private static final int SHINGLE_SIZE = 3;
+    // Beyond this the bands get so narrow that almost every fingerprint becomes a candidate
+    private static final int MAX_DISTANCE = 8;
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    /**
+     * A chunk at {@code location} of {@code source} that was dropped because chunk {@code canonicalId} of
+     * {@code canonicalSource} has the same text; {@code location} is {@code null} if the chunk's metadata names none.
+     */
+    record Duplicate(String canonicalId, String canonicalSource, String source, String location) {
+    }
+
+    private record Fingerprint(String id, String source, long hash, long values) {
+    }
+
+    private final int maxDistance;
+    private final int[] bandStarts;
+    private final List<Map<Long, List<Fingerprint>>> bands = new ArrayList<>();
+    private final Map<String, Set<Duplicate>> duplicates = new HashMap<>();
+    private int kept;
+    private int dropped;
+    private long droppedTokens;
+
+    /**
+     * @param similarity share of equal fingerprint bits at or above which two chunks are duplicates
+     */
+    ChunkDeduplicator(double similarity) {
+        this.maxDistance = Math.max(0, Math.min(MAX_DISTANCE, (int) Math.floor((1 - similarity) * BITS + 1e-9)));
+        int bandCount = maxDistance + 1;
+        this.bandStarts = new int[bandCount + 1];
+        for (int band = 0; band <= bandCount; band++) {
+            bandStarts[band] = band * BITS / bandCount;
+            if (band < bandCount) {
+                bands.add(new HashMap<>());
+            }
+        }
+    }
+
+    /**
+     * Registers a chunk that is already in the vector store, so new chunks with the same text are collapsed into it.
+     *
+     * @param id          id of the stored chunk
+     * @param source      source key of the file the chunk belongs to
+     * @param fingerprint the chunk's {@value #FINGERPRINT_KEY} metadata
+     * @param values      the chunk's {@value #VALUES_KEY} metadata; chunks without it are not registered
+     */
+    synchronized void register(String id, String source, String fingerprint, String values) {
+        if (values != null) {
+            index(new Fingerprint(id, source, Long.parseUnsignedLong(fingerprint, 16), Long.parseUnsignedLong(values, 16)));
+        }
+    }
+
+    /**
+     * Fingerprints the chunks of one parsed part of a file and returns those that are not near-duplicates.
+     * Kept chunks carry their fingerprint and value hash in the metadata and become candidates for later chunks.
+     *
+     * @param chunks chunks produced by the splitter, all from the same file
+     * @return the chunks to embed
+     */
+    @Override
+    public synchronized List<Document> apply(List<Document> chunks) {
+        var unique = new ArrayList<Document>(chunks.size());
+        for (Document chunk : chunks) {
+            String source = (String) chunk.getMetadata().get(SOURCE_KEY);
+            long hash = simHash(chunk.getText());
+            long values = valueHash(chunk.getText());
+            Fingerprint original = find(hash, values);
+            if (original == null) {
+                chunk.getMetadata().put(FINGERPRINT_KEY, String.format("%016x", hash));
+                chunk.getMetadata().put(VALUES_KEY, String.format("%016x", values));
+                index(new Fingerprint(chunk.getId(), source, hash, values));
+                unique.add(chunk);
+                kept++;
+                continue;
+            }
+            dropped++;
+            droppedTokens += ENCODING.countTokens(chunk.getText());
+            if (source != null) {
+                duplicates.computeIfAbsent(source, key -> new LinkedHashSet<>())
+                        .add(new Duplicate(original.id(), original.source(), source, ChunkMetadata.location(chunk.getMetadata())));
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Removes and returns the duplicates recorded for a file.
+     *
+     * @param source source key of the file
+     * @return the canonical chunks the file's dropped chunks were collapsed into
+     */
+    synchronized Set<Duplicate> takeDuplicates(String source) {
+        Set<Duplicate> taken = duplicates.remove(source);
+        return taken == null ? Set.of() : taken;
+    }
+
+    /**
+     * @return chunks fingerprinted in this run and kept
+     */
+    synchronized int kept() {
+        return kept;
+    }
+
+    /**
+     * @return chunks dropped as near-duplicates in this run
+     */
+    synchronized int dropped() {
+        return dropped;
+    }
+
+    /**
+     * @return tokens (cl100k_base) of the dropped chunks, i.e. embedding input that was not sent
+     */
+    synchronized long droppedTokens() {
+        return droppedTokens;
+    }
+
+    /**
+     * Computes the 64-bit SimHash of a text: every word 3-shingle votes, with its hash, for or against each bit.
+     * Case and punctuation are ignored; a text shorter than one shingle is hashed as a whole.
+     *
+     * @param text chunk text
+     * @return the fingerprint
+     */
+    static long simHash(String text) {
+        List<String> words = words(text);
+        int[] votes = new int[BITS];
+        int shingles = Math.max(1, words.size() - SHINGLE_SIZE + 1);
+        for (int i = 0; i < shingles; i++) {
+            String shingle = String.join(" ", words.subList(i, Math.min(words.size(), i + SHINGLE_SIZE)));
+            long hash = hash64(shingle);
+            for (int bit = 0; bit < BITS; bit++) {
+                votes[bit] += (hash >>> bit & 1L) == 1L ? 1 : -1;
+            }
+        }
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            if (votes[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Hashes the words of a text that contain a digit — ports, versions, sizes, timeouts — in order, so
+     * that texts differing only in such values get different hashes.
+     *
+     * @param text chunk text
+     * @return the value hash; the same for all texts without digits
+     */
+    static long valueHash(String text) {
+        var values = new StringBuilder();
+        for (String word : words(text)) {
+            if (word.chars().anyMatch(Character::isDigit)) {
+                values.append(word).append(' ');
+            }
+        }
+        return hash64(values.toString());
+    }
+
+    private static List<String> words(String text) {
+        var words = new ArrayList<String>();
+        Matcher matcher = WORD.matcher(text == null ? "" : text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            words.add(matcher.group());
+        }
+        return words;
+    }
+
+    private Fingerprint find(long hash, long values) {
+        for (int band = 0; band < bands.size(); band++) {
+            List<Fingerprint> candidates = bands.get(band).get(bandValue(hash, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (Fingerprint candidate : candidates) {
+                if (candidate.values() == values && Long.bitCount(candidate.hash() ^ hash) <= maxDistance) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void index(Fingerprint fingerprint) {
+        for (int band = 0; band < bands.size(); band++) {
+            bands.get(band).computeIfAbsent(bandValue(fingerprint.hash(), band), key -> new ArrayList<>(1))
+                    .add(fingerprint);
+        }
+    }
+
+    private long bandValue(long hash, int band) {
+        int width = bandStarts[band + 1] - bandStarts[band];
+        long mask = width == BITS ? -1L : (1L << width) - 1;
+        return hash >>> bandStarts[band] & mask;
+    }
+
+    /**
+     * FNV-1a over the UTF-16 code units followed by the MurmurHash3 finalizer, so that every
+     * input bit affects every output bit, which SimHash relies on.
+     */
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53e8e53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
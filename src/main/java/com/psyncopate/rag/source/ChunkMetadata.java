@@ -0,0 +1,107 @@
+package com.psyncopate.rag.source;
+
+import java.util.Map;
+
+/**
+ * Metadata keys the {@link DocsLoader} writes on every chunk, next to the bookkeeping keys of the
+ * {@link IngestionManifest} ({@code source}, {@code content_hash}, {@code ingest_id}) and the
+ * {@link ChunkDeduplicator}'s {@code simhash}.
+ *
+ * <p>
+ * The {@code vector_store.metadata} column is {@code jsonb} with a GIN index, so these keys can be
+ * used in the filter expression of a search (e.g. {@code format == 'excel' && area == 'kafka'}).
+ * </p>
+ */
+public final class ChunkMetadata {
+
+    /**
+     * Document format: {@code docx}, {@code pdf} or {@code excel}.
+     */
+    public static final String FORMAT = "format";
+
+    /**
+     * File name without directories.
+     */
+    public static final String FILE_NAME = "file_name";
+
+    /**
+     * Product area: the first directory below the document folder the file lives in, absent for files
+     * directly in the folder (e.g. {@code excel/kafka/runbook.xlsx} has area {@code kafka}).
+     */
+    public static final String AREA = "area";
+
+    /**
+     * When the file version the chunk belongs to was ingested, as an ISO-8601 instant.
+     */
+    public static final String INGESTED_AT = "ingested_at";
+
+    /**
+     * Whether the chunk holds table content: every Excel chunk, and DOCX chunks containing one of the file's tables.
+     */
+    public static final String CONTAINS_TABLE = "contains_table";
+
+    /**
+     * Sources of other files whose near-identical chunks were collapsed into this one; see {@link ChunkDeduplicator}.
+     */
+    public static final String DUPLICATE_SOURCES = "duplicate_sources";
+
+    /**
+     * Every near-identical chunk collapsed into this one, copies elsewhere in the same file included, as
+     * objects with the copy's {@code source} and {@code location} (see {@link #location(Map)}).
+     */
+    public static final String DUPLICATE_COPIES = "duplicate_copies";
+
+    /**
+     * Heading hierarchy of a DOCX chunk, e.g. {@code Kafka > Restart procedure}; see {@link DocxStructureChunker}.
+     */
+    public static final String SECTION = "section";
+
+    /**
+     * How a DOCX chunk was cut: {@code structure} for the {@link DocxStructureChunker}; absent on chunks
+     * of the earlier flattened text.
+     */
+    public static final String CHUNKING = "chunking";
+
+    /**
+     * One-based PDF page number, written by the {@link PdfPageRangeReader}.
+     */
+    public static final String PAGE = "page_number";
+
+    /**
+     * Excel sheet name.
+     */
+    public static final String SHEET = "sheet";
+
+    /**
+     * First and last spreadsheet row (one-based) of an Excel chunk.
+     */
+    public static final String ROW_START = "row_start";
+    public static final String ROW_END = "row_end";
+
+    private ChunkMetadata() {
+    }
+
+    /**
+     * Describes where in its file a chunk is: {@code page 4}, {@code sheet Topics, rows 2-51} or
+     * {@code section Kafka > Restart procedure}.
+     *
+     * @param metadata a chunk's metadata
+     * @return the chunk's position, or {@code null} if its metadata names none
+     */
+    public static String location(Map<String, Object> metadata) {
+        if (metadata.get(PAGE) != null) {
+            return "page " + metadata.get(PAGE);
+        }
+        if (metadata.get(SHEET) != null) {
+            String location = "sheet " + metadata.get(SHEET);
+            if (metadata.get(ROW_START) != null) {
+                location += ", rows " + metadata.get(ROW_START) + "-" + metadata.get(ROW_END);
+            }
+            return location;
+        }
+        if (metadata.get(SECTION) != null && !metadata.get(SECTION).toString().isEmpty()) {
+            return "section " + metadata.get(SECTION);
+        }
+        return null;
+    }
+}
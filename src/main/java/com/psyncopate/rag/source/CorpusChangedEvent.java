@@ -0,0 +1,15 @@
+package com.psyncopate.rag.source;
+
+/**
+ * Published by {@link DocsLoader} after a synchronization added, replaced or removed chunks
+ * in the vector store. Anything derived from the previous corpus (cached answers, cached
+ * retrieval results) should be discarded when it is received.
+ *
+ * @param generation     the corpus generation after this change; increases by one with every change
+ * @param changedFiles   number of new or changed files that were run through the pipeline
+ * @param deletedFiles   number of files whose chunks were removed
+ * @param corpusReplaced whether {@code vector_store} was replaced as a whole by a bulk load, so copies
+ *                       of its rows must be reloaded rather than patched
+ */
+public record CorpusChangedEvent(long generation, int changedFiles, int deletedFiles, boolean corpusReplaced) {
+}
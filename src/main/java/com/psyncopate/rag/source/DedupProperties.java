@@ -0,0 +1,19 @@
+package com.psyncopate.rag.source;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for near-duplicate chunk elimination at ingestion time, bound from {@code rag.dedup.*}.
+ *
+ * @param enabled    whether chunks are fingerprinted and near-duplicates collapsed before embedding
+ * @param similarity SimHash similarity (share of equal fingerprint bits) at or above which a chunk
+ *                   is treated as a duplicate of one already stored; 0.9 allows 6 of 64 bits to differ.
+ *                   Chunks whose numbers or versions differ are never duplicates, whatever the similarity
+ * @see ChunkDeduplicator
+ */
+@ConfigurationProperties(prefix = "rag.dedup")
+public record DedupProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("0.9") double similarity) {
+}
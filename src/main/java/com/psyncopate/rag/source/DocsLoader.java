@@ -1,29 +1,52 @@
 package com.psyncopate.rag.source;
 
-import com.knuddels.jtokkit.api.EncodingType;
+import com.psyncopate.rag.metrics.RagMetrics;
+import com.psyncopate.rag.source.ChunkDeduplicator.Duplicate;
+import com.psyncopate.rag.source.IngestionManifest.Entry;
+import com.psyncopate.rag.source.IngestionPipeline.FileParser;
+import com.psyncopate.rag.source.IngestionPipeline.IngestionReport;
+import com.psyncopate.rag.source.IngestionPipeline.SourceFile;
 import jakarta.annotation.PostConstruct;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.xwpf.usermodel.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.BatchingStrategy;
-import org.springframework.ai.embedding.TokenCountBatchingStrategy;
-import org.springframework.ai.reader.ExtractedTextFormatter;
-import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
-import org.springframework.ai.reader.pdf.config.PdfDocumentReaderConfig;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import static com.psyncopate.rag.source.ChunkDeduplicator.DUPLICATE_SOURCES_KEY;
+import static com.psyncopate.rag.source.ChunkDeduplicator.FINGERPRINT_KEY;
+import static com.psyncopate.rag.source.ChunkDeduplicator.VALUES_KEY;
+import static com.psyncopate.rag.source.IngestionManifest.CONTENT_HASH_KEY;
+import static com.psyncopate.rag.source.IngestionManifest.INGEST_ID_KEY;
+import static com.psyncopate.rag.source.IngestionManifest.SOURCE_KEY;
 
 /**
  * DocsLoader is a Spring component responsible for loading
@@ -34,8 +57,31 @@ import java.util.List;
  * It scans configured directories for these document types, extracts
  * textual content (including tables and images for DOCX), and splits
  * the text into tokenized chunks before saving them in the vector store.
- * The loader avoids re-loading documents if the vector store already
- * contains data, improving startup performance.
+ * Files are fed through an {@link IngestionPipeline}, so parsing, splitting
+ * and embedding of different files overlap instead of running one file at a time.
+ * </p>
+ *
+ * <p>
+ * Loading is incremental: an {@link IngestionManifest} records the size, modification
+ * time and content hash of every ingested file, and every chunk carries its source path
+ * and content hash in its metadata. On startup only new or changed files are re-parsed
+ * and re-embedded, and the chunks of deleted files are removed, so re-index cost scales
+ * with how much changed rather than with the size of the corpus.
+ * </p>
+ *
+ * <p>
+ * Besides its source, every chunk is tagged with the {@link ChunkMetadata} its file and position
+ * give it — format, file name, product area, page or sheet and rows, whether it holds a table, and
+ * when it was ingested. The {@code metadata} column is migrated to {@code jsonb} and GIN-indexed so
+ * searches can be restricted by these keys.
+ * </p>
+ *
+ * <p>
+ * Near-duplicate chunks — boilerplate, the same section copied into several documents — are
+ * collapsed by a {@link ChunkDeduplicator} before embedding: only the first copy is embedded, its
+ * {@code duplicate_copies} metadata lists the file and position of every other copy, and its
+ * {@code duplicate_sources} metadata the other files that contain it. When a file holding
+ * such a canonical chunk changes or disappears, the files listed there are re-ingested in the same run.
  * </p>
  *
  * <p>
@@ -48,8 +94,17 @@ import java.util.List;
  * </p>
  *
  * <p>
- * This loader is typically triggered once at application startup via the
- * {@link jakarta.annotation.PostConstruct} annotated method.
+ * A full rebuild ({@link #rebuildAll}, and the first load into an empty manifest) does not insert
+ * into the indexed table: the {@link VectorStoreBulkLoader} copies all chunks into a staging table,
+ * builds the indexes once and swaps the table in, while searches keep using the old one.
+ * </p>
+ *
+ * <p>
+ * The {@link jakarta.annotation.PostConstruct} annotated method only prepares the schema and
+ * resolves the folders. The full synchronization ({@link #synchronizeAll}) runs as a background
+ * job of the {@link IngestionJobService}, started once the application is up, so the application
+ * serves — possibly from a partial index — within seconds. Afterwards, {@link DocsWatcher} calls
+ * {@link #reindex(Collection)} for files that change on disk.
  * </p>
  *
  * <p>
@@ -69,175 +124,732 @@ public class DocsLoader {
 
     private final JdbcClient jdbcClient;
     private final VectorStore vectorStore;
-    private final TokenTextSplitter textSplitter = new TokenTextSplitter();
+    private final IngestionManifest manifest;
+    private final IngestionProperties properties;
+    private final DedupProperties dedupProperties;
+    private final BatchingStrategy batchingStrategy;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RagMetrics metrics;
+    private final VectorStoreBulkLoader bulkLoader;
+    private final BulkLoadProperties bulkLoadProperties;
+    private final DocumentParsers parsers;
+    private final List<SourceFolder> folders = new ArrayList<>();
+    // Corpus generation, incremented whenever a synchronization changes the vector store
+    private final AtomicLong generation = new AtomicLong();
 
     /**
      * Constructor injecting required dependencies.
      *
-     * @param jdbcClient   JDBC client used to query the vector store metadata.
-     * @param vectorStore  Vector store where extracted documents will be saved.
+     * @param jdbcClient       JDBC client used to query the vector store metadata.
+     * @param vectorStore      Vector store where extracted documents will be saved.
+     * @param manifest         Record of the files already ingested and their content hashes.
+     * @param properties       Ingestion pipeline parallelism and batching settings.
+     * @param dedupProperties  Near-duplicate chunk elimination settings.
+     * @param parsers          Parsers and splitters of the supported formats.
+     * @param batchingStrategy Strategy used to fill embedding batches across files.
+     * @param eventPublisher   Publisher of {@link CorpusChangedEvent}s after the corpus changed.
+     * @param metrics          Ingestion throughput and batch size meters.
+     * @param bulkLoader       Loader of full rebuilds into a staging table that is swapped in.
+     * @param bulkLoadProperties Whether the first load is a bulk load.
      */
-    public DocsLoader(JdbcClient jdbcClient, VectorStore vectorStore) {
+    public DocsLoader(JdbcClient jdbcClient, VectorStore vectorStore, IngestionManifest manifest,
+                      IngestionProperties properties, DedupProperties dedupProperties, DocumentParsers parsers,
+                      BatchingStrategy batchingStrategy, ApplicationEventPublisher eventPublisher,
+                      RagMetrics metrics, VectorStoreBulkLoader bulkLoader, BulkLoadProperties bulkLoadProperties) {
         this.jdbcClient = jdbcClient;
         this.vectorStore = vectorStore;
+        this.manifest = manifest;
+        this.properties = properties;
+        this.dedupProperties = dedupProperties;
+        this.parsers = parsers;
+        this.batchingStrategy = batchingStrategy;
+        this.eventPublisher = eventPublisher;
+        this.metrics = metrics;
+        this.bulkLoader = bulkLoader;
+        this.bulkLoadProperties = bulkLoadProperties;
     }
 
     /**
-     * Initialization method run after bean creation. Loads documents into the vector store
-     * if it's not already populated.
+     * Initialization method run after bean creation. Prepares the schema and indexes and resolves
+     * the document folders; the documents themselves are synchronized afterwards by an
+     * {@link IngestionJobService} job, so startup does not wait for embedding.
      */
     @PostConstruct
-    public void init() {
+    public synchronized void init() {
         var count = jdbcClient.sql("SELECT COUNT(*) FROM vector_store")
                 .query(Integer.class)
                 .single();
 
         log.info("Current Vector Store count: {}", count);
 
-        // Skip loading if the vector store is already populated
-        if (count > 0) return;
-
-        log.info("Initializing Vector Store with reference documents...");
-
-        // Define document folders by type
-        var docFolders = List.of(
-                Path.of("src/main/resources/doc"),
-                Path.of("src/main/resources/pdf"),
-                Path.of("src/main/resources/excel")
-        );
+        manifest.initializeSchema();
+        initializeMetadataIndex();
+        initializeLexicalIndex();
 
         try {
             Path docxDir = resolveFolderPath("doc");
             Path pdfDir = resolveFolderPath("pdf");
             Path excelDir = resolveFolderPath("excel");
 
-            loadFilesFromDirectory(docxDir, this::processDocxFile, "DOCX");
-            loadFilesFromDirectory(pdfDir, this::processPdfFile, "PDF");
-            loadFilesFromDirectory(excelDir, this::processExcelFile, "Excel");
-
+            // DOCX and Excel chunks are already cut to their token budgets by the structure-aware readers
+            folders.add(new SourceFolder(docxDir, "DOCX",
+                    (path, sink) -> sink.accept(parsers.parseDocx(path)), UnaryOperator.identity()));
+            folders.add(new SourceFolder(pdfDir, "PDF", parsers::parsePdf, parsers::splitPdf));
+            folders.add(new SourceFolder(excelDir, "Excel", parsers::parseExcel, UnaryOperator.identity()));
         } catch (IOException e) {
-            log.error("Failed to process documents: {}", e.getMessage(), e);
+            log.error("Failed to resolve document folders: {}", e.getMessage(), e);
         }
+    }
 
-        log.info("Reference documents loaded successfully.");
+    /**
+     * Brings the vector store in line with all documents on disk, embedding only new or changed files
+     * and removing the chunks of deleted ones.
+     *
+     * <p>
+     * Every file whose chunks are completely written is recorded in the manifest straight away, so a
+     * run that is cancelled or dies resumes, on the next run, with the files it had not finished.
+     * While the manifest is still empty (the first load), all files are bulk-loaded as by
+     * {@link #rebuildAll}, unless {@code rag.ingestion.bulk-load.initial-load} is off.
+     * </p>
+     *
+     * @param progress told how many files need ingesting and when each of them is done.
+     * @return the report of the pipeline run over the changed files.
+     * @throws IOException          if a folder cannot be traversed or a file cannot be inspected.
+     * @throws InterruptedException if interrupted (cancelled) before or while the pipeline runs.
+     */
+    public synchronized IngestionReport synchronizeAll(ProgressListener progress) throws IOException, InterruptedException {
+        log.info("Synchronizing Vector Store with reference documents...");
+
+        var files = new ArrayList<SourceFile>();
+        for (SourceFolder folder : folders) {
+            collectFilesFromDirectory(folder, folder.directory(), files);
+        }
+
+        Map<String, Entry> known = manifest.findAll();
+        if (known.isEmpty() && bulkLoadProperties.initialLoad() && !files.isEmpty()) {
+            log.info("Nothing ingested yet; bulk-loading {} files", files.size());
+            return rebuild(files, progress);
+        }
+        if (known.isEmpty()) {
+            removeUntrackedChunks();
+        }
+        var deleted = new ArrayList<>(known.keySet());
+        files.forEach(file -> deleted.remove(sourceKey(file.path())));
+
+        IngestionReport report = synchronize(files, known, deleted, progress);
+        log.info("Ingested {} files ({} failed) into {} chunks in {} batches, took {} ms",
+                report.files(), report.failedFiles(), report.chunks(), report.batches(),
+                report.elapsed().toMillis());
+        return report;
     }
 
     /**
-     * Loads files from the specified directory and applies the given processor function.
+     * Re-ingests every document on disk into a new copy of the vector store and swaps it in, see
+     * {@link VectorStoreBulkLoader}. Searches are served from the current chunks until the swap.
+     * A rebuild that is cancelled or fails leaves the vector store and the manifest as they were.
      *
-     * @param directory Directory containing documents.
-     * @param processor Function to process each file.
-     * @param type      Human-readable type name for logging.
-     * @throws IOException if directory traversal fails.
+     * @param progress told how many files are ingested and when each of them is done.
+     * @return the report of the pipeline run over all files.
+     * @throws IOException          if a folder cannot be traversed or a file cannot be inspected.
+     * @throws InterruptedException if interrupted (cancelled) before the new chunks are swapped in.
      */
-    private void loadFilesFromDirectory(Path directory, FileProcessor processor, String type) throws IOException {
-        if (!Files.exists(directory)) {
-            log.warn("{} directory does not exist: {}", type, directory);
-            return;
+    public synchronized IngestionReport rebuildAll(ProgressListener progress) throws IOException, InterruptedException {
+        log.info("Rebuilding Vector Store from reference documents...");
+
+        var files = new ArrayList<SourceFile>();
+        for (SourceFolder folder : folders) {
+            collectFilesFromDirectory(folder, folder.directory(), files);
         }
+        return rebuild(files, progress);
+    }
 
-        try (var paths = Files.walk(directory)) {
-            paths.filter(Files::isRegularFile).forEach(file -> {
-                try {
-                    processor.process(file);
-                    log.info("Processed {} file: {}", type, file.getFileName());
-                } catch (Exception e) {
-                    log.error("Error processing {} file {}: {}", type, file.getFileName(), e.getMessage());
-                }
-            });
+    /**
+     * Re-ingests the given files, or the files below the given directories, in the calling thread.
+     * Paths that no longer exist have their chunks and manifest entries removed. Paths outside the
+     * document folders are ignored.
+     *
+     * @param paths files or directories reported as created, modified or deleted.
+     * @return the report of the pipeline run over the files that actually changed.
+     * @throws IOException          if a file cannot be inspected.
+     * @throws InterruptedException if interrupted while the pipeline runs.
+     */
+    public synchronized IngestionReport reindex(Collection<Path> paths) throws IOException, InterruptedException {
+        Map<String, Entry> known = manifest.findAll();
+        var present = new ArrayList<SourceFile>();
+        var deleted = new ArrayList<String>();
+
+        for (Path path : paths) {
+            SourceFolder folder = folderOf(path);
+            if (folder == null) {
+                continue;
+            }
+            String key = sourceKey(path);
+            String prefix = key + path.getFileSystem().getSeparator();
+            if (Files.isRegularFile(path)) {
+                present.add(folder.sourceFile(path));
+                continue;
+            }
+
+            // A directory is synchronized as a whole; a missing path may have been a file or a directory
+            var below = new ArrayList<SourceFile>();
+            if (Files.isDirectory(path)) {
+                collectFilesFromDirectory(folder, path, below);
+            }
+            var stillPresent = below.stream().map(file -> sourceKey(file.path())).collect(Collectors.toSet());
+            present.addAll(below);
+            known.keySet().stream()
+                    .filter(k -> k.equals(key) || k.startsWith(prefix))
+                    .filter(k -> !stillPresent.contains(k))
+                    .forEach(deleted::add);
         }
+
+        return synchronize(present, known, deleted, ProgressListener.NONE);
     }
 
     /**
-     * Processes a PDF file and loads each page as a separate document into the vector store.
+     * Returns the source folders being ingested, as resolved at startup.
      *
-     * @param pdfFile Path to the PDF file.
-     * @throws IOException if the file cannot be read.
+     * @return the DOCX, PDF and Excel directories.
      */
-    private void processPdfFile(Path pdfFile) throws IOException {
-        var config = PdfDocumentReaderConfig.builder()
-                .withPageExtractedTextFormatter(new ExtractedTextFormatter.Builder()
-                        .withNumberOfBottomTextLinesToDelete(0)
-                        .withNumberOfTopPagesToSkipBeforeDelete(0)
-                        .build())
-                .withPagesPerDocument(1)
-                .build();
-
-        var pdfReader = new PagePdfDocumentReader(new FileSystemResource(pdfFile.toFile()), config);
-        vectorStore.accept(textSplitter.apply(pdfReader.get()));
+    public List<Path> sourceDirectories() {
+        return folders.stream().map(SourceFolder::directory).toList();
     }
 
     /**
-     * Processes an Excel (.xlsx) file, extracting all cells' textual content sheet by sheet.
+     * Compares the given files with the manifest and runs only new or changed files
+     * through the ingestion pipeline. Chunks of the deleted files are removed.
      *
-     * @param excelFile Path to the Excel file.
-     * @throws IOException if the file is corrupt or unreadable.
+     * <p>
+     * A file whose size and modification time match its manifest entry is skipped without
+     * reading it; otherwise its content hash decides whether it really changed.
+     * Files whose duplicate chunks were collapsed into chunks of a changed or deleted file are
+     * re-ingested as well, since those chunks are about to be removed.
+     * A {@link CorpusChangedEvent} is published afterwards if anything was written or removed.
+     * </p>
+     *
+     * @param present files currently on disk to check.
+     * @param known   manifest entries, keyed by path; must cover every file in {@code present}.
+     * @param deleted  manifest keys of files no longer on disk.
+     * @param progress told how many files need ingesting and when each of them is done.
+     * @return the report of the pipeline run over the changed files.
+     * @throws IOException          if a file cannot be inspected.
+     * @throws InterruptedException if interrupted while the files are compared or the pipeline runs.
      */
-    private void processExcelFile(Path excelFile) throws IOException {
-        try (InputStream is = Files.newInputStream(excelFile);
-             Workbook workbook = new XSSFWorkbook(is)) {
-
-            var excelDocs = new ArrayList<Document>();
-
-            for (Sheet sheet : workbook) {
-                var content = new StringBuilder("Sheet: ").append(sheet.getSheetName()).append("\n");
-
-                for (Row row : sheet) {
-                    for (Cell cell : row) {
-                        try {
-                            content.append("\n").append(cell.getStringCellValue());
-                        } catch (Exception e) {
-                            log.warn("Skipping problematic cell in {}: {}", sheet.getSheetName(), e.getMessage());
-                        }
-                    }
+    private IngestionReport synchronize(List<SourceFile> present, Map<String, Entry> known,
+                                        Collection<String> deleted, ProgressListener progress)
+            throws IOException, InterruptedException {
+        var changed = new ArrayList<SourceFile>();
+        var pending = new ConcurrentHashMap<String, Entry>();
+        var dedup = dedupProperties.enabled() ? new ChunkDeduplicator(dedupProperties.similarity()) : null;
+        int unchanged = 0;
+
+        for (SourceFile file : present) {
+            // Hashing a large corpus takes a while; let a cancelled job stop here
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Synchronization cancelled");
+            }
+            String key = sourceKey(file.path());
+            var attributes = Files.readAttributes(file.path(), BasicFileAttributes.class);
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+
+            Entry entry = known.get(key);
+            if (entry != null && entry.matches(size, modified)) {
+                unchanged++;
+                continue;
+            }
+
+            String hash = contentHash(file.path());
+            if (entry != null && entry.contentHash().equals(hash)) {
+                // Touched but not edited: refresh size/mtime so the next run does not hash it again
+                manifest.save(new Entry(key, size, modified, hash, entry.chunkCount()));
+                unchanged++;
+                continue;
+            }
+
+            pending.put(key, new Entry(key, size, modified, hash, 0));
+            changed.add(ingestable(file, key, hash, dedup));
+        }
+
+        var replaced = new HashSet<String>(pending.keySet());
+        replaced.addAll(deleted);
+        int dependents = 0;
+        if (dedup != null && !replaced.isEmpty()) {
+            for (SourceFile file : dependentsOf(replaced)) {
+                String key = sourceKey(file.path());
+                var attributes = Files.readAttributes(file.path(), BasicFileAttributes.class);
+                String hash = contentHash(file.path());
+                pending.put(key, new Entry(key, attributes.size(), attributes.lastModifiedTime().toMillis(), hash, 0));
+                changed.add(ingestable(file, key, hash, dedup));
+                // Forgotten until its new chunks are written, so a failed attempt is retried on the next run
+                manifest.delete(key);
+                replaced.add(key);
+                dependents++;
+            }
+            removeDuplicateSources(replaced);
+            loadFingerprints(dedup, replaced);
+        }
+
+        for (String key : deleted) {
+            vectorStore.delete(new FilterExpressionBuilder().eq(SOURCE_KEY, key).build());
+            manifest.delete(key);
+            log.info("Removed chunks of deleted file: {}", key);
+        }
+
+        log.info("{} files unchanged, {} new or changed, {} deleted", unchanged, changed.size() - dependents, deleted.size());
+        if (dependents > 0) {
+            log.info("{} files re-ingested because their duplicate chunks were stored with a changed file", dependents);
+        }
+
+        progress.planned(changed.size(), unchanged, deleted.size());
+
+        // Files whose dropped duplicates point at chunks not yet written when the file completed
+        var unlinked = new ConcurrentHashMap<String, Set<Duplicate>>();
+        var pipeline = new IngestionPipeline(properties, batchingStrategy, batch -> {
+            metrics.recordEmbeddingBatch(batch.size());
+            vectorStore.accept(batch);
+        });
+        try {
+            IngestionReport report = pipeline.run(changed, (file, chunks, latency) -> {
+                String key = (String) file.metadata().get(SOURCE_KEY);
+                Entry entry = pending.get(key);
+                // This attempt is fully written; drop chunks of previous versions and of earlier partial attempts
+                var b = new FilterExpressionBuilder();
+                vectorStore.delete(b.and(b.eq(SOURCE_KEY, key), b.ne(INGEST_ID_KEY, file.metadata().get(INGEST_ID_KEY))).build());
+                var open = dedup == null ? Set.<Duplicate>of() : linkDuplicates(dedup.takeDuplicates(key), VectorStoreBulkLoader.LIVE);
+                if (open.isEmpty()) {
+                    manifest.save(new Entry(key, entry.size(), entry.modifiedMillis(), entry.contentHash(), chunks));
+                } else {
+                    pending.put(key, new Entry(key, entry.size(), entry.modifiedMillis(), entry.contentHash(), chunks));
+                    unlinked.put(key, open);
                 }
+                metrics.recordFileIngested(chunks);
+                progress.fileIngested(key, chunks);
+                log.info("Indexed {} ({} chunks) in {} ms", key, chunks, latency.toMillis());
+            });
+            if (dedup != null) {
+                unlinked.forEach((key, open) -> {
+                    if (linkDuplicates(open, VectorStoreBulkLoader.LIVE).isEmpty()) {
+                        manifest.save(pending.get(key));
+                    } else {
+                        // The canonical chunk's file failed; ingest this file again next time rather than lose text
+                        manifest.delete(key);
+                        log.warn("Duplicate chunks of {} point at chunks that were not stored; it will be re-ingested", key);
+                    }
+                });
+                reportDuplicates(dedup);
+            }
+            metrics.recordIngestionRun(report);
+            if (report.files() > 0) {
+                double seconds = Math.max(report.elapsed().toMillis(), 1) / 1000.0;
+                log.info("Ingestion throughput: {} files/s, {} chunks/s, {} chunks per embedding batch",
+                        String.format("%.2f", (report.files() - report.failedFiles()) / seconds),
+                        String.format("%.1f", report.chunks() / seconds),
+                        report.batches() == 0 ? 0 : report.chunks() / report.batches());
+            }
+            return report;
+        } finally {
+            // Also after a failed or interrupted run: some chunks may already have been replaced
+            if (!changed.isEmpty() || !deleted.isEmpty()) {
+                eventPublisher.publishEvent(
+                        new CorpusChangedEvent(generation.incrementAndGet(), changed.size(), deleted.size(), false));
+            }
+        }
+    }
 
-                excelDocs.add(new Document(content.toString()));
+    /**
+     * Runs all given files through the pipeline into a {@link VectorStoreBulkLoader} staging table and
+     * swaps it in together with a new manifest. Files that fail keep their previous chunks, copied over
+     * from the current table, and get no manifest entry, so the next synchronization retries them.
+     * A {@link CorpusChangedEvent} replacing the corpus is published once the swap has committed.
+     *
+     * @param present  all files on disk.
+     * @param progress told how many files are ingested and when each of them is done.
+     * @return the report of the pipeline run.
+     * @throws IOException          if a file cannot be inspected.
+     * @throws InterruptedException if interrupted before the new chunks are swapped in.
+     */
+    private IngestionReport rebuild(List<SourceFile> present, ProgressListener progress)
+            throws IOException, InterruptedException {
+        var files = new ArrayList<SourceFile>();
+        var pending = new ConcurrentHashMap<String, Entry>();
+        var dedup = dedupProperties.enabled() ? new ChunkDeduplicator(dedupProperties.similarity()) : null;
+        for (SourceFile file : present) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Rebuild cancelled");
+            }
+            String key = sourceKey(file.path());
+            var attributes = Files.readAttributes(file.path(), BasicFileAttributes.class);
+            String hash = contentHash(file.path());
+            pending.put(key, new Entry(key, attributes.size(), attributes.lastModifiedTime().toMillis(), hash, 0));
+            files.add(ingestable(file, key, hash, dedup));
+        }
+        progress.planned(files.size(), 0, 0);
+
+        var ingested = new ConcurrentHashMap<String, Entry>();
+        var unlinked = new ConcurrentHashMap<String, Set<Duplicate>>();
+        boolean swapped = false;
+        try (VectorStoreBulkLoader.Load load = bulkLoader.begin()) {
+            var pipeline = new IngestionPipeline(properties, batchingStrategy, batch -> {
+                metrics.recordEmbeddingBatch(batch.size());
+                load.write(batch);
+            });
+            IngestionReport report = pipeline.run(files, (file, chunks, latency) -> {
+                String key = (String) file.metadata().get(SOURCE_KEY);
+                Entry entry = pending.get(key);
+                var done = new Entry(key, entry.size(), entry.modifiedMillis(), entry.contentHash(), chunks);
+                var open = dedup == null ? Set.<Duplicate>of() : linkDuplicates(dedup.takeDuplicates(key), VectorStoreBulkLoader.STAGING);
+                if (open.isEmpty()) {
+                    ingested.put(key, done);
+                } else {
+                    pending.put(key, done);
+                    unlinked.put(key, open);
+                }
+                metrics.recordFileIngested(chunks);
+                progress.fileIngested(key, chunks);
+                log.info("Loaded {} ({} chunks) in {} ms", key, chunks, latency.toMillis());
+            });
+            if (dedup != null) {
+                unlinked.forEach((key, open) -> {
+                    if (linkDuplicates(open, VectorStoreBulkLoader.STAGING).isEmpty()) {
+                        ingested.put(key, pending.get(key));
+                    } else {
+                        log.warn("Duplicate chunks of {} point at chunks that were not stored; it will be re-ingested", key);
+                    }
+                });
+                reportDuplicates(dedup);
             }
 
-            vectorStore.accept(excelDocs);
+            var failed = new HashSet<String>(pending.keySet());
+            failed.removeAll(ingested.keySet());
+            if (!failed.isEmpty()) {
+                log.warn("{} files could not be loaded; keeping their previous chunks until they are re-ingested", failed.size());
+                load.carryOver(failed);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Rebuild cancelled");
+            }
+            load.buildIndexes();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Rebuild cancelled");
+            }
+            load.swap(() -> manifest.replaceAll(ingested.values()));
+            swapped = true;
+
+            metrics.recordIngestionRun(report);
+            double seconds = Math.max(report.elapsed().toMillis(), 1) / 1000.0;
+            log.info("Rebuilt Vector Store from {} files ({} failed) into {} chunks; pipeline throughput {} chunks/s",
+                    report.files(), report.failedFiles(), report.chunks(), String.format("%.1f", report.chunks() / seconds));
+            return report;
+        } finally {
+            if (swapped) {
+                eventPublisher.publishEvent(new CorpusChangedEvent(generation.incrementAndGet(), files.size(), 0, true));
+            }
         }
     }
 
     /**
-     * Processes a DOCX Word document file and loads both text paragraphs and table contents.
+     * Prepares a new or changed file for the pipeline: tags its chunks with the source metadata and
+     * a fresh ingest id, and puts the near-duplicate filter behind its splitter.
      *
-     * @param docFile Path to the DOCX file.
-     * @throws IOException if the file is unreadable or malformed.
+     * @param file  the file as found on disk.
+     * @param key   its source key.
+     * @param hash  its content hash.
+     * @param dedup the run's duplicate filter, or {@code null} if disabled.
+     * @return the file to ingest.
      */
-    private void processDocxFile(Path docFile) throws IOException {
-        try (InputStream is = Files.newInputStream(docFile);
-             XWPFDocument document = new XWPFDocument(is)) {
+    private SourceFile ingestable(SourceFile file, String key, String hash, ChunkDeduplicator dedup) {
+        String format = file.type().toLowerCase(Locale.ROOT);
+        var metadata = new HashMap<String, Object>();
+        metadata.put(SOURCE_KEY, key);
+        metadata.put(CONTENT_HASH_KEY, hash);
+        metadata.put(INGEST_ID_KEY, UUID.randomUUID().toString());
+        metadata.put(ChunkMetadata.FORMAT, format);
+        metadata.put(ChunkMetadata.FILE_NAME, file.path().getFileName().toString());
+        metadata.put(ChunkMetadata.INGESTED_AT, Instant.now().toString());
+        SourceFolder folder = folderOf(file.path());
+        if (folder != null) {
+            Path relative = folder.directory().normalize().relativize(file.path().normalize());
+            if (relative.getNameCount() > 1) {
+                metadata.put(ChunkMetadata.AREA, relative.getName(0).toString());
+            }
+        }
+
+        UnaryOperator<List<Document>> splitter = documents -> markTables(format, file.splitter().apply(documents));
+        if (dedup != null) {
+            UnaryOperator<List<Document>> tagged = splitter;
+            splitter = documents -> dedup.apply(tagged.apply(documents));
+        }
+        return new SourceFile(file.path(), file.type(), file.parser(), splitter, metadata);
+    }
 
-            var content = new StringBuilder("Document: ").append(docFile.getFileName()).append("\n");
+    /**
+     * Sets {@value ChunkMetadata#CONTAINS_TABLE} on chunks: always for Excel, for DOCX when the chunk
+     * contains one of the {@code Table:} sections written by {@link DocumentParsers#parseDocx(Path)}.
+     *
+     * @param format the file's format.
+     * @param chunks chunks of one parsed part of the file.
+     * @return the same chunks.
+     */
+    private static List<Document> markTables(String format, List<Document> chunks) {
+        for (Document chunk : chunks) {
+            boolean table = "excel".equals(format)
+                    || "docx".equals(format) && chunk.getText() != null && chunk.getText().contains("Table:\n");
+            chunk.getMetadata().put(ChunkMetadata.CONTAINS_TABLE, table);
+        }
+        return chunks;
+    }
 
-            // Extract paragraphs
-            for (var paragraph : document.getParagraphs()) {
-                var text = paragraph.getText();
-                if (text != null && !text.isBlank()) {
-                    content.append("\n").append(text.trim());
+    /**
+     * Finds the files on disk whose duplicate chunks were collapsed into chunks of the given files,
+     * transitively, since a re-ingested file may itself hold canonical chunks of others.
+     *
+     * @param replaced source keys of files whose chunks are about to be replaced or removed.
+     * @return the dependent files not already in {@code replaced}.
+     */
+    private List<SourceFile> dependentsOf(Set<String> replaced) {
+        var dependents = new ArrayList<SourceFile>();
+        var seen = new HashSet<String>(replaced);
+        Set<String> frontier = replaced;
+        while (!frontier.isEmpty()) {
+            List<String> found = jdbcClient.sql("""
+                            SELECT DISTINCT s.source
+                            FROM vector_store, jsonb_array_elements_text(metadata->'%s') AS s(source)
+                            WHERE metadata->>'%s' = ANY(CAST(:keys AS text[]))""".formatted(DUPLICATE_SOURCES_KEY, SOURCE_KEY))
+                    .param("keys", frontier.toArray(String[]::new))
+                    .query(String.class)
+                    .list();
+            var next = new HashSet<String>();
+            for (String key : found) {
+                Path path = Path.of(key);
+                SourceFolder folder = folderOf(path);
+                if (seen.add(key) && folder != null && Files.isRegularFile(path)) {
+                    dependents.add(folder.sourceFile(path));
+                    next.add(key);
                 }
             }
+            frontier = next;
+        }
+        return dependents;
+    }
 
-            // Extract tables
-            for (var table : document.getTables()) {
-                content.append("\n\nTable:\n");
-                for (var row : table.getRows()) {
-                    for (var cell : row.getTableCells()) {
-                        var text = cell.getText();
-                        if (text != null && !text.isBlank()) {
-                            content.append("| ").append(text.trim());
-                        }
+    /**
+     * Removes the given files from the {@code duplicate_sources} and {@code duplicate_copies} of all
+     * chunks. Files that still contain the duplicate text add themselves back when they are re-ingested.
+     *
+     * @param keys source keys of files being re-ingested or deleted.
+     */
+    private void removeDuplicateSources(Set<String> keys) {
+        jdbcClient.sql("""
+                        UPDATE vector_store
+                        SET metadata = jsonb_set(metadata, '{%1$s}', coalesce(
+                                (SELECT jsonb_agg(s.source)
+                                 FROM jsonb_array_elements_text(metadata->'%1$s') AS s(source)
+                                 WHERE s.source <> ALL(CAST(:keys AS text[]))), '[]'::jsonb))
+                        WHERE EXISTS (SELECT 1 FROM jsonb_array_elements_text(metadata->'%1$s') AS s(source)
+                                      WHERE s.source = ANY(CAST(:keys AS text[])))""".formatted(DUPLICATE_SOURCES_KEY))
+                .param("keys", keys.toArray(String[]::new))
+                .update();
+        jdbcClient.sql("""
+                        UPDATE vector_store
+                        SET metadata = jsonb_set(metadata, '{%1$s}', coalesce(
+                                (SELECT jsonb_agg(c.copy)
+                                 FROM jsonb_array_elements(metadata->'%1$s') AS c(copy)
+                                 WHERE c.copy->>'source' <> ALL(CAST(:keys AS text[]))), '[]'::jsonb))
+                        WHERE EXISTS (SELECT 1 FROM jsonb_array_elements(metadata->'%1$s') AS c(copy)
+                                      WHERE c.copy->>'source' = ANY(CAST(:keys AS text[])))""".formatted(ChunkMetadata.DUPLICATE_COPIES))
+                .param("keys", keys.toArray(String[]::new))
+                .update();
+    }
+
+    /**
+     * Registers the fingerprints of the stored chunks with the duplicate filter, except those of
+     * files whose chunks are about to be replaced or removed.
+     *
+     * @param dedup    the run's duplicate filter.
+     * @param replaced source keys of files being re-ingested or deleted.
+     */
+    private void loadFingerprints(ChunkDeduplicator dedup, Set<String> replaced) {
+        jdbcClient.sql("""
+                        SELECT id::text AS id, metadata->>'%s' AS source, metadata->>'%s' AS fingerprint,
+                               metadata->>'%s' AS value_hash
+                        FROM vector_store WHERE metadata->>'%2$s' IS NOT NULL""".formatted(SOURCE_KEY, FINGERPRINT_KEY, VALUES_KEY))
+                .query((rs, rowNum) -> {
+                    if (!replaced.contains(rs.getString("source"))) {
+                        dedup.register(rs.getString("id"), rs.getString("source"), rs.getString("fingerprint"),
+                                rs.getString("value_hash"));
                     }
-                    content.append("\n");
-                }
+                    return null;
+                })
+                .list();
+    }
+
+    /**
+     * Adds the file and position of dropped duplicates to the {@code duplicate_copies} of their canonical
+     * chunks, and their files, if other than the canonical chunk's, to its {@code duplicate_sources}.
+     *
+     * @param duplicates duplicates recorded for one file.
+     * @param table      the table holding the canonical chunks.
+     * @return the duplicates whose canonical chunk is not (yet) stored.
+     */
+    private Set<Duplicate> linkDuplicates(Set<Duplicate> duplicates, String table) {
+        var open = new HashSet<Duplicate>();
+        for (Duplicate duplicate : duplicates) {
+            int updated = jdbcClient.sql("""
+                            UPDATE %3$s
+                            SET metadata = jsonb_set(jsonb_set(metadata, '{%1$s}', coalesce((
+                                    SELECT jsonb_agg(DISTINCT s.source)
+                                    FROM (SELECT jsonb_array_elements_text(coalesce(metadata->'%1$s', '[]'::jsonb))
+                                          UNION ALL SELECT CAST(:source AS text)
+                                          WHERE CAST(:source AS text) IS DISTINCT FROM CAST(:canonicalSource AS text)) AS s(source)),
+                                    '[]'::jsonb)), '{%2$s}', (
+                                    SELECT jsonb_agg(DISTINCT c.copy)
+                                    FROM (SELECT jsonb_array_elements(coalesce(metadata->'%2$s', '[]'::jsonb))
+                                          UNION ALL SELECT jsonb_strip_nulls(jsonb_build_object(
+                                                  'source', CAST(:source AS text), 'location', CAST(:location AS text)))) AS c(copy)))
+                            WHERE id = CAST(:id AS uuid)""".formatted(DUPLICATE_SOURCES_KEY, ChunkMetadata.DUPLICATE_COPIES, table))
+                    .param("source", duplicate.source())
+                    .param("canonicalSource", duplicate.canonicalSource())
+                    .param("location", duplicate.location())
+                    .param("id", duplicate.canonicalId())
+                    .update();
+            if (updated == 0) {
+                open.add(duplicate);
             }
+        }
+        return open;
+    }
 
-            var documents = textSplitter.apply(List.of(new Document(content.toString())));
-            vectorStore.accept(documents);
+    /**
+     * Logs and counts what near-duplicate elimination saved in this run.
+     *
+     * @param dedup the run's duplicate filter.
+     */
+    private void reportDuplicates(ChunkDeduplicator dedup) {
+        int total = dedup.kept() + dedup.dropped();
+        if (total == 0) {
+            return;
         }
+        metrics.recordDuplicates(dedup.dropped(), dedup.droppedTokens());
+        log.info("Near-duplicate elimination: {} of {} chunks ({}%) collapsed, ~{} embedding tokens saved",
+                dedup.dropped(), total, String.format("%.1f", 100.0 * dedup.dropped() / total), dedup.droppedTokens());
     }
 
+    /**
+     * Converts {@code vector_store.metadata} from {@code json}, as created by pgvector's schema
+     * initialization, to {@code jsonb}, and indexes it: a GIN index ({@code jsonb_path_ops}) serves the
+     * jsonpath filters of metadata-filtered searches and deletes, and an expression index on the
+     * source serves the per-file lookups of incremental ingestion.
+     */
+    private void initializeMetadataIndex() {
+        String type = jdbcClient.sql("""
+                        SELECT data_type FROM information_schema.columns
+                        WHERE table_schema = current_schema() AND table_name = 'vector_store' AND column_name = 'metadata'""")
+                .query(String.class)
+                .optional()
+                .orElse("jsonb");
+        if ("json".equals(type)) {
+            long start = System.nanoTime();
+            jdbcClient.sql("ALTER TABLE vector_store ALTER COLUMN metadata TYPE jsonb USING metadata::jsonb").update();
+            log.info("Converted vector_store.metadata to jsonb in {} ms", (System.nanoTime() - start) / 1_000_000);
+        }
+        jdbcClient.sql("CREATE INDEX IF NOT EXISTS vector_store_metadata_idx ON vector_store USING GIN (metadata jsonb_path_ops)")
+                .update();
+        jdbcClient.sql("CREATE INDEX IF NOT EXISTS vector_store_source_idx ON vector_store ((metadata->>'" + SOURCE_KEY + "'))")
+                .update();
+    }
+
+    /**
+     * Adds the full-text column and GIN index used by hybrid retrieval, if missing. The column
+     * is generated from {@code content}, so every chunk written or replaced by the pipeline is
+     * indexed in the same statement and the lexical index never lags behind the vectors.
+     */
+    private void initializeLexicalIndex() {
+        jdbcClient.sql("""
+                        ALTER TABLE vector_store ADD COLUMN IF NOT EXISTS content_tsv tsvector
+                            GENERATED ALWAYS AS (to_tsvector('english', coalesce(content, ''))) STORED""")
+                .update();
+        jdbcClient.sql("CREATE INDEX IF NOT EXISTS vector_store_content_tsv_idx ON vector_store USING GIN (content_tsv)")
+                .update();
+    }
+
+    /**
+     * Deletes chunks written before the manifest existed. They carry no source metadata,
+     * so they could never be matched to a file and would otherwise be duplicated.
+     */
+    private void removeUntrackedChunks() {
+        int removed = jdbcClient.sql("DELETE FROM vector_store WHERE metadata->>'" + SOURCE_KEY + "' IS NULL")
+                .update();
+        if (removed > 0) {
+            log.info("Removed {} chunks without source metadata; their files will be re-ingested", removed);
+        }
+    }
+
+    /**
+     * Collects the regular files below the specified directory, pairing each with its folder's parser.
+     *
+     * @param folder    Source folder the directory belongs to.
+     * @param directory Directory containing documents.
+     * @param files     List the discovered files are appended to.
+     * @throws IOException if directory traversal fails.
+     */
+    private void collectFilesFromDirectory(SourceFolder folder, Path directory,
+                                           List<SourceFile> files) throws IOException {
+        if (!Files.exists(directory)) {
+            log.warn("{} directory does not exist: {}", folder.type(), directory);
+            return;
+        }
+
+        try (var paths = Files.walk(directory)) {
+            paths.filter(Files::isRegularFile)
+                    .forEach(file -> files.add(folder.sourceFile(file)));
+        }
+    }
+
+    /**
+     * Finds the source folder a path belongs to.
+     *
+     * @param path a file or directory path.
+     * @return the containing folder, or {@code null} if the path is outside all of them.
+     */
+    private SourceFolder folderOf(Path path) {
+        Path normalized = path.normalize();
+        return folders.stream()
+                .filter(folder -> normalized.startsWith(folder.directory().normalize()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Returns the manifest key and {@value IngestionManifest#SOURCE_KEY} metadata value for a file.
+     *
+     * @param file Path to the file.
+     * @return the normalized path as a string.
+     */
+    private static String sourceKey(Path file) {
+        return file.normalize().toString();
+    }
+
+    /**
+     * Computes the hex-encoded SHA-256 hash of a file's content.
+     *
+     * @param file Path to the file.
+     * @return the content hash.
+     * @throws IOException if the file cannot be read.
+     */
+    private static String contentHash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream is = Files.newInputStream(file);
+             OutputStream sink = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            is.transferTo(sink);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 
     /**
      * Resolves a folder path by first checking in src/main/resources, and then in the root directory.
@@ -260,36 +872,46 @@ public class DocsLoader {
         throw new IOException("Folder '" + folderName + "' not found in resources or root directory.");
     }
 
-
     /**
-     * Functional interface for file processors.
+     * Follows a synchronization run, e.g. to report the progress of an ingestion job.
+     * Methods may be called from pipeline threads.
      */
-    @FunctionalInterface
-    private interface FileProcessor {
-        void process(Path path) throws Exception;
+    public interface ProgressListener {
+
+        /**
+         * Listener for runs nobody follows.
+         */
+        ProgressListener NONE = new ProgressListener() {
+        };
+
+        /**
+         * Called once the files on disk have been compared with the manifest, before any is ingested.
+         *
+         * @param files     new or changed files about to be ingested
+         * @param unchanged files skipped because they are already indexed
+         * @param deleted   files whose chunks are removed
+         */
+        default void planned(int files, int unchanged, int deleted) {
+        }
+
+        /**
+         * Called when all chunks of a file have been written.
+         *
+         * @param source the file's source key
+         * @param chunks chunks written for it
+         */
+        default void fileIngested(String source, int chunks) {
+        }
     }
 
     /**
-     * Custom BatchingStrategy bean that overrides the default settings.
-     * This is used to control how documents are batched before being sent to the vector store.
-     *
-     * <p>Maximum token counts for supported models:
-     * <ul>
-     *     <li>OpenAI text-embedding-ada-002/003: 8191 tokens</li>
-     *     <li>Anthropic Claude 2: 100,000 tokens</li>
-     *     <li>Amazon Titan: 20,000 tokens</li>
-     * </ul>
-     *
-     * <p>Recommended reserve percentage: 10% to 20%
-     *
-     * @return a BatchingStrategy instance with custom settings.
+     * A document folder together with the parser and splitter for the files it contains.
      */
-    // @Bean
-    public BatchingStrategy batchingStrategy() {
-        return new TokenCountBatchingStrategy(
-                EncodingType.CL100K_BASE,
-                8191,
-                0.1
-        );
+    private record SourceFolder(Path directory, String type, FileParser parser,
+                                UnaryOperator<List<Document>> splitter) {
+
+        SourceFile sourceFile(Path file) {
+            return new SourceFile(file, type, parser, splitter, Map.of());
+        }
     }
 }
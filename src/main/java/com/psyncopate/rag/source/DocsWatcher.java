@@ -0,0 +1,198 @@
+package com.psyncopate.rag.source;
+
+import com.psyncopate.rag.source.IngestionPipeline.IngestionReport;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the DOCX, PDF and Excel folders and hot re-ingests files that change on disk.
+ *
+ * <p>
+ * File events are coalesced: affected paths are collected until no new event has arrived
+ * for the debounce window (or the maximum delay has passed since the first one), and are
+ * then handed to {@link DocsLoader#reindex} on a dedicated background thread. A save that
+ * fires several modify events therefore triggers one re-ingestion, and queries keep being
+ * served while it runs.
+ * </p>
+ */
+@Component
+public class DocsWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(DocsWatcher.class);
+
+    private final DocsLoader docsLoader;
+    private final WatchProperties properties;
+
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final Set<Path> pending = new LinkedHashSet<>();
+    private long firstEventNanos;
+    private long lastEventNanos;
+
+    private WatchService watchService;
+    private Thread watchThread;
+    private ExecutorService ingestionExecutor;
+
+    public DocsWatcher(DocsLoader docsLoader, WatchProperties properties) {
+        this.docsLoader = docsLoader;
+        this.properties = properties;
+    }
+
+    /**
+     * Registers the document folders and starts the watch thread, unless watching is disabled.
+     *
+     * @throws IOException if the watch service cannot be created or a folder cannot be registered
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!properties.enabled()) {
+            log.info("Document folder watching is disabled");
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path directory : docsLoader.sourceDirectories()) {
+            registerTree(directory);
+        }
+
+        ingestionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "docs-reingest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchThread = new Thread(this::watchLoop, "docs-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+
+        log.info("Watching {} directories for document changes (debounce {} ms)",
+                watchedDirectories.size(), properties.debounce().toMillis());
+    }
+
+    /**
+     * Stops watching and abandons any re-ingestion that has not started yet.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (ingestionExecutor != null) {
+            ingestionExecutor.shutdownNow();
+        }
+    }
+
+    private void watchLoop() {
+        long debounceNanos = properties.debounce().toNanos();
+        long maxDelayNanos = properties.maxDelay().toNanos();
+
+        try {
+            while (true) {
+                long waitNanos = pending.isEmpty()
+                        ? debounceNanos
+                        : Math.min(debounceNanos - (System.nanoTime() - lastEventNanos),
+                                   maxDelayNanos - (System.nanoTime() - firstEventNanos));
+
+                WatchKey key = watchService.poll(Math.max(waitNanos, 0), TimeUnit.NANOSECONDS);
+                if (key != null) {
+                    collect(key);
+                }
+
+                long now = System.nanoTime();
+                if (!pending.isEmpty()
+                        && (now - lastEventNanos >= debounceNanos || now - firstEventNanos >= maxDelayNanos)) {
+                    submit(Set.copyOf(pending), firstEventNanos);
+                    pending.clear();
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Document watcher stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collect(WatchKey key) {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // Events were lost; fall back to synchronizing every folder
+                log.warn("Watch event overflow, re-scanning all document folders");
+                docsLoader.sourceDirectories().forEach(this::markPending);
+                continue;
+            }
+
+            Path changed = directory.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+                try {
+                    registerTree(changed);
+                } catch (IOException e) {
+                    log.warn("Could not watch new directory {}: {}", changed, e.getMessage());
+                }
+            }
+            markPending(changed);
+        }
+
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    private void markPending(Path path) {
+        long now = System.nanoTime();
+        if (pending.isEmpty()) {
+            firstEventNanos = now;
+        }
+        lastEventNanos = now;
+        pending.add(path);
+    }
+
+    private void submit(Set<Path> paths, long firstEventNanos) {
+        // execute, not submit: nobody reads a Future, so a failure must be logged here
+        ingestionExecutor.execute(() -> {
+            try {
+                IngestionReport report = docsLoader.reindex(paths);
+                log.info("Re-ingested {} changed paths: {} files, {} chunks, {} failed; {} ms after first event",
+                        paths.size(), report.files(), report.chunks(), report.failedFiles(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstEventNanos));
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to re-ingest {}: {}", paths, e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private void registerTree(Path root) throws IOException {
+        try (var directories = Files.walk(root)) {
+            for (Path directory : (Iterable<Path>) directories.filter(Files::isDirectory)::iterator) {
+                WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                watchedDirectories.put(key, directory);
+            }
+        }
+    }
+}
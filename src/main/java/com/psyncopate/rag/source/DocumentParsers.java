@@ -0,0 +1,114 @@
+package com.psyncopate.rag.source;
+
+import com.psyncopate.rag.source.IngestionPipeline.DocumentSink;
+import jakarta.annotation.PreDestroy;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The parsers and splitters of the formats {@link DocsLoader} ingests, configured from the
+ * {@link IngestionProperties}.
+ *
+ * <p>
+ * They need no database, vector store or embedding model, so they can be used on their own, e.g. by
+ * the parsing and chunking benchmarks.
+ * </p>
+ */
+@Component
+public class DocumentParsers {
+
+    private final TokenTextSplitter pdfSplitter;
+    private final DocxStructureChunker docxChunker;
+    private final StreamingExcelReader excelReader;
+    private final PdfPageRangeReader pdfReader;
+
+    /**
+     * @param properties chunk budgets and PDF extraction parallelism
+     */
+    public DocumentParsers(IngestionProperties properties) {
+        this.pdfSplitter = TokenTextSplitter.builder().withChunkSize(properties.pdfChunkTokens()).build();
+        this.docxChunker = new DocxStructureChunker(properties.docxChunkTokens());
+        this.excelReader = new StreamingExcelReader(properties.excelRowsPerChunk(), properties.excelChunkTokens());
+        this.pdfReader = new PdfPageRangeReader(properties.pdfPagesPerRange(), properties.pdfRangeThreads(),
+                properties.pdfMaxInFlightPages());
+    }
+
+    /**
+     * Parses a DOCX Word document file into chunks that follow its headings, paragraphs and tables.
+     *
+     * @param docFile Path to the DOCX file.
+     * @return the file's chunks in document order, each within {@code docx-chunk-tokens}.
+     * @throws IOException if the file is unreadable or malformed.
+     * @see DocxStructureChunker
+     */
+    public List<Document> parseDocx(Path docFile) throws IOException {
+        return docxChunker.chunk(docFile);
+    }
+
+    /**
+     * Streams an Excel (.xlsx) file sheet by sheet, emitting header-aware chunks of rows.
+     *
+     * @param excelFile Path to the Excel file.
+     * @param sink      Receiver of the chunks, fed while the workbook is still being read.
+     * @throws IOException          if the file is corrupt or unreadable.
+     * @throws InterruptedException if interrupted while waiting for the splitter stage.
+     * @see StreamingExcelReader
+     */
+    public void parseExcel(Path excelFile, DocumentSink sink) throws IOException, InterruptedException {
+        excelReader.read(excelFile, sink);
+    }
+
+    /**
+     * Streams a PDF file page by page; large files are extracted in parallel page ranges.
+     *
+     * @param pdfFile Path to the PDF file.
+     * @param sink    Receiver of the page documents, fed range by range as extraction proceeds.
+     * @throws IOException          if the file is corrupt or unreadable.
+     * @throws InterruptedException if interrupted while waiting for the splitter stage.
+     * @see PdfPageRangeReader
+     */
+    public void parsePdf(Path pdfFile, DocumentSink sink) throws IOException, InterruptedException {
+        pdfReader.read(pdfFile, sink);
+    }
+
+    /**
+     * Parses a PDF file, returning each page as a separate document.
+     *
+     * @param pdfFile Path to the PDF file.
+     * @return one document per page with text, in page order.
+     * @throws IOException          if the file cannot be read.
+     * @throws InterruptedException if interrupted while pages are being extracted.
+     */
+    public List<Document> parsePdf(Path pdfFile) throws IOException, InterruptedException {
+        var pages = new ArrayList<Document>();
+        pdfReader.read(pdfFile, pages::addAll);
+        pages.sort(Comparator.comparingInt(page -> (Integer) page.getMetadata().get(ChunkMetadata.PAGE)));
+        return pages;
+    }
+
+    /**
+     * Splits parsed PDF pages into chunks of {@code pdf-chunk-tokens}. DOCX and Excel chunks are
+     * already cut to their token budgets by their readers.
+     *
+     * @param pages page documents of a PDF file
+     * @return the chunks
+     */
+    public List<Document> splitPdf(List<Document> pages) {
+        return pdfSplitter.apply(pages);
+    }
+
+    /**
+     * Stops the PDF page-range extraction threads.
+     */
+    @PreDestroy
+    public void close() {
+        pdfReader.close();
+    }
+}
@@ -0,0 +1,253 @@
+package com.psyncopate.rag.source;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFSDT;
+import org.apache.poi.xwpf.usermodel.XWPFStyle;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Cuts a Word (.docx) document into chunks along its structure instead of at arbitrary token offsets.
+ *
+ * <p>
+ * The body is walked in document order, so paragraphs and tables stay where the author put them.
+ * Every heading (a paragraph styled {@code Heading 1} … {@code Heading 9}) closes the current chunk
+ * and updates the heading hierarchy; each chunk starts with the document name and the hierarchy it
+ * belongs to ({@code Section: Kafka > Restart procedure}), which is also recorded as
+ * {@link ChunkMetadata#SECTION}. Paragraphs are added whole while the chunk stays within
+ * {@code maxChunkTokens}; a paragraph that exceeds the budget by itself is split by a
+ * {@link TokenTextSplitter}.
+ * </p>
+ *
+ * <p>
+ * Tables are rendered row by row with their first row as header. When a table does not fit into the
+ * current chunk it continues in the next one, and every chunk holding rows of the table starts with
+ * {@code Table:} and the header again, so no row is retrieved without its column names.
+ * </p>
+ */
+public class DocxStructureChunker {
+
+    private static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    /**
+     * Value of {@link ChunkMetadata#CHUNKING} on every chunk cut by this chunker.
+     */
+    static final String STRUCTURE = "structure";
+
+    private static final Pattern HEADING_STYLE = Pattern.compile("heading\\s*([1-9])");
+
+    private final int maxChunkTokens;
+
+    /**
+     * @param maxChunkTokens token budget of a chunk, document and section lines included
+     */
+    public DocxStructureChunker(int maxChunkTokens) {
+        this.maxChunkTokens = maxChunkTokens;
+    }
+
+    /**
+     * Reads the document and returns its chunks in document order.
+     *
+     * @param docFile Path to the Word document.
+     * @return the chunks, ready for embedding.
+     * @throws IOException if the file is corrupt or unreadable.
+     */
+    public List<Document> chunk(Path docFile) throws IOException {
+        try (InputStream is = Files.newInputStream(docFile);
+             XWPFDocument document = new XWPFDocument(is)) {
+            var chunker = new SectionChunker(docFile.getFileName().toString());
+            for (IBodyElement element : document.getBodyElements()) {
+                if (element instanceof XWPFParagraph paragraph) {
+                    String text = paragraph.getText();
+                    if (text == null || text.isBlank()) {
+                        continue;
+                    }
+                    int level = headingLevel(document, paragraph);
+                    if (level > 0) {
+                        chunker.heading(level, text.strip());
+                    } else {
+                        chunker.paragraph(paragraph.getNumID() != null ? "- " + text.strip() : text.strip());
+                    }
+                } else if (element instanceof XWPFTable table) {
+                    chunker.table(table);
+                } else if (element instanceof XWPFSDT contentControl) {
+                    String text = contentControl.getContent().getText();
+                    if (text != null && !text.isBlank()) {
+                        chunker.paragraph(text.strip());
+                    }
+                }
+            }
+            return chunker.finish();
+        }
+    }
+
+    /**
+     * @return the heading level (1-9) of a paragraph styled as a heading, otherwise 0
+     */
+    private static int headingLevel(XWPFDocument document, XWPFParagraph paragraph) {
+        String styleId = paragraph.getStyleID();
+        if (styleId == null) {
+            return 0;
+        }
+        XWPFStyle style = document.getStyles() != null ? document.getStyles().getStyle(styleId) : null;
+        String name = style != null && style.getName() != null ? style.getName() : styleId;
+        Matcher matcher = HEADING_STYLE.matcher(name.toLowerCase(Locale.ROOT));
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    private static String renderRow(XWPFTableRow row) {
+        var cells = new ArrayList<String>();
+        for (XWPFTableCell cell : row.getTableCells()) {
+            String text = cell.getText();
+            cells.add(text == null ? "" : text.strip().replaceAll("\\s+", " "));
+        }
+        return cells.stream().allMatch(String::isEmpty) ? null : "| " + String.join(" | ", cells) + " |";
+    }
+
+    private static int tokens(String text) {
+        return ENCODING.countTokens(text);
+    }
+
+    /**
+     * Collects the blocks of the current section into chunks.
+     */
+    private final class SectionChunker {
+
+        private final String fileName;
+        private final Deque<Heading> headings = new ArrayDeque<>();
+        private final List<Document> chunks = new ArrayList<>();
+        private final StringBuilder body = new StringBuilder();
+
+        private String title;
+        private int titleTokens;
+        private int bodyTokens;
+
+        SectionChunker(String fileName) {
+            this.fileName = fileName;
+            updateTitle();
+        }
+
+        void heading(int level, String text) {
+            flush();
+            while (!headings.isEmpty() && headings.peekLast().level() >= level) {
+                headings.removeLast();
+            }
+            headings.addLast(new Heading(level, text));
+            updateTitle();
+        }
+
+        void paragraph(String text) {
+            int blockTokens = tokens(text) + 1;
+            if (bodyTokens > 0 && !fits(blockTokens)) {
+                flush();
+            }
+            if (fits(blockTokens)) {
+                append(text, blockTokens);
+                return;
+            }
+            var splitter = TokenTextSplitter.builder().withChunkSize(Math.max(1, maxChunkTokens - titleTokens - 1)).build();
+            List<Document> pieces = splitter.split(new Document(text));
+            for (int i = 0; i < pieces.size(); i++) {
+                if (i > 0) {
+                    flush();
+                }
+                append(pieces.get(i).getText(), tokens(pieces.get(i).getText()) + 1);
+            }
+        }
+
+        void table(XWPFTable table) {
+            List<String> rows = new ArrayList<>();
+            for (XWPFTableRow row : table.getRows()) {
+                String line = renderRow(row);
+                if (line != null) {
+                    rows.add(line);
+                }
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+            String header = "Table:\n" + rows.get(0);
+            int headerTokens = tokens(header) + 1;
+            if (bodyTokens > 0 && !fits(headerTokens + (rows.size() > 1 ? tokens(rows.get(1)) + 1 : 0))) {
+                flush();
+            }
+            append(header, headerTokens);
+            int rowsInChunk = 0;
+            for (String row : rows.subList(1, rows.size())) {
+                int rowTokens = tokens(row) + 1;
+                // A single row larger than the budget is kept whole with its header rather than cut mid-row,
+                // so the chunk is only closed if it already holds rows, never leaving the header on its own
+                if (!fits(rowTokens) && rowsInChunk > 0) {
+                    flush();
+                    append(header, headerTokens);
+                    rowsInChunk = 0;
+                }
+                body.append('\n').append(row);
+                bodyTokens += rowTokens;
+                rowsInChunk++;
+            }
+        }
+
+        List<Document> finish() {
+            flush();
+            return chunks;
+        }
+
+        private boolean fits(int blockTokens) {
+            return titleTokens + bodyTokens + blockTokens <= maxChunkTokens;
+        }
+
+        private void append(String block, int blockTokens) {
+            body.append(body.isEmpty() ? "" : "\n\n").append(block);
+            bodyTokens += blockTokens;
+        }
+
+        private void flush() {
+            if (body.isEmpty()) {
+                return;
+            }
+            var metadata = new HashMap<String, Object>();
+            metadata.put(ChunkMetadata.CHUNKING, STRUCTURE);
+            if (!headings.isEmpty()) {
+                metadata.put(ChunkMetadata.SECTION, section());
+            }
+            chunks.add(new Document(title + body, metadata));
+            body.setLength(0);
+            bodyTokens = 0;
+        }
+
+        private void updateTitle() {
+            title = "Document: " + fileName + "\n" + (headings.isEmpty() ? "" : "Section: " + section() + "\n") + "\n";
+            titleTokens = tokens(title);
+        }
+
+        private String section() {
+            return headings.stream().map(Heading::text).collect(Collectors.joining(" > "));
+        }
+    }
+
+    private record Heading(int level, String text) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.psyncopate.rag.source;
+
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wiring for the document ingestion pipeline.
+ */
+@Configuration
+@EnableConfigurationProperties({IngestionProperties.class, IngestionJobProperties.class, DedupProperties.class,
+        WatchProperties.class, BulkLoadProperties.class})
+public class IngestionConfiguration {
+
+    /**
+     * Custom BatchingStrategy bean that overrides the default settings.
+     * This is used to control how documents are batched before being sent to the vector store,
+     * both by the ingestion writer stage and by the pgvector store when it calls the embedding model.
+     *
+     * <p>Maximum token counts for supported models:
+     * <ul>
+     *     <li>OpenAI text-embedding-ada-002/003: 8191 tokens</li>
+     *     <li>Anthropic Claude 2: 100,000 tokens</li>
+     *     <li>Amazon Titan: 20,000 tokens</li>
+     * </ul>
+     *
+     * <p>Recommended reserve percentage: 10% to 20%
+     *
+     * @param properties ingestion settings carrying the token limit and reserve
+     * @return a BatchingStrategy instance with custom settings.
+     */
+    @Bean
+    public BatchingStrategy batchingStrategy(IngestionProperties properties) {
+        return new TokenCountBatchingStrategy(
+                EncodingType.CL100K_BASE,
+                properties.maxBatchTokens(),
+                properties.reservePercentage()
+        );
+    }
+}
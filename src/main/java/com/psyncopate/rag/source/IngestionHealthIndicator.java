@@ -0,0 +1,37 @@
+package com.psyncopate.rag.source;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health contributor {@code ingestion}: reports the current {@link IngestionJobService} job and, when
+ * {@code rag.ingestion.jobs.ready-while-indexing} is off, is {@code OUT_OF_SERVICE} until the startup
+ * job has finished. It is part of the readiness group ({@code /actuator/health/readiness}), so an
+ * orchestrator can either route traffic to a partially indexed instance or hold it back.
+ */
+@Component
+public class IngestionHealthIndicator implements HealthIndicator {
+
+    private final IngestionJobService jobs;
+    private final IngestionJobProperties properties;
+
+    public IngestionHealthIndicator(IngestionJobService jobs, IngestionJobProperties properties) {
+        this.jobs = jobs;
+        this.properties = properties;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = !properties.readyWhileIndexing() && !jobs.isStartupComplete()
+                ? Health.outOfService()
+                : Health.up();
+        jobs.current().ifPresent(job -> health
+                .withDetail("job", job.id())
+                .withDetail("status", job.status())
+                .withDetail("filesDone", job.filesDone())
+                .withDetail("filesTotal", job.filesTotal())
+                .withDetail("progress", Math.round(job.progress() * 1000) / 1000.0));
+        return health.build();
+    }
+}
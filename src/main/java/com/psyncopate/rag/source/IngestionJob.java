@@ -0,0 +1,77 @@
+package com.psyncopate.rag.source;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * State of a background ingestion job, as persisted in the {@code ingestion_job} table.
+ *
+ * @param id          job id
+ * @param trigger     what started the job: {@code startup}, {@code api} or {@code shell}
+ * @param mode        whether the job synchronizes changed files or rebuilds the whole vector store
+ * @param status      where the job is in its life cycle
+ * @param resumedFrom the interrupted job this one picks up after, if any
+ * @param filesTotal  new or changed files the job has to ingest, known once the folders have been compared
+ *                    with the manifest; {@code 0} until then
+ * @param filesDone   files completely written so far
+ * @param filesFailed files that could not be parsed, split or written
+ * @param unchanged   files skipped because they were already indexed
+ * @param deleted     files whose chunks were removed
+ * @param chunks      chunks written so far
+ * @param error       why the job failed
+ * @param createdAt   when the job was requested
+ * @param startedAt   when it started running
+ * @param finishedAt  when it ended
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record IngestionJob(UUID id, String trigger, Mode mode, Status status, UUID resumedFrom,
+                           int filesTotal, int filesDone, int filesFailed, int unchanged, int deleted, long chunks,
+                           String error, Instant createdAt, Instant startedAt, Instant finishedAt) {
+
+    /**
+     * What a job does.
+     */
+    public enum Mode {
+        /** Ingests new and changed files and removes deleted ones ({@link DocsLoader#synchronizeAll}). */
+        SYNC,
+        /** Bulk-loads all files into a new table and swaps it in ({@link DocsLoader#rebuildAll}). */
+        REBUILD
+    }
+
+    /**
+     * Life cycle of a job.
+     */
+    public enum Status {
+        /** Waiting for the loader, e.g. behind a re-index of changed files. */
+        QUEUED,
+        /** Comparing files with the manifest or ingesting them. */
+        RUNNING,
+        /** All files processed; some may have failed, see {@link IngestionJob#filesFailed()}. */
+        SUCCEEDED,
+        /** Stopped by an error. */
+        FAILED,
+        /** Stopped on request. */
+        CANCELLED,
+        /** The application stopped while the job ran; the next job resumes where it stopped. */
+        INTERRUPTED;
+
+        /**
+         * @return whether the job has ended
+         */
+        public boolean isFinished() {
+            return this != QUEUED && this != RUNNING;
+        }
+    }
+
+    /**
+     * @return share of the files to ingest that have been processed, {@code 0} to {@code 1}
+     */
+    public double progress() {
+        if (status == Status.SUCCEEDED) {
+            return 1.0;
+        }
+        return filesTotal == 0 ? 0.0 : (double) (filesDone + filesFailed) / filesTotal;
+    }
+}
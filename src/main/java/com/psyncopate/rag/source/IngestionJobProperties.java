@@ -0,0 +1,21 @@
+package com.psyncopate.rag.source;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the background ingestion jobs, bound from {@code rag.ingestion.jobs.*}.
+ *
+ * @param runOnStartup       whether a synchronization job is started as soon as the application is up
+ * @param readyWhileIndexing whether the application reports ready while the startup job is still running,
+ *                           serving from a partial index; if {@code false} the {@code ingestion} health
+ *                           indicator (part of the readiness group) is out of service until it ends
+ * @param history            finished jobs kept in the {@code ingestion_job} table
+ * @see IngestionJobService
+ */
+@ConfigurationProperties(prefix = "rag.ingestion.jobs")
+public record IngestionJobProperties(
+        @DefaultValue("true") boolean runOnStartup,
+        @DefaultValue("true") boolean readyWhileIndexing,
+        @DefaultValue("100") int history) {
+}
@@ -0,0 +1,360 @@
+package com.psyncopate.rag.source;
+
+import com.psyncopate.rag.source.IngestionJob.Mode;
+import com.psyncopate.rag.source.IngestionJob.Status;
+import com.psyncopate.rag.source.IngestionPipeline.IngestionReport;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the full synchronization of the document folders ({@link DocsLoader#synchronizeAll}) as a
+ * background job, so the application starts serving — from whatever is already indexed — within
+ * seconds instead of after every file has been embedded. A {@link Mode#REBUILD} job runs
+ * {@link DocsLoader#rebuildAll} instead, re-ingesting every file into a new table that is swapped in.
+ *
+ * <p>
+ * One job runs at a time, on a dedicated thread. A job is started when the application is up
+ * (unless {@code rag.ingestion.jobs.run-on-startup} is off) and on request through the admin API or
+ * the shell; it can be cancelled, which interrupts the pipeline. Its progress is checkpointed in the
+ * {@link IngestionJobStore} at most every {@value #CHECKPOINT_MILLIS} ms.
+ * </p>
+ *
+ * <p>
+ * A job does not need to be resumed explicitly: every file whose chunks are completely written is
+ * recorded in the {@link IngestionManifest} right away, so the next job skips it. Jobs a previous
+ * process left running are marked {@link Status#INTERRUPTED} at startup, and the startup job records
+ * which one it resumes. A file that was half written when the process died is ingested again; with
+ * the embedding cache enabled its already embedded chunks are not sent to the embedding API twice.
+ * An interrupted rebuild leaves the vector store as it was and is not resumed; start it again.
+ * </p>
+ */
+@Component
+public class IngestionJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionJobService.class);
+
+    private static final long CHECKPOINT_MILLIS = 1000;
+
+    private final DocsLoader docsLoader;
+    private final IngestionJobStore store;
+    private final IngestionJobProperties properties;
+    private final ExecutorService executor;
+
+    // Guarded by "this"
+    private RunningJob current;
+    private UUID interruptedJob;
+    private volatile boolean startupComplete;
+
+    /**
+     * @param docsLoader synchronizes the vector store with the document folders
+     * @param store      persists the jobs and their progress
+     * @param properties startup behaviour and history size
+     */
+    public IngestionJobService(DocsLoader docsLoader, IngestionJobStore store, IngestionJobProperties properties) {
+        this.docsLoader = docsLoader;
+        this.store = store;
+        this.properties = properties;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ingestion-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates the job table and marks the jobs a previous process did not finish as interrupted.
+     */
+    @PostConstruct
+    public synchronized void init() {
+        store.initializeSchema();
+        List<IngestionJob> interrupted = store.interruptUnfinished();
+        if (!interrupted.isEmpty()) {
+            interruptedJob = interrupted.get(0).id();
+            log.warn("Ingestion job {} was interrupted after {} of {} files; the next job resumes from there",
+                    interruptedJob, interrupted.get(0).filesDone(), interrupted.get(0).filesTotal());
+        }
+    }
+
+    /**
+     * Starts the startup synchronization once the context is up, before command line runners such as
+     * the interactive shell, which would otherwise delay it until they return.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void onApplicationStarted() {
+        if (!properties.runOnStartup()) {
+            startupComplete = true;
+            log.info("Ingestion on startup is disabled; start a job through the admin API or the shell");
+            return;
+        }
+        start("startup", Mode.SYNC);
+    }
+
+    /**
+     * Starts a synchronization or rebuild job.
+     *
+     * @param trigger what requested the job, e.g. {@code api} or {@code shell}
+     * @param mode    what the job does
+     * @return the new job
+     * @throws IllegalStateException if a job is already queued or running
+     */
+    public synchronized IngestionJob start(String trigger, Mode mode) {
+        if (current != null && !current.status.isFinished()) {
+            throw new IllegalStateException("Ingestion job " + current.id + " is still " + current.status.name().toLowerCase());
+        }
+        var job = new RunningJob(trigger, mode, mode == Mode.SYNC ? interruptedJob : null);
+        if (mode == Mode.SYNC) {
+            interruptedJob = null;
+        }
+        current = job;
+        job.save();
+        executor.execute(() -> run(job));
+        log.info("Started ingestion job {} ({}, {})", job.id, mode.name().toLowerCase(), trigger);
+        return job.snapshot();
+    }
+
+    /**
+     * Cancels a queued or running job. Files already written stay indexed; the next job continues with the rest.
+     *
+     * @param id the job id
+     * @return the job as it is now, or empty if it is not the current job
+     * @throws IllegalStateException if the job has already finished
+     */
+    public synchronized Optional<IngestionJob> cancel(UUID id) {
+        if (current == null || !current.id.equals(id)) {
+            return Optional.empty();
+        }
+        if (current.status.isFinished()) {
+            throw new IllegalStateException("Ingestion job " + id + " has already " + current.status.name().toLowerCase());
+        }
+        current.cancelRequested = true;
+        if (current.thread != null) {
+            current.thread.interrupt();
+        }
+        log.info("Cancelling ingestion job {}", id);
+        return Optional.of(current.snapshot());
+    }
+
+    /**
+     * @return the most recent job started by this process, finished or not
+     */
+    public synchronized Optional<IngestionJob> current() {
+        return Optional.ofNullable(current).map(RunningJob::snapshot);
+    }
+
+    /**
+     * @param id a job id
+     * @return the job, live if it is the current one, otherwise as last recorded
+     */
+    public Optional<IngestionJob> find(UUID id) {
+        Optional<IngestionJob> live = current().filter(job -> job.id().equals(id));
+        return live.isPresent() ? live : store.find(id);
+    }
+
+    /**
+     * @param limit maximum number of jobs
+     * @return the most recent jobs, newest first, the current one with its live progress
+     */
+    public List<IngestionJob> recent(int limit) {
+        Optional<IngestionJob> live = current();
+        var jobs = new ArrayList<IngestionJob>();
+        for (IngestionJob job : store.findRecent(limit)) {
+            jobs.add(live.filter(running -> running.id().equals(job.id())).orElse(job));
+        }
+        return jobs;
+    }
+
+    /**
+     * Waits for a job of this process to finish.
+     *
+     * @param id      the job id
+     * @param timeout how long to wait at most
+     * @return the job as it is when it finished or the wait ran out, or empty if it is not the current job
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Optional<IngestionJob> await(UUID id, Duration timeout) throws InterruptedException {
+        RunningJob job;
+        synchronized (this) {
+            job = current;
+        }
+        if (job == null || !job.id.equals(id)) {
+            return Optional.empty();
+        }
+        try {
+            job.done.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Report the state as it is
+        }
+        return Optional.of(job.snapshot());
+    }
+
+    /**
+     * @return whether the startup job has finished, successfully or not (or is disabled)
+     */
+    public boolean isStartupComplete() {
+        return startupComplete;
+    }
+
+    /**
+     * Interrupts the running job and gives it a moment to record that it was interrupted.
+     *
+     * @throws InterruptedException if interrupted while waiting for the job
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void run(RunningJob job) {
+        synchronized (this) {
+            if (job.cancelRequested) {
+                finish(job, Status.CANCELLED, null);
+                return;
+            }
+            job.thread = Thread.currentThread();
+            job.status = Status.RUNNING;
+        }
+        job.startedAt = Instant.now();
+        job.save();
+        try {
+            var listener = new DocsLoader.ProgressListener() {
+                @Override
+                public void planned(int files, int unchanged, int deleted) {
+                    job.filesTotal.set(files);
+                    job.unchanged.set(unchanged);
+                    job.deleted.set(deleted);
+                    job.save();
+                }
+
+                @Override
+                public void fileIngested(String source, int chunks) {
+                    job.filesDone.incrementAndGet();
+                    job.chunks.addAndGet(chunks);
+                    job.checkpointIfDue();
+                }
+            };
+            IngestionReport report = job.mode == Mode.REBUILD
+                    ? docsLoader.rebuildAll(listener)
+                    : docsLoader.synchronizeAll(listener);
+            job.filesFailed.set(report.failedFiles());
+            finish(job, Status.SUCCEEDED, null);
+            log.info("Ingestion job {} finished: {} files ingested, {} failed, {} unchanged, {} deleted",
+                    job.id, job.filesDone.get(), report.failedFiles(), job.unchanged.get(), job.deleted.get());
+        } catch (InterruptedException e) {
+            finish(job, job.cancelRequested ? Status.CANCELLED : Status.INTERRUPTED, null);
+            log.info("Ingestion job {} {} after {} of {} files", job.id, job.cancelRequested ? "cancelled" : "interrupted",
+                    job.filesDone.get(), job.filesTotal.get());
+        } catch (Exception e) {
+            finish(job, Status.FAILED, e.getMessage());
+            log.error("Ingestion job {} failed: {}", job.id, e.getMessage(), e);
+        } finally {
+            synchronized (this) {
+                job.thread = null;
+            }
+            try {
+                store.prune(properties.history());
+            } catch (RuntimeException e) {
+                log.warn("Could not prune the ingestion job history: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void finish(RunningJob job, Status status, String error) {
+        job.error = error;
+        job.finishedAt = Instant.now();
+        synchronized (this) {
+            job.status = status;
+        }
+        startupComplete = true;
+        job.save();
+        job.done.complete(null);
+    }
+
+    /**
+     * Live state of a job started by this process.
+     */
+    private final class RunningJob {
+
+        private final UUID id = UUID.randomUUID();
+        private final String trigger;
+        private final Mode mode;
+        private final UUID resumedFrom;
+        private final Instant createdAt = Instant.now();
+        private final AtomicInteger filesTotal = new AtomicInteger();
+        private final AtomicInteger filesDone = new AtomicInteger();
+        private final AtomicInteger filesFailed = new AtomicInteger();
+        private final AtomicInteger unchanged = new AtomicInteger();
+        private final AtomicInteger deleted = new AtomicInteger();
+        private final AtomicLong chunks = new AtomicLong();
+        private final AtomicLong lastCheckpointNanos = new AtomicLong(System.nanoTime());
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile Status status = Status.QUEUED;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile String error;
+        private volatile boolean cancelRequested;
+        // Guarded by the enclosing service
+        private Thread thread;
+
+        private RunningJob(String trigger, Mode mode, UUID resumedFrom) {
+            this.trigger = trigger;
+            this.mode = mode;
+            this.resumedFrom = resumedFrom;
+        }
+
+        /**
+         * Records the progress if the last checkpoint is older than {@value #CHECKPOINT_MILLIS} ms;
+         * pipeline threads completing files at the same time do not all write.
+         */
+        private void checkpointIfDue() {
+            long last = lastCheckpointNanos.get();
+            long now = System.nanoTime();
+            if (now - last >= TimeUnit.MILLISECONDS.toNanos(CHECKPOINT_MILLIS)
+                    && lastCheckpointNanos.compareAndSet(last, now)) {
+                synchronized (this) {
+                    // A late pipeline thread must not overwrite the final state
+                    if (!status.isFinished()) {
+                        save();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes the job's current state; writes are serialized so the row never goes back to an older state.
+         */
+        private synchronized void save() {
+            try {
+                store.save(snapshot());
+            } catch (RuntimeException e) {
+                log.warn("Could not record the progress of ingestion job {}: {}", id, e.getMessage());
+            }
+        }
+
+        private IngestionJob snapshot() {
+            return new IngestionJob(id, trigger, mode, status, resumedFrom, filesTotal.get(), filesDone.get(),
+                    filesFailed.get(), unchanged.get(), deleted.get(), chunks.get(), error, createdAt, startedAt,
+                    finishedAt);
+        }
+    }
+}
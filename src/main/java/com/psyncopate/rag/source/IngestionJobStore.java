@@ -0,0 +1,181 @@
+package com.psyncopate.rag.source;
+
+import com.psyncopate.rag.source.IngestionJob.Mode;
+import com.psyncopate.rag.source.IngestionJob.Status;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Persistent record of the background ingestion jobs, one row per job in {@code ingestion_job}.
+ *
+ * <p>
+ * The row is the job's progress checkpoint as seen by operators; what has actually been ingested is
+ * recorded per file in the {@link IngestionManifest}, which is what lets a new job skip the files an
+ * interrupted one already finished.
+ * </p>
+ */
+@Component
+public class IngestionJobStore {
+
+    private static final RowMapper<IngestionJob> JOB = (rs, rowNum) -> new IngestionJob(
+            rs.getObject("id", UUID.class),
+            rs.getString("trigger"),
+            Mode.valueOf(rs.getString("mode")),
+            Status.valueOf(rs.getString("status")),
+            rs.getObject("resumed_from", UUID.class),
+            rs.getInt("files_total"),
+            rs.getInt("files_done"),
+            rs.getInt("files_failed"),
+            rs.getInt("files_unchanged"),
+            rs.getInt("files_deleted"),
+            rs.getLong("chunks"),
+            rs.getString("error"),
+            instant(rs.getTimestamp("created_at")),
+            instant(rs.getTimestamp("started_at")),
+            instant(rs.getTimestamp("finished_at")));
+
+    private static final String COLUMNS = "id, trigger, mode, status, resumed_from, files_total, files_done, files_failed, "
+            + "files_unchanged, files_deleted, chunks, error, created_at, started_at, finished_at";
+
+    private final JdbcClient jdbcClient;
+
+    public IngestionJobStore(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    /**
+     * Creates the job table if it does not exist yet, or adds the columns it lacks.
+     */
+    public void initializeSchema() {
+        jdbcClient.sql("""
+                        CREATE TABLE IF NOT EXISTS ingestion_job (
+                            id uuid PRIMARY KEY,
+                            trigger text NOT NULL,
+                            mode text NOT NULL DEFAULT 'SYNC',
+                            status text NOT NULL,
+                            resumed_from uuid,
+                            files_total int NOT NULL DEFAULT 0,
+                            files_done int NOT NULL DEFAULT 0,
+                            files_failed int NOT NULL DEFAULT 0,
+                            files_unchanged int NOT NULL DEFAULT 0,
+                            files_deleted int NOT NULL DEFAULT 0,
+                            chunks bigint NOT NULL DEFAULT 0,
+                            error text,
+                            created_at timestamptz NOT NULL,
+                            started_at timestamptz,
+                            finished_at timestamptz,
+                            updated_at timestamptz NOT NULL DEFAULT now()
+                        )""")
+                .update();
+    }
+
+    /**
+     * Inserts or replaces the row of a job.
+     *
+     * @param job the job's current state
+     */
+    public void save(IngestionJob job) {
+        jdbcClient.sql("""
+                        INSERT INTO ingestion_job (%s, updated_at)
+                        VALUES (:id, :trigger, :mode, :status, :resumedFrom, :filesTotal, :filesDone, :filesFailed,
+                                :unchanged, :deleted, :chunks, :error, :createdAt, :startedAt, :finishedAt, now())
+                        ON CONFLICT (id) DO UPDATE SET
+                            status = EXCLUDED.status,
+                            files_total = EXCLUDED.files_total,
+                            files_done = EXCLUDED.files_done,
+                            files_failed = EXCLUDED.files_failed,
+                            files_unchanged = EXCLUDED.files_unchanged,
+                            files_deleted = EXCLUDED.files_deleted,
+                            chunks = EXCLUDED.chunks,
+                            error = EXCLUDED.error,
+                            started_at = EXCLUDED.started_at,
+                            finished_at = EXCLUDED.finished_at,
+                            updated_at = EXCLUDED.updated_at""".formatted(COLUMNS))
+                .param("id", job.id())
+                .param("trigger", job.trigger())
+                .param("mode", job.mode().name())
+                .param("status", job.status().name())
+                .param("resumedFrom", job.resumedFrom())
+                .param("filesTotal", job.filesTotal())
+                .param("filesDone", job.filesDone())
+                .param("filesFailed", job.filesFailed())
+                .param("unchanged", job.unchanged())
+                .param("deleted", job.deleted())
+                .param("chunks", job.chunks())
+                .param("error", job.error())
+                .param("createdAt", timestamp(job.createdAt()))
+                .param("startedAt", timestamp(job.startedAt()))
+                .param("finishedAt", timestamp(job.finishedAt()))
+                .update();
+    }
+
+    /**
+     * @param id a job id
+     * @return the job, if it is (still) recorded
+     */
+    public Optional<IngestionJob> find(UUID id) {
+        return jdbcClient.sql("SELECT " + COLUMNS + " FROM ingestion_job WHERE id = :id")
+                .param("id", id)
+                .query(JOB)
+                .optional();
+    }
+
+    /**
+     * @param limit maximum number of jobs
+     * @return the most recently requested jobs, newest first
+     */
+    public List<IngestionJob> findRecent(int limit) {
+        return jdbcClient.sql("SELECT " + COLUMNS + " FROM ingestion_job ORDER BY created_at DESC LIMIT :limit")
+                .param("limit", limit)
+                .query(JOB)
+                .list();
+    }
+
+    /**
+     * Marks the jobs left queued or running by a previous process, which must have stopped without
+     * finishing them, as {@link Status#INTERRUPTED}.
+     *
+     * @return the interrupted jobs, newest first
+     */
+    public List<IngestionJob> interruptUnfinished() {
+        return jdbcClient.sql("""
+                        UPDATE ingestion_job SET status = :interrupted, finished_at = now(), updated_at = now()
+                        WHERE status IN (:unfinished)
+                        RETURNING %s""".formatted(COLUMNS))
+                .param("interrupted", Status.INTERRUPTED.name())
+                .param("unfinished", List.of(Status.QUEUED.name(), Status.RUNNING.name()))
+                .query(JOB)
+                .list()
+                .stream()
+                .sorted((a, b) -> b.createdAt().compareTo(a.createdAt()))
+                .toList();
+    }
+
+    /**
+     * Deletes all but the most recent jobs.
+     *
+     * @param keep number of jobs to keep
+     */
+    public void prune(int keep) {
+        jdbcClient.sql("""
+                        DELETE FROM ingestion_job
+                        WHERE id NOT IN (SELECT id FROM ingestion_job ORDER BY created_at DESC LIMIT :keep)""")
+                .param("keep", keep)
+                .update();
+    }
+
+    private static Instant instant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+
+    private static Timestamp timestamp(Instant instant) {
+        return instant != null ? Timestamp.from(instant) : null;
+    }
+}
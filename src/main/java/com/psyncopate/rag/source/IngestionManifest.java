@@ -0,0 +1,144 @@
+package com.psyncopate.rag.source;
+
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent record of which source files have been ingested, keyed by path.
+ *
+ * <p>
+ * Each entry stores the file size, modification time and SHA-256 content hash observed
+ * when the file's chunks were last written to the vector store. {@link DocsLoader} compares
+ * the files on disk against it to re-embed only new or changed files and to drop the
+ * chunks of files that have been deleted.
+ * </p>
+ */
+@Component
+public class IngestionManifest {
+
+    /**
+     * Metadata key holding the source file path on every stored chunk.
+     */
+    public static final String SOURCE_KEY = "source";
+
+    /**
+     * Metadata key holding the content hash of the source file on every stored chunk.
+     */
+    public static final String CONTENT_HASH_KEY = "content_hash";
+
+    /**
+     * Metadata key identifying the ingestion attempt that wrote a chunk. Once a file is fully written,
+     * chunks of the same source with a different id (older versions, partial attempts) are deleted.
+     */
+    public static final String INGEST_ID_KEY = "ingest_id";
+
+    private final JdbcClient jdbcClient;
+
+    public IngestionManifest(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    /**
+     * Creates the manifest table if it does not exist yet.
+     */
+    public void initializeSchema() {
+        jdbcClient.sql("""
+                        CREATE TABLE IF NOT EXISTS ingestion_manifest (
+                            path text PRIMARY KEY,
+                            size bigint NOT NULL,
+                            modified_millis bigint NOT NULL,
+                            content_hash text NOT NULL,
+                            chunk_count int NOT NULL,
+                            indexed_at timestamptz NOT NULL DEFAULT now()
+                        )""")
+                .update();
+    }
+
+    /**
+     * Loads every manifest entry.
+     *
+     * @return entries keyed by path
+     */
+    public Map<String, Entry> findAll() {
+        return jdbcClient.sql("SELECT path, size, modified_millis, content_hash, chunk_count FROM ingestion_manifest")
+                .query((rs, rowNum) -> new Entry(
+                        rs.getString("path"),
+                        rs.getLong("size"),
+                        rs.getLong("modified_millis"),
+                        rs.getString("content_hash"),
+                        rs.getInt("chunk_count")))
+                .list()
+                .stream()
+                .collect(Collectors.toMap(Entry::path, Function.identity()));
+    }
+
+    /**
+     * Inserts or replaces the entry for a path.
+     *
+     * @param entry the entry to store
+     */
+    public void save(Entry entry) {
+        jdbcClient.sql("""
+                        INSERT INTO ingestion_manifest (path, size, modified_millis, content_hash, chunk_count, indexed_at)
+                        VALUES (:path, :size, :modified, :hash, :chunks, now())
+                        ON CONFLICT (path) DO UPDATE SET
+                            size = EXCLUDED.size,
+                            modified_millis = EXCLUDED.modified_millis,
+                            content_hash = EXCLUDED.content_hash,
+                            chunk_count = EXCLUDED.chunk_count,
+                            indexed_at = EXCLUDED.indexed_at""")
+                .param("path", entry.path())
+                .param("size", entry.size())
+                .param("modified", entry.modifiedMillis())
+                .param("hash", entry.contentHash())
+                .param("chunks", entry.chunkCount())
+                .update();
+    }
+
+    /**
+     * Replaces every entry with the given ones, e.g. after a full rebuild; meant to run in the
+     * transaction that swaps the rebuilt chunks in.
+     *
+     * @param entries the entries of all files now indexed
+     */
+    public void replaceAll(Collection<Entry> entries) {
+        jdbcClient.sql("DELETE FROM ingestion_manifest").update();
+        entries.forEach(this::save);
+    }
+
+    /**
+     * Removes the entry for a path.
+     *
+     * @param path the manifest key
+     */
+    public void delete(String path) {
+        jdbcClient.sql("DELETE FROM ingestion_manifest WHERE path = :path")
+                .param("path", path)
+                .update();
+    }
+
+    /**
+     * A manifest row.
+     *
+     * @param path           normalized file path, also stored as {@value #SOURCE_KEY} on each chunk
+     * @param size           file size in bytes
+     * @param modifiedMillis last-modified time in epoch milliseconds
+     * @param contentHash    hex-encoded SHA-256 of the file content
+     * @param chunkCount     number of chunks written for this version of the file
+     */
+    public record Entry(String path, long size, long modifiedMillis, String contentHash, int chunkCount) {
+
+        /**
+         * Returns whether the file's size and modification time still match this entry,
+         * in which case the file is assumed unchanged without hashing it.
+         */
+        public boolean matches(long size, long modifiedMillis) {
+            return this.size == size && this.modifiedMillis == modifiedMillis;
+        }
+    }
+}
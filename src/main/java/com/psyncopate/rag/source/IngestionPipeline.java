@@ -0,0 +1,418 @@
+package com.psyncopate.rag.source;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Staged producer/consumer pipeline that turns source files into stored chunks.
+ *
+ * <p>
+ * Three stages run concurrently and hand work to each other through bounded queues,
+ * so parsing, splitting and embedding overlap while memory stays flat:
+ * <ol>
+ *   <li><b>parse</b> – a pool of parsers (POI / PDFBox) streams each file's raw documents
+ *       into the pipeline as they are produced</li>
+ *   <li><b>split</b> – each file's splitter (typically a {@code TokenTextSplitter}) cuts them into chunks</li>
+ *   <li><b>write</b> – writers buffer chunks across files and flush token-sized batches,
+ *       cut by the {@link BatchingStrategy}, to the vector store</li>
+ * </ol>
+ * A full queue blocks the upstream stage, which is what keeps memory bounded when
+ * the embedding API is the bottleneck.
+ * </p>
+ *
+ * <p>
+ * Because a file may reach the splitter in several parts and batches mix chunks from several
+ * files, the pipeline tracks how many chunks of each file are still unwritten and notifies a
+ * {@link FileListener} once the file is fully parsed and its last chunk has been stored, so
+ * callers can record the file as ingested. A chunk the {@link BatchingStrategy} rejects, e.g. one
+ * above the embedding model's input limit, fails only the file it belongs to; the other files in
+ * the same buffer are batched again without it.
+ * </p>
+ */
+public class IngestionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    private static final ParsedPart END_OF_FILES = new ParsedPart(null, List.of());
+    private static final ChunkBatch END_OF_CHUNKS = new ChunkBatch(null, List.of());
+
+    private final IngestionProperties properties;
+    private final BatchingStrategy batchingStrategy;
+    private final Consumer<List<Document>> writer;
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param properties       stage parallelism, queue capacity and flush size
+     * @param batchingStrategy strategy cutting buffered chunks into embedding-sized batches
+     * @param writer           sink receiving each batch, usually {@code VectorStore::accept}
+     */
+    public IngestionPipeline(IngestionProperties properties, BatchingStrategy batchingStrategy,
+                             Consumer<List<Document>> writer) {
+        this.properties = properties;
+        this.batchingStrategy = batchingStrategy;
+        this.writer = writer;
+    }
+
+    /**
+     * Runs all files through the pipeline and blocks until every chunk has been written.
+     *
+     * @param files files to ingest together with their parser
+     * @return a summary of the run
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public IngestionReport run(List<SourceFile> files) throws InterruptedException {
+        return run(files, (file, chunks, latency) -> {
+        });
+    }
+
+    /**
+     * Runs all files through the pipeline and blocks until every chunk has been written.
+     *
+     * @param files    files to ingest together with their parser
+     * @param listener notified, from a pipeline thread, when all chunks of a file have been written
+     * @return a summary of the run
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public IngestionReport run(List<SourceFile> files, FileListener listener) throws InterruptedException {
+        long start = System.nanoTime();
+        var parsed = new ArrayBlockingQueue<ParsedPart>(properties.queueCapacity());
+        var chunks = new ArrayBlockingQueue<ChunkBatch>(properties.queueCapacity());
+        var stats = new Stats();
+
+        ExecutorService parsers = Executors.newFixedThreadPool(properties.parserThreads(), namedThreads("ingest-parse"));
+        ExecutorService splitters = Executors.newFixedThreadPool(properties.splitterThreads(), namedThreads("ingest-split"));
+        ExecutorService writers = Executors.newFixedThreadPool(properties.writerThreads(), namedThreads("ingest-write"));
+
+        try {
+            var splitterTasks = new ArrayList<Future<?>>();
+            for (int i = 0; i < properties.splitterThreads(); i++) {
+                splitterTasks.add(splitters.submit(() -> splitLoop(parsed, chunks)));
+            }
+            var writerTasks = new ArrayList<Future<?>>();
+            for (int i = 0; i < properties.writerThreads(); i++) {
+                writerTasks.add(writers.submit(() -> writeLoop(chunks, stats)));
+            }
+
+            var parserTasks = new ArrayList<Future<?>>();
+            for (SourceFile file : files) {
+                parserTasks.add(parsers.submit(() -> parse(new FileTicket(file, listener, stats), parsed)));
+            }
+
+            awaitAll(parserTasks);
+            for (int i = 0; i < properties.splitterThreads(); i++) {
+                parsed.put(END_OF_FILES);
+            }
+            awaitAll(splitterTasks);
+            for (int i = 0; i < properties.writerThreads(); i++) {
+                chunks.put(END_OF_CHUNKS);
+            }
+            awaitAll(writerTasks);
+        } finally {
+            parsers.shutdownNow();
+            splitters.shutdownNow();
+            writers.shutdownNow();
+        }
+
+        return new IngestionReport(files.size(), stats.failedFiles.get(), stats.chunks.get(),
+                stats.batches.get(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private void parse(FileTicket ticket, BlockingQueue<ParsedPart> parsed) {
+        SourceFile file = ticket.file;
+        try {
+            file.parser().parse(file.path(), documents -> {
+                // Source metadata is copied onto every chunk by the splitter
+                documents.forEach(document -> document.getMetadata().putAll(file.metadata()));
+                ticket.pending.incrementAndGet();
+                parsed.put(new ParsedPart(ticket, documents));
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ticket.fail();
+        } catch (Exception e) {
+            ticket.fail();
+            log.error("Error processing {} file {}: {}", file.type(), file.path().getFileName(), e.getMessage());
+        } finally {
+            // Releases the hold taken at construction: the file cannot complete while it is still being parsed
+            ticket.release();
+        }
+    }
+
+    private void splitLoop(BlockingQueue<ParsedPart> parsed, BlockingQueue<ChunkBatch> chunks) {
+        try {
+            for (ParsedPart part = parsed.take(); part != END_OF_FILES; part = parsed.take()) {
+                FileTicket ticket = part.ticket();
+                SourceFile file = ticket.file;
+                try {
+                    List<Document> split = file.splitter().apply(part.documents());
+                    ticket.total.addAndGet(split.size());
+                    ticket.pending.addAndGet(split.size());
+                    if (!split.isEmpty()) {
+                        chunks.put(new ChunkBatch(ticket, split));
+                    }
+                    log.debug("Split {} part of {} file {} into {} chunks",
+                            part.documents().size(), file.type(), file.path().getFileName(), split.size());
+                } catch (RuntimeException e) {
+                    ticket.fail();
+                    log.error("Error splitting {} file {}: {}", file.type(), file.path().getFileName(), e.getMessage());
+                } finally {
+                    ticket.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop(BlockingQueue<ChunkBatch> chunks, Stats stats) {
+        var buffer = new ArrayList<Document>();
+        var owners = new IdentityHashMap<Document, FileTicket>();
+        try {
+            for (ChunkBatch batch = chunks.take(); batch != END_OF_CHUNKS; batch = chunks.take()) {
+                for (Document chunk : batch.chunks()) {
+                    owners.put(chunk, batch.ticket());
+                }
+                buffer.addAll(batch.chunks());
+                if (buffer.size() >= properties.batchFlushSize()) {
+                    buffer = flush(buffer, owners, false, stats);
+                }
+            }
+            flush(buffer, owners, true, stats);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Cuts the buffer into token-sized batches and writes them. Unless {@code all} is set, the last,
+     * possibly under-filled, batch is returned as the new buffer so the next file can top it up.
+     */
+    private ArrayList<Document> flush(ArrayList<Document> buffer, Map<Document, FileTicket> owners, boolean all,
+                                      Stats stats) {
+        if (buffer.isEmpty()) {
+            return buffer;
+        }
+        List<List<Document>> batches;
+        try {
+            batches = batchingStrategy.batch(buffer);
+        } catch (RuntimeException e) {
+            Set<FileTicket> rejected = rejectedFiles(buffer, owners);
+            if (rejected.isEmpty()) {
+                log.error("Failed to batch {} chunks, dropping them: {}", buffer.size(), e.getMessage());
+                settle(buffer, owners, false);
+                return new ArrayList<>();
+            }
+            var dropped = new ArrayList<Document>();
+            var kept = new ArrayList<Document>();
+            for (Document chunk : buffer) {
+                (rejected.contains(owners.get(chunk)) ? dropped : kept).add(chunk);
+            }
+            rejected.forEach(ticket -> log.error("Failed to batch chunks of {} file {}, dropping its {} buffered chunks: {}",
+                    ticket.file.type(), ticket.file.path().getFileName(),
+                    dropped.stream().filter(chunk -> owners.get(chunk) == ticket).count(), e.getMessage()));
+            settle(dropped, owners, false);
+            return flush(kept, owners, all, stats);
+        }
+        int toWrite = all ? batches.size() : batches.size() - 1;
+        for (int i = 0; i < toWrite; i++) {
+            settle(batches.get(i), owners, write(batches.get(i), stats));
+        }
+        return all ? new ArrayList<>() : new ArrayList<>(batches.get(batches.size() - 1));
+    }
+
+    /**
+     * Batches each chunk of a buffer the strategy rejected on its own, to find the files whose chunks
+     * cannot be embedded at all.
+     *
+     * @return the owners of the chunks rejected on their own; empty if the failure was not caused by single chunks
+     */
+    private Set<FileTicket> rejectedFiles(List<Document> buffer, Map<Document, FileTicket> owners) {
+        Set<FileTicket> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Document chunk : buffer) {
+            if (!rejected.contains(owners.get(chunk))) {
+                try {
+                    batchingStrategy.batch(List.of(chunk));
+                } catch (RuntimeException e) {
+                    rejected.add(owners.get(chunk));
+                }
+            }
+        }
+        return rejected;
+    }
+
+    private boolean write(List<Document> batch, Stats stats) {
+        try {
+            writer.accept(batch);
+            stats.batches.incrementAndGet();
+            stats.chunks.addAndGet(batch.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to write batch of {} chunks: {}", batch.size(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Accounts for chunks that left the buffer, failing their files if they were not written.
+     */
+    private static void settle(List<Document> batch, Map<Document, FileTicket> owners, boolean written) {
+        for (Document chunk : batch) {
+            FileTicket ticket = owners.remove(chunk);
+            if (!written) {
+                ticket.fail();
+            }
+            ticket.release();
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> tasks) throws InterruptedException {
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                log.error("Ingestion stage failed: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Parses a single file, handing its raw (unsplit) documents to the sink as they are produced.
+     * Small formats can hand over everything at once; large ones should stream in parts so the
+     * whole file never has to be held in memory.
+     */
+    @FunctionalInterface
+    public interface FileParser {
+        void parse(Path path, DocumentSink sink) throws Exception;
+    }
+
+    /**
+     * Receives parsed documents; blocks while the splitter stage is saturated.
+     */
+    @FunctionalInterface
+    public interface DocumentSink {
+        void accept(List<Document> documents) throws InterruptedException;
+    }
+
+    /**
+     * Callback invoked once every chunk of a file has been written.
+     */
+    @FunctionalInterface
+    public interface FileListener {
+
+        /**
+         * @param file    the ingested file
+         * @param chunks  number of chunks written for it
+         * @param latency time from the start of parsing until its last chunk was stored
+         */
+        void fileIngested(SourceFile file, int chunks, Duration latency);
+    }
+
+    /**
+     * A file queued for ingestion.
+     *
+     * @param path     location of the file
+     * @param type     human-readable type name for logging
+     * @param parser   parser for the file's format
+     * @param splitter transformation turning the parsed documents into chunks
+     * @param metadata metadata attached to every document and chunk produced from the file
+     */
+    public record SourceFile(Path path, String type, FileParser parser, UnaryOperator<List<Document>> splitter,
+                             Map<String, Object> metadata) {
+    }
+
+    /**
+     * Summary of a pipeline run.
+     *
+     * @param files       number of files submitted
+     * @param failedFiles number of files that could not be parsed, split or written
+     * @param chunks      number of chunks written
+     * @param batches     number of batches sent to the writer
+     * @param elapsed     wall-clock duration of the run
+     */
+    public record IngestionReport(int files, int failedFiles, long chunks, long batches, Duration elapsed) {
+    }
+
+    private record ParsedPart(FileTicket ticket, List<Document> documents) {
+    }
+
+    private record ChunkBatch(FileTicket ticket, List<Document> chunks) {
+    }
+
+    /**
+     * Tracks the outstanding work of one file: one hold while it is being parsed, one per parsed
+     * part waiting to be split, and one per chunk waiting to be written. The listener fires when
+     * the count drops to zero, unless any of that work failed.
+     */
+    private static final class FileTicket {
+        final SourceFile file;
+        final FileListener listener;
+        final Stats stats;
+        final long startNanos = System.nanoTime();
+        final AtomicInteger total = new AtomicInteger();
+        final AtomicInteger pending = new AtomicInteger(1);
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        FileTicket(SourceFile file, FileListener listener, Stats stats) {
+            this.file = file;
+            this.listener = listener;
+            this.stats = stats;
+        }
+
+        void fail() {
+            if (failed.compareAndSet(false, true)) {
+                stats.failedFiles.incrementAndGet();
+            }
+        }
+
+        void release() {
+            if (pending.decrementAndGet() != 0 || failed.get()) {
+                return;
+            }
+            log.info("Processed {} file: {}", file.type(), file.path().getFileName());
+            try {
+                listener.fileIngested(file, total.get(), Duration.ofNanos(System.nanoTime() - startNanos));
+            } catch (RuntimeException e) {
+                log.error("Ingestion listener failed for {}: {}", file.path().getFileName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private static final class Stats {
+        final AtomicInteger failedFiles = new AtomicInteger();
+        final AtomicLong chunks = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+    }
+}
@@ -0,0 +1,40 @@
+package com.psyncopate.rag.source;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Tuning knobs for the document ingestion pipeline, bound from {@code rag.ingestion.*}.
+ *
+ * @param parserThreads    number of files parsed concurrently (POI / PDFBox)
+ * @param splitterThreads  number of threads running the {@code TokenTextSplitter} stage
+ * @param writerThreads    number of threads embedding and writing batches to the vector store
+ * @param queueCapacity    capacity of each bounded hand-off queue between stages
+ * @param batchFlushSize   number of buffered chunks after which a writer cuts token-sized batches
+ * @param maxBatchTokens   maximum input tokens of the embedding model, used by the batching strategy
+ * @param reservePercentage share of {@code maxBatchTokens} kept free as a safety margin
+ * @param excelRowsPerChunk maximum number of spreadsheet rows per Excel chunk
+ * @param excelChunkTokens  token budget of an Excel chunk, repeated header included
+ * @param docxChunkTokens   token budget of a DOCX chunk, cut along headings, paragraphs and table rows
+ * @param pdfChunkTokens    token budget of a PDF chunk, cut by the {@code TokenTextSplitter}
+ * @param pdfPagesPerRange  pages extracted as one unit; larger PDFs are split into ranges extracted in parallel
+ * @param pdfRangeThreads   number of PDF page ranges extracted concurrently, across all files
+ * @param pdfMaxInFlightPages extracted PDF pages that may wait for the splitter stage, across all files
+ */
+@ConfigurationProperties(prefix = "rag.ingestion")
+public record IngestionProperties(
+        @DefaultValue("4") int parserThreads,
+        @DefaultValue("2") int splitterThreads,
+        @DefaultValue("2") int writerThreads,
+        @DefaultValue("16") int queueCapacity,
+        @DefaultValue("256") int batchFlushSize,
+        @DefaultValue("8191") int maxBatchTokens,
+        @DefaultValue("0.1") double reservePercentage,
+        @DefaultValue("50") int excelRowsPerChunk,
+        @DefaultValue("800") int excelChunkTokens,
+        @DefaultValue("500") int docxChunkTokens,
+        @DefaultValue("800") int pdfChunkTokens,
+        @DefaultValue("50") int pdfPagesPerRange,
+        @DefaultValue("4") int pdfRangeThreads,
+        @DefaultValue("400") int pdfMaxInFlightPages) {
+}
@@ -0,0 +1,207 @@
+package com.psyncopate.rag.source;
+
+import com.psyncopate.rag.source.IngestionPipeline.DocumentSink;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.ExtractedTextFormatter;
+import org.springframework.ai.reader.pdf.layout.PDFLayoutTextStripperByArea;
+import org.springframework.util.StringUtils;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts the text of a PDF file page by page, splitting large files into page ranges that are
+ * extracted in parallel.
+ *
+ * <p>
+ * Each range opens its own PDFBox handle on the file (PDFBox documents are not thread-safe) and
+ * reads it from disk rather than from a copy in memory. A range's page documents are handed to the
+ * sink as soon as the range is done, in completion order, so splitting and embedding start while
+ * later ranges are still being extracted. The ranges of all files share one pool of
+ * {@code threads}, and at most {@code maxInFlightPages} extracted pages — across all files — wait
+ * to be handed over at any time; a file whose ranges are all waiting for that budget blocks.
+ * Files of at most {@code pagesPerRange} pages are read on the calling thread in one go.
+ * </p>
+ *
+ * <p>
+ * The output matches Spring AI's {@code PagePdfDocumentReader} with one page per document: the
+ * layout-preserving text of the page's media box, one document per page with text, carrying the
+ * one-based {@link ChunkMetadata#PAGE page number} and the {@link ChunkMetadata#FILE_NAME file name}.
+ * </p>
+ */
+public class PdfPageRangeReader implements AutoCloseable {
+
+    private static final String REGION = "pdfPageRegion";
+
+    private final int pagesPerRange;
+    private final int maxInFlightPages;
+    private final Semaphore inFlightPages;
+    private final ExecutorService executor;
+    private final ExtractedTextFormatter formatter = new ExtractedTextFormatter.Builder()
+            .withNumberOfBottomTextLinesToDelete(0)
+            .withNumberOfTopPagesToSkipBeforeDelete(0)
+            .build();
+
+    /**
+     * @param pagesPerRange    number of pages extracted as one unit; larger files are split into ranges
+     * @param threads          number of ranges extracted concurrently, across all files
+     * @param maxInFlightPages extracted pages that may wait to be handed over, across all files
+     */
+    public PdfPageRangeReader(int pagesPerRange, int threads, int maxInFlightPages) {
+        this.pagesPerRange = Math.max(1, pagesPerRange);
+        this.maxInFlightPages = Math.max(1, maxInFlightPages);
+        this.inFlightPages = new Semaphore(this.maxInFlightPages, true);
+        var counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "pdf-range-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Extracts every page of the file, handing the page documents to the sink range by range.
+     *
+     * @param pdfFile Path to the PDF file.
+     * @param sink    Receiver of the page documents; ranges may arrive out of page order.
+     * @throws IOException          if the file is corrupt or unreadable.
+     * @throws InterruptedException if interrupted while waiting for a range or for the sink.
+     */
+    public void read(Path pdfFile, DocumentSink sink) throws IOException, InterruptedException {
+        int pageCount;
+        try (PDDocument document = Loader.loadPDF(pdfFile.toFile())) {
+            pageCount = document.getNumberOfPages();
+            if (pageCount <= pagesPerRange) {
+                List<Document> pages = extract(document, pdfFile, 1, pageCount);
+                if (!pages.isEmpty()) {
+                    sink.accept(pages);
+                }
+                return;
+            }
+        }
+
+        var ranges = new ArrayList<PageRange>();
+        for (int first = 1; first <= pageCount; first += pagesPerRange) {
+            ranges.add(new PageRange(first, Math.min(pageCount, first + pagesPerRange - 1)));
+        }
+        readRanges(pdfFile, ranges, sink);
+    }
+
+    /**
+     * Stops the extraction threads; ranges still running are abandoned.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submits ranges while the in-flight budget allows and hands finished ranges to the sink. Only a
+     * file with no range of its own in flight blocks on the budget, so it never waits for permits
+     * that only it could release.
+     */
+    private void readRanges(Path pdfFile, List<PageRange> ranges, DocumentSink sink)
+            throws IOException, InterruptedException {
+        CompletionService<List<Document>> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<List<Document>>, PageRange> pending = new HashMap<>();
+        int next = 0;
+        try {
+            while (next < ranges.size() || !pending.isEmpty()) {
+                if (next < ranges.size()) {
+                    PageRange range = ranges.get(next);
+                    int permits = permits(range);
+                    if (pending.isEmpty()) {
+                        inFlightPages.acquire(permits);
+                    } else if (!inFlightPages.tryAcquire(permits)) {
+                        permits = -1;
+                    }
+                    if (permits > 0) {
+                        pending.put(completion.submit(() -> extract(pdfFile, range)), range);
+                        next++;
+                        continue;
+                    }
+                }
+
+                Future<List<Document>> done = completion.take();
+                PageRange range = pending.remove(done);
+                try {
+                    List<Document> pages = done.get();
+                    if (!pages.isEmpty()) {
+                        sink.accept(pages);
+                    }
+                } finally {
+                    inFlightPages.release(permits(range));
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io
+                    : new IOException("Failed to extract " + pdfFile.getFileName() + ": " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pending.forEach((future, range) -> {
+                future.cancel(true);
+                inFlightPages.release(permits(range));
+            });
+        }
+    }
+
+    private int permits(PageRange range) {
+        return Math.min(range.size(), maxInFlightPages);
+    }
+
+    private List<Document> extract(Path pdfFile, PageRange range) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdfFile.toFile())) {
+            return extract(document, pdfFile, range.first(), range.last());
+        }
+    }
+
+    /**
+     * Extracts pages {@code first} to {@code last} (one-based, inclusive) of an open document.
+     */
+    private List<Document> extract(PDDocument document, Path pdfFile, int first, int last) throws IOException {
+        var stripper = new PDFLayoutTextStripperByArea();
+        var pages = new ArrayList<Document>(last - first + 1);
+        for (int pageNumber = first; pageNumber <= last; pageNumber++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IOException("Extraction of " + pdfFile.getFileName() + " was cancelled");
+            }
+            PDPage page = document.getPage(pageNumber - 1);
+            PDRectangle box = page.getMediaBox();
+            stripper.addRegion(REGION, new Rectangle((int) box.getLowerLeftX(), (int) box.getLowerLeftY(),
+                    (int) box.getWidth(), (int) box.getHeight()));
+            stripper.extractRegions(page);
+            String text = stripper.getTextForRegion(REGION);
+            stripper.removeRegion(REGION);
+            if (StringUtils.hasText(text)) {
+                Map<String, Object> metadata = new HashMap<>();
+                metadata.put(ChunkMetadata.PAGE, pageNumber);
+                metadata.put(ChunkMetadata.FILE_NAME, pdfFile.getFileName().toString());
+                pages.add(new Document(formatter.format(text, pageNumber), metadata));
+            }
+        }
+        return pages;
+    }
+
+    private record PageRange(int first, int last) {
+
+        int size() {
+            return last - first + 1;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.psyncopate.rag.source;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.psyncopate.rag.source.IngestionPipeline.DocumentSink;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams an Excel (.xlsx) workbook through POI's SAX event API and emits header-aware chunks.
+ *
+ * <p>
+ * Unlike {@code XSSFWorkbook}, which builds the whole sheet DOM, only the current window of
+ * rows is held in memory, so memory use does not grow with the number of rows. The first
+ * non-empty row of each sheet is taken as the header and repeated at the top of every chunk.
+ * A chunk is emitted after {@code rowsPerChunk} rows or earlier, when the next row would push it
+ * over {@code maxChunkTokens}, counting the workbook and sheet title and the header. A row too
+ * large for a chunk on its own is split, and every piece repeats the title and the header. Numeric, date and formula cells are rendered through a
+ * {@link DataFormatter} using the cell style, with formulas contributing their cached result.
+ * </p>
+ */
+public class StreamingExcelReader {
+
+    private static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    private final int rowsPerChunk;
+    private final int maxChunkTokens;
+
+    /**
+     * @param rowsPerChunk   maximum number of data rows per chunk
+     * @param maxChunkTokens token budget of a chunk, title and header included
+     */
+    public StreamingExcelReader(int rowsPerChunk, int maxChunkTokens) {
+        this.rowsPerChunk = rowsPerChunk;
+        this.maxChunkTokens = maxChunkTokens;
+    }
+
+    /**
+     * Reads every sheet of the workbook, handing chunks to the sink as they fill up.
+     *
+     * @param excelFile Path to the Excel file.
+     * @param sink      Receiver of the emitted chunks.
+     * @throws IOException          if the file is corrupt or unreadable.
+     * @throws InterruptedException if interrupted while the sink is blocked.
+     */
+    public void read(Path excelFile, DocumentSink sink) throws IOException, InterruptedException {
+        try (OPCPackage pkg = OPCPackage.open(excelFile.toFile(), PackageAccess.READ)) {
+            var reader = new XSSFReader(pkg);
+            var strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            var formatter = new DataFormatter();
+
+            var sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    var chunker = new RowChunker(excelFile, sheets.getSheetName(), sink);
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, chunker, formatter, false));
+                    parser.parse(new InputSource(sheet));
+                    chunker.flush();
+                } catch (ChunkInterruptedException e) {
+                    throw e.getCause();
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Failed to stream workbook " + excelFile.getFileName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Collects the rows of one sheet and cuts them into chunks.
+     */
+    private final class RowChunker implements SheetContentsHandler {
+
+        private final Path file;
+        private final String sheetName;
+        private final DocumentSink sink;
+        private final Map<Integer, String> currentRow = new HashMap<>();
+        private final List<String> rows = new ArrayList<>();
+
+        private List<String> header;
+        private String headerLine;
+        private int headerTokens;
+        private int chunkTokens;
+        private int firstRowNumber;
+        private int lastRowNumber;
+        private boolean emitted;
+
+        RowChunker(Path file, String sheetName, DocumentSink sink) {
+            this.file = file;
+            this.sheetName = sheetName;
+            this.sink = sink;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            currentRow.clear();
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (formattedValue != null && !formattedValue.isBlank()) {
+                currentRow.put((int) new CellReference(cellReference).getCol(), formattedValue.trim());
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (currentRow.isEmpty()) {
+                return;
+            }
+            int width = currentRow.keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+            var values = new ArrayList<String>(width);
+            for (int col = 0; col < width; col++) {
+                values.add(currentRow.getOrDefault(col, ""));
+            }
+
+            if (header == null) {
+                header = values;
+                headerLine = "Columns: " + String.join(" | ", header);
+                headerTokens = ENCODING.countTokens(headerLine);
+                return;
+            }
+
+            String line = String.join(" | ", values);
+            int lineTokens = ENCODING.countTokens(line) + 1;
+            if (!rows.isEmpty() && (rows.size() >= rowsPerChunk
+                    || titleTokens(firstRowNumber, rowNum + 1) + chunkTokens + lineTokens > maxChunkTokens)) {
+                flush();
+            }
+            if (rows.isEmpty()) {
+                firstRowNumber = rowNum + 1;
+                chunkTokens = headerTokens;
+            }
+            rows.add(line);
+            chunkTokens += lineTokens;
+            lastRowNumber = rowNum + 1;
+        }
+
+        /**
+         * Emits the buffered rows as one chunk, splitting it further only if a single row alone
+         * exceeds the token budget.
+         */
+        void flush() {
+            if (rows.isEmpty()) {
+                if (header != null && !emitted) {
+                    // Header-only sheet: still worth indexing its column names
+                    emit(List.of(newChunk(headerLine, 0, 0)));
+                }
+                return;
+            }
+            int titleTokens = titleTokens(firstRowNumber, lastRowNumber);
+            if (titleTokens + chunkTokens <= maxChunkTokens) {
+                var text = new StringBuilder(headerLine);
+                rows.forEach(row -> text.append('\n').append(row));
+                emit(List.of(newChunk(text.toString(), firstRowNumber, lastRowNumber)));
+            } else {
+                emit(splitOversized(titleTokens));
+            }
+            rows.clear();
+            chunkTokens = 0;
+        }
+
+        /**
+         * Splits the buffered rows, in practice a single row, into pieces that fit the budget
+         * together with the title and the header, and puts the header back in front of each.
+         */
+        private List<Document> splitOversized(int titleTokens) {
+            int pieceTokens = Math.max(1, maxChunkTokens - titleTokens - headerTokens - 1);
+            var splitter = TokenTextSplitter.builder().withChunkSize(pieceTokens).build();
+            var chunks = new ArrayList<Document>();
+            for (Document piece : splitter.split(new Document(String.join("\n", rows)))) {
+                chunks.add(newChunk(headerLine + "\n" + piece.getText(), firstRowNumber, lastRowNumber));
+            }
+            return chunks;
+        }
+
+        private int titleTokens(int firstRow, int lastRow) {
+            return ENCODING.countTokens(title(firstRow, lastRow));
+        }
+
+        private String title(int firstRow, int lastRow) {
+            return "Workbook: " + file.getFileName() + "\nSheet: " + sheetName
+                    + (firstRow > 0 ? " (rows " + firstRow + "-" + lastRow + ")" : "") + "\n";
+        }
+
+        private Document newChunk(String body, int firstRow, int lastRow) {
+            String title = title(firstRow, lastRow);
+            var metadata = new HashMap<String, Object>();
+            metadata.put(ChunkMetadata.SHEET, sheetName);
+            if (firstRow > 0) {
+                metadata.put(ChunkMetadata.ROW_START, firstRow);
+                metadata.put(ChunkMetadata.ROW_END, lastRow);
+            }
+            return new Document(title + body, metadata);
+        }
+
+        private void emit(List<Document> chunks) {
+            emitted = true;
+            try {
+                sink.accept(chunks);
+            } catch (InterruptedException e) {
+                // SAX callbacks cannot throw checked exceptions; unwrapped again in read()
+                throw new ChunkInterruptedException(e);
+            }
+        }
+    }
+
+    private static final class ChunkInterruptedException extends RuntimeException {
+
+        ChunkInterruptedException(InterruptedException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized InterruptedException getCause() {
+            return (InterruptedException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.psyncopate.rag.source;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.psyncopate.rag.source.IngestionManifest.SOURCE_KEY;
+
+/**
+ * Loads a complete corpus into a fresh copy of {@code vector_store} and swaps it in, for full rebuilds.
+ *
+ * <p>
+ * Inserting tens of thousands of rows into the live table means updating its HNSW index row by row,
+ * the slowest way to build it. A bulk load instead
+ * </p>
+ * <ol>
+ *     <li>creates {@value #STAGING}, with the columns of {@code vector_store} but no index;</li>
+ *     <li>embeds each batch and writes it with a binary {@code COPY}, from several writer threads;</li>
+ *     <li>builds the primary key and a copy of every index of the live table in one pass over the loaded rows,
+ *     HNSW indexes with the configured {@code m} and {@code ef_construction}, under the configured
+ *     {@code maintenance_work_mem} and parallel maintenance workers;</li>
+ *     <li>renames the staging table to {@code vector_store}, drops the old one and gives the indexes their
+ *     usual names, in one transaction together with the caller's bookkeeping (the manifest).</li>
+ * </ol>
+ * <p>
+ * Queries keep using the old table and its index until the swap commits; the swap itself only waits for
+ * the queries running at that moment. A load that fails or is abandoned drops the staging table and
+ * leaves {@code vector_store} untouched.
+ * </p>
+ */
+@Component
+public class VectorStoreBulkLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorStoreBulkLoader.class);
+
+    static final String LIVE = "vector_store";
+    static final String STAGING = "vector_store_staging";
+    private static final String RETIRED = "vector_store_retired";
+    private static final String STAGING_SUFFIX = "_bulk";
+
+    private static final String COPY = "COPY " + STAGING + " (id, content, metadata, embedding) FROM STDIN (FORMAT binary)";
+    private static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final byte JSONB_VERSION = 1;
+
+    private static final Pattern INDEX_TARGET = Pattern.compile("^CREATE (UNIQUE )?INDEX \\S+ ON (ONLY )?((?:\\S+\\.)?)" + LIVE + " ");
+    private static final Pattern HNSW = Pattern.compile(" USING hnsw ", Pattern.CASE_INSENSITIVE);
+    private static final Pattern STORAGE_PARAMETERS = Pattern.compile(" WITH \\([^)]*\\)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcClient jdbcClient;
+    private final TransactionTemplate transactionTemplate;
+    private final EmbeddingModel embeddingModel;
+    private final BatchingStrategy batchingStrategy;
+    private final ObjectMapper objectMapper;
+    private final BulkLoadProperties properties;
+
+    /**
+     * @param jdbcTemplate        runs the {@code COPY}s on a PostgreSQL connection, and everything else
+     * @param transactionTemplate makes the index builds and the swap atomic
+     * @param embeddingModel      embeds the chunks, exactly like the pgvector store does on insert
+     * @param batchingStrategy    splits a batch that would exceed the embedding model's input limit
+     * @param objectMapper        serializes the chunk metadata
+     * @param properties          HNSW and maintenance settings
+     */
+    public VectorStoreBulkLoader(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                 EmbeddingModel embeddingModel, BatchingStrategy batchingStrategy,
+                                 ObjectMapper objectMapper, BulkLoadProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jdbcClient = JdbcClient.create(jdbcTemplate);
+        this.transactionTemplate = transactionTemplate;
+        this.embeddingModel = embeddingModel;
+        this.batchingStrategy = batchingStrategy;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * Starts a bulk load into a new, empty staging table, replacing one a crashed load may have left.
+     *
+     * @return the load; close it to discard the staging table unless it was swapped in
+     */
+    public Load begin() {
+        jdbcClient.sql("DROP TABLE IF EXISTS " + STAGING).update();
+        jdbcClient.sql("CREATE TABLE " + STAGING + " (LIKE " + LIVE + " INCLUDING DEFAULTS INCLUDING GENERATED INCLUDING STORAGE)")
+                .update();
+        log.info("Bulk load started into {}", STAGING);
+        return new Load();
+    }
+
+    /**
+     * One bulk load; {@link #write} may be called from several threads.
+     */
+    public final class Load implements AutoCloseable {
+
+        private final AtomicLong rows = new AtomicLong();
+        private List<IndexDefinition> indexes = List.of();
+        private Optional<String> primaryKey = Optional.empty();
+        private boolean swapped;
+
+        private Load() {
+        }
+
+        /**
+         * Embeds a batch of chunks and appends it to the staging table.
+         *
+         * @param batch the chunks, carrying their ids and metadata
+         */
+        public void write(List<Document> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<float[]> embeddings = embeddingModel.embed(batch, EmbeddingOptionsBuilder.builder().build(), batchingStrategy);
+            byte[] data = encode(batch, embeddings, objectMapper);
+            jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try {
+                    return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY, new ByteArrayInputStream(data));
+                } catch (IOException e) {
+                    throw new SQLException("COPY into " + STAGING + " failed: " + e.getMessage(), e);
+                }
+            });
+            rows.addAndGet(batch.size());
+        }
+
+        /**
+         * @return rows written so far
+         */
+        public long rows() {
+            return rows.get();
+        }
+
+        /**
+         * Copies the current chunks of the given files from the live table, e.g. for files that failed to
+         * load, so a rebuild does not drop them from the index.
+         *
+         * @param sources source keys of the files
+         */
+        public void carryOver(Collection<String> sources) {
+            int copied = jdbcClient.sql("""
+                            INSERT INTO %s (id, content, metadata, embedding)
+                            SELECT id, content, metadata, embedding FROM %s
+                            WHERE metadata->>'%s' = ANY(CAST(:sources AS text[]))""".formatted(STAGING, LIVE, SOURCE_KEY))
+                    .param("sources", sources.toArray(String[]::new))
+                    .update();
+            rows.addAndGet(copied);
+        }
+
+        /**
+         * Builds the primary key and a copy of every index of the live table on the staging table.
+         */
+        public void buildIndexes() {
+            primaryKey = jdbcClient.sql("SELECT conname FROM pg_constraint WHERE conrelid = CAST('" + LIVE + "' AS regclass) AND contype = 'p'")
+                    .query(String.class)
+                    .optional();
+            indexes = jdbcClient.sql("""
+                            SELECT i.relname AS name, pg_get_indexdef(i.oid) AS definition
+                            FROM pg_index x JOIN pg_class i ON i.oid = x.indexrelid
+                            WHERE x.indrelid = CAST('%s' AS regclass)
+                              AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = x.indexrelid)""".formatted(LIVE))
+                    .query((rs, rowNum) -> new IndexDefinition(rs.getString("name"), rs.getString("definition")))
+                    .list();
+
+            long start = System.nanoTime();
+            transactionTemplate.executeWithoutResult(status -> {
+                setLocal("maintenance_work_mem", properties.maintenanceWorkMem());
+                setLocal("max_parallel_maintenance_workers", Integer.toString(properties.parallelWorkers()));
+                if (primaryKey.isPresent()) {
+                    jdbcClient.sql("ALTER TABLE " + STAGING + " ADD CONSTRAINT " + STAGING + "_pkey PRIMARY KEY (id)").update();
+                }
+                for (IndexDefinition index : indexes) {
+                    long indexStart = System.nanoTime();
+                    jdbcClient.sql(stagingDefinition(index)).update();
+                    log.info("Built index {} over {} rows in {} ms", index.name() + STAGING_SUFFIX, rows.get(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - indexStart));
+                }
+            });
+            jdbcClient.sql("ANALYZE " + STAGING).update();
+            log.info("Built {} indexes on {} in {} ms", indexes.size() + (primaryKey.isPresent() ? 1 : 0), STAGING,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        /**
+         * Replaces {@code vector_store} with the staging table.
+         *
+         * @param alongside runs in the same transaction, e.g. to replace the manifest
+         */
+        public void swap(Runnable alongside) {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcClient.sql("LOCK TABLE " + LIVE + " IN ACCESS EXCLUSIVE MODE").update();
+                jdbcClient.sql("ALTER TABLE " + LIVE + " RENAME TO " + RETIRED).update();
+                jdbcClient.sql("ALTER TABLE " + STAGING + " RENAME TO " + LIVE).update();
+                jdbcClient.sql("DROP TABLE " + RETIRED).update();
+                for (IndexDefinition index : indexes) {
+                    jdbcClient.sql("ALTER INDEX " + index.name() + STAGING_SUFFIX + " RENAME TO " + index.name()).update();
+                }
+                primaryKey.ifPresent(name -> jdbcClient.sql("ALTER TABLE " + LIVE + " RENAME CONSTRAINT " + STAGING + "_pkey TO " + name)
+                        .update());
+                alongside.run();
+            });
+            swapped = true;
+            log.info("Swapped in the bulk-loaded vector store ({} chunks)", rows.get());
+        }
+
+        /**
+         * Drops the staging table unless it was swapped in.
+         */
+        @Override
+        public void close() {
+            if (swapped) {
+                return;
+            }
+            try {
+                jdbcClient.sql("DROP TABLE IF EXISTS " + STAGING).update();
+                log.info("Bulk load abandoned after {} chunks; {} is unchanged", rows.get(), LIVE);
+            } catch (RuntimeException e) {
+                log.warn("Could not drop {}: {}", STAGING, e.getMessage());
+            }
+        }
+
+        private void setLocal(String setting, String value) {
+            jdbcClient.sql("SELECT set_config(:setting, :value, true)")
+                    .param("setting", setting)
+                    .param("value", value)
+                    .query(String.class)
+                    .single();
+        }
+
+        /**
+         * Rewrites the definition of a live index for the staging table, with the configured HNSW parameters.
+         */
+        private String stagingDefinition(IndexDefinition index) {
+            Matcher target = INDEX_TARGET.matcher(index.definition());
+            if (!target.find()) {
+                throw new IllegalStateException("Cannot copy index definition: " + index.definition());
+            }
+            String definition = target.replaceFirst("CREATE $1INDEX " + Matcher.quoteReplacement(index.name() + STAGING_SUFFIX)
+                    + " ON $3" + STAGING + " ");
+            if (HNSW.matcher(definition).find()) {
+                definition = STORAGE_PARAMETERS.matcher(definition).replaceFirst("");
+                String parameters = " WITH (m = %d, ef_construction = %d)".formatted(properties.hnswM(), properties.hnswEfConstruction());
+                int where = definition.indexOf(" WHERE ");
+                definition = where < 0 ? definition + parameters
+                        : definition.substring(0, where) + parameters + definition.substring(where);
+            }
+            return definition;
+        }
+    }
+
+    /**
+     * Encodes rows in PostgreSQL's binary {@code COPY} format: uuid, text, jsonb and pgvector's {@code vector}.
+     *
+     * @param batch        the chunks, with UUID ids
+     * @param embeddings   their embeddings, in the same order
+     * @param objectMapper serializes the metadata
+     * @return the {@code COPY} data, header and trailer included
+     */
+    static byte[] encode(List<Document> batch, List<float[]> embeddings, ObjectMapper objectMapper) {
+        try {
+            var bytes = new ByteArrayOutputStream(batch.size() * 8192);
+            var out = new DataOutputStream(bytes);
+            out.write(COPY_SIGNATURE);
+            out.writeInt(0);
+            out.writeInt(0);
+            for (int i = 0; i < batch.size(); i++) {
+                Document document = batch.get(i);
+                out.writeShort(4);
+
+                UUID id = UUID.fromString(document.getId());
+                out.writeInt(16);
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+
+                if (document.getText() == null) {
+                    out.writeInt(-1);
+                } else {
+                    byte[] content = document.getText().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(content.length);
+                    out.write(content);
+                }
+
+                byte[] metadata = objectMapper.writeValueAsBytes(document.getMetadata());
+                out.writeInt(metadata.length + 1);
+                out.writeByte(JSONB_VERSION);
+                out.write(metadata);
+
+                float[] embedding = embeddings.get(i);
+                out.writeInt(4 + 4 * embedding.length);
+                out.writeShort(embedding.length);
+                out.writeShort(0);
+                for (float value : embedding) {
+                    out.writeFloat(value);
+                }
+            }
+            out.writeShort(-1);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record IndexDefinition(String name, String definition) {
+    }
+}
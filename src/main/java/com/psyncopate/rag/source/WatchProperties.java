@@ -0,0 +1,20 @@
+package com.psyncopate.rag.source;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for live re-ingestion of changed documents, bound from {@code rag.watch.*}.
+ *
+ * @param enabled  whether the document folders are watched for changes
+ * @param debounce quiet period after the last file event before the affected files are re-ingested
+ * @param maxDelay upper bound on how long a burst of events can postpone re-ingestion
+ */
+@ConfigurationProperties(prefix = "rag.watch")
+public record WatchProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("2s") Duration debounce,
+        @DefaultValue("30s") Duration maxDelay) {
+}
@@ -4,12 +4,20 @@ document.addEventListener('DOMContentLoaded', function() {
     const userInput = document.getElementById('user-input');
     const sendBtn = document.getElementById('send-btn');
 
+    // Stream answers token by token from /api/rag/stream (Server-Sent Events);
+    // falls back to the blocking /api/rag/query where response streaming is unavailable
+    const useStreaming = typeof ReadableStream !== 'undefined' && typeof TextDecoder !== 'undefined';
+
     // Check if elements exist
     if (!chatMessages || !userInput || !sendBtn) {
         console.error('Missing required DOM elements');
         return;
     }
 
+    // A freshly loaded page shows an empty chat; start the server-side conversation memory afresh too
+    fetch('/api/rag/conversation', { method: 'DELETE' })
+        .catch(error => console.warn('Could not reset the conversation:', error));
+
     console.log('DOM elements found:', {
         chatMessages: !!chatMessages,
         userInput: !!userInput,
@@ -35,14 +43,7 @@ document.addEventListener('DOMContentLoaded', function() {
         const messageContent = document.createElement('div');
         messageContent.className = 'message-content';
         
-        // Format message text
-        const formattedMessage = message
-            .replace(/`([^`]+)`/g, '<code>$1</code>') // Inline code
-            .replace(/```([^`]+)```/g, '<pre>$1</pre>') // Code blocks
-            .replace(/\n/g, '<br>') // Newlines
-            .replace(/\s{2,}/g, (spaces) => '<br>' + ' '.repeat(spaces.length - 1)); // Multiple spaces
-        
-        messageContent.innerHTML = formattedMessage;
+        messageContent.innerHTML = formatMessage(message);
         
         // Append content to message container
         messageDiv.appendChild(messageContent);
@@ -52,6 +53,37 @@ document.addEventListener('DOMContentLoaded', function() {
         
         // Scroll to bottom
         chatMessages.scrollTop = chatMessages.scrollHeight;
+
+        return messageContent;
+    }
+
+    // Format message text
+    function formatMessage(message) {
+        return message
+            .replace(/`([^`]+)`/g, '<code>$1</code>') // Inline code
+            .replace(/```([^`]+)```/g, '<pre>$1</pre>') // Code blocks
+            .replace(/\n/g, '<br>') // Newlines
+            .replace(/\s{2,}/g, (spaces) => '<br>' + ' '.repeat(spaces.length - 1)); // Multiple spaces
+    }
+
+    // Escape text that is rendered through formatMessage, e.g. file names taken from the document folders
+    function escapeHtml(text) {
+        return String(text)
+            .replace(/&/g, '&amp;')
+            .replace(/</g, '&lt;')
+            .replace(/>/g, '&gt;')
+            .replace(/"/g, '&quot;')
+            .replace(/'/g, '&#39;');
+    }
+
+    // Citations of the answer as a trailing "Sources" list
+    function formatSources(citations) {
+        if (!citations || citations.length === 0) {
+            return '';
+        }
+        return '\n\nSources:' + citations
+            .map(c => '\n- ' + escapeHtml(c.fileName || c.source) + (c.location ? ` (${escapeHtml(c.location)})` : ''))
+            .join('');
     }
 
     // Add typing indicator
@@ -84,7 +116,7 @@ document.addEventListener('DOMContentLoaded', function() {
                 headers: {
                     'Content-Type': 'application/json',
                 },
-                body: JSON.stringify({ question: message })
+                body: JSON.stringify({ question: message, timings: true })
             });
 
             console.log('Response status:', response.status);
@@ -95,13 +127,117 @@ document.addEventListener('DOMContentLoaded', function() {
 
             const data = await response.json();
             console.log('Server response:', data);
-            return data.answer;
+            if (data.timings) {
+                console.log('Timings (ms):', data.timings);
+            }
+            return data.answer + formatSources(data.citations);
         } catch (error) {
             console.error('Error:', error);
             return 'Sorry, I encountered an error. Please try again.';
         }
     }
 
+    // Handle sending message in streaming mode: the bot message is created on the first
+    // token and grows as further tokens arrive
+    async function streamMessage(message, typingDiv) {
+        let answer = '';
+        let messageContent = null;
+        let citations = [];
+
+        function append(text) {
+            if (!messageContent) {
+                removeTypingIndicator(typingDiv);
+                messageContent = addMessage('', false);
+            }
+            answer += text;
+            messageContent.innerHTML = formatMessage(answer);
+            chatMessages.scrollTop = chatMessages.scrollHeight;
+        }
+
+        try {
+            const response = await fetch('/api/rag/stream', {
+                method: 'POST',
+                headers: {
+                    'Content-Type': 'application/json',
+                    'Accept': 'text/event-stream'
+                },
+                body: JSON.stringify({ question: message, timings: true })
+            });
+
+            if (!response.ok || !response.body) {
+                throw new Error(`HTTP error! status: ${response.status}`);
+            }
+
+            const reader = response.body.getReader();
+            const decoder = new TextDecoder();
+            let buffer = '';
+
+            while (true) {
+                const { value, done } = await reader.read();
+                if (done) break;
+                buffer += decoder.decode(value, { stream: true });
+
+                // Events are separated by a blank line
+                let boundary;
+                while ((boundary = buffer.search(/\r?\n\r?\n/)) >= 0) {
+                    const rawEvent = buffer.slice(0, boundary);
+                    buffer = buffer.slice(boundary).replace(/^\r?\n\r?\n/, '');
+
+                    let eventName = 'message';
+                    const dataLines = [];
+                    rawEvent.split(/\r?\n/).forEach(line => {
+                        if (line.startsWith('event:')) eventName = line.slice(6).trim();
+                        else if (line.startsWith('data:')) dataLines.push(line.slice(5));
+                    });
+                    if (dataLines.length === 0) continue;
+                    const data = JSON.parse(dataLines.join('\n'));
+
+                    if (eventName === 'sources') {
+                        console.log('Sources:', data.relevantDocuments.length, data.cached ? '(cached)' : '');
+                        citations = data.citations;
+                    } else if (eventName === 'token') {
+                        append(data.text);
+                    } else if (eventName === 'done') {
+                        if (data.timings) {
+                            console.log('Timings (ms):', data.timings);
+                        }
+                        if (messageContent) {
+                            append(formatSources(citations));
+                        }
+                    } else if (eventName === 'error') {
+                        throw new Error(data.message);
+                    }
+                }
+            }
+        } catch (error) {
+            console.error('Error:', error);
+            append(answer ? '\n\n[The answer was interrupted.]' : 'Sorry, I encountered an error. Please try again.');
+        }
+
+        if (!messageContent) {
+            // Stream ended without any token
+            append('Sorry, I encountered an error. Please try again.');
+        }
+    }
+
+    // Ask the assistant and show its answer, streamed or in one piece
+    async function answer(message) {
+        // Show typing indicator
+        const typingDiv = addTypingIndicator();
+
+        if (useStreaming) {
+            await streamMessage(message, typingDiv);
+            return;
+        }
+
+        // Get bot response
+        const response = await sendMessage(message);
+        removeTypingIndicator(typingDiv);
+
+        // Add bot response
+        addMessage(response, false);
+    }
+
     // Handle send button click
     sendBtn.addEventListener('click', async function(e) {
         e.preventDefault();
@@ -114,15 +250,7 @@ document.addEventListener('DOMContentLoaded', function() {
         addMessage(message, true);
         userInput.value = '';
 
-        // Show typing indicator
-        const typingDiv = addTypingIndicator();
-
-        // Get bot response
-        const response = await sendMessage(message);
-        removeTypingIndicator(typingDiv);
-        
-        // Add bot response
-        addMessage(response, false);
+        await answer(message);
     });
 
     // Handle Enter key
@@ -138,15 +266,7 @@ document.addEventListener('DOMContentLoaded', function() {
             addMessage(message, true);
             userInput.value = '';
 
-            // Show typing indicator
-            const typingDiv = addTypingIndicator();
-
-            // Get bot response
-            const response = await sendMessage(message);
-            removeTypingIndicator(typingDiv);
-            
-            // Add bot response
-            addMessage(response, false);
+            await answer(message);
         }
     });
 
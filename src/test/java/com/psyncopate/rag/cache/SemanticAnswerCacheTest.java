@@ -0,0 +1,68 @@
+package com.psyncopate.rag.cache;
+
+import com.psyncopate.rag.cache.SemanticAnswerCache.Lookup;
+import com.psyncopate.rag.dto.RagFilter;
+import com.psyncopate.rag.dto.RagResponse;
+import com.psyncopate.rag.retrieval.RetrievalMode;
+import com.psyncopate.rag.retrieval.RetrievalProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticAnswerCacheTest {
+
+    private static final float[] LAG = {1f, 0f, 0f};
+    private static final float[] LAG_REPHRASED = {0.99f, 0.05f, 0f};
+
+    // Questions are always passed with their embedding, so no embedding model is needed
+    private final SemanticAnswerCache cache = new SemanticAnswerCache(null,
+            new AnswerCacheProperties(true, 0.95, 10, Duration.ofHours(1)),
+            new RetrievalProperties(RetrievalMode.HYBRID, 60, true, 100));
+
+    @Test
+    void servesSimilarQuestionsOfTheSameModeAndFilter() {
+        cache.put(cache.lookup("consumer lag", LAG, RetrievalMode.VECTOR, null), answer("Lag is ..."));
+
+        RagResponse hit = cache.lookup("what is consumer lag?", LAG_REPHRASED, RetrievalMode.VECTOR, null).hit();
+
+        assertThat(hit).isNotNull();
+        assertThat(hit.answer()).isEqualTo("Lag is ...");
+        assertThat(hit.cached()).isTrue();
+    }
+
+    @Test
+    void doesNotServeAnAnswerRetrievedInAnotherMode() {
+        cache.put(cache.lookup("consumer lag", LAG, RetrievalMode.VECTOR, null), answer("From vector search"));
+
+        Lookup hybrid = cache.lookup("consumer lag", LAG, RetrievalMode.HYBRID, null);
+        assertThat(hybrid.hit()).isNull();
+
+        cache.put(hybrid, answer("From hybrid search"));
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.lookup("consumer lag", LAG, RetrievalMode.VECTOR, null).hit().answer()).isEqualTo("From vector search");
+        assertThat(cache.lookup("consumer lag", LAG, RetrievalMode.HYBRID, null).hit().answer()).isEqualTo("From hybrid search");
+    }
+
+    @Test
+    void treatsNoModeAsTheConfiguredDefault() {
+        cache.put(cache.lookup("consumer lag", LAG, null, null), answer("Default mode"));
+
+        assertThat(cache.lookup("consumer lag", LAG, RetrievalMode.HYBRID, null).hit()).isNotNull();
+        assertThat(cache.lookup("consumer lag", LAG, RetrievalMode.VECTOR, null).hit()).isNull();
+    }
+
+    @Test
+    void doesNotServeAnAnswerOfAnotherFilter() {
+        cache.put(cache.lookup("consumer lag", LAG, null, new RagFilter(List.of("pdf"), null, null)), answer("PDF only"));
+
+        assertThat(cache.lookup("consumer lag", LAG, null, null).hit()).isNull();
+        assertThat(cache.lookup("consumer lag", LAG, null, new RagFilter(List.of("pdf"), null, null)).hit()).isNotNull();
+    }
+
+    private static RagResponse answer(String text) {
+        return new RagResponse(text, List.of());
+    }
+}
@@ -0,0 +1,76 @@
+package com.psyncopate.rag.dto;
+
+import com.psyncopate.rag.source.ChunkMetadata;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class RagFilterTest {
+
+    @Test
+    void missingFieldsRestrictNothing() {
+        var filter = new RagFilter(null, null, null);
+
+        assertThat(filter.isEmpty()).isTrue();
+        assertThat(filter.formats()).isEmpty();
+        assertThat(filter.toExpression()).isNull();
+    }
+
+    @Test
+    void valuesOfOneFieldAreAlternatives() {
+        var b = new FilterExpressionBuilder();
+
+        assertThat(new RagFilter(List.of("pdf", "docx"), null, null).toExpression())
+                .isEqualTo(b.in(ChunkMetadata.FORMAT, "pdf", "docx").build());
+    }
+
+    @Test
+    void fieldsAreCombined() {
+        var b = new FilterExpressionBuilder();
+        Filter.Expression expected = b.and(b.and(b.in(ChunkMetadata.FORMAT, "excel"), b.in(ChunkMetadata.AREA, "kafka")),
+                b.in(ChunkMetadata.FILE_NAME, "Topics v2.xlsx")).build();
+
+        assertThat(new RagFilter(List.of("excel"), List.of("kafka"), List.of("Topics v2.xlsx")).toExpression())
+                .isEqualTo(expected);
+    }
+
+    @Test
+    void convertsToTheJsonPathSearchedByPgvector() {
+        String jsonPath = new PgVectorFilterExpressionConverter()
+                .convertExpression(new RagFilter(List.of("pdf"), List.of("kafka"), null).toExpression());
+
+        assertThat(jsonPath).contains("$." + ChunkMetadata.FORMAT, "\"pdf\"", "$." + ChunkMetadata.AREA, "\"kafka\"");
+    }
+
+    @Test
+    void rejectsValuesThatWouldNeedEscapingInJsonPath() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new RagFilter(List.of("pdf\" || $.area == \"x"), null, null))
+                .withMessageContaining("formats");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new RagFilter(null, List.of("kafka\\"), null))
+                .withMessageContaining("areas");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new RagFilter(null, null, Arrays.asList((String) null)))
+                .withMessageContaining("files");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new RagFilter(null, null, List.of("x".repeat(201))));
+    }
+
+    @Test
+    void valuesAreCopied() {
+        var formats = new ArrayList<>(List.of("pdf"));
+        var filter = new RagFilter(formats, null, null);
+        formats.add("docx");
+
+        assertThat(filter.formats()).containsExactly("pdf");
+    }
+}
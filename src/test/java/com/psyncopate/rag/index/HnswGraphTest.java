@@ -0,0 +1,114 @@
+package com.psyncopate.rag.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswGraphTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final int VECTORS = 3_000;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    @Test
+    void recallAgainstBruteForceIsHigh() {
+        VectorSegments vectors = vectors();
+        HnswGraph graph = graph(vectors);
+
+        int found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = VectorSegments.normalize(randomVector());
+            List<Integer> exact = bruteForce(vectors, query, K, new BitSet());
+            List<Integer> approximate = graph.search(query, 64, new BitSet()).stream()
+                    .limit(K)
+                    .map(HnswGraph.Candidate::slot)
+                    .toList();
+            found += (int) approximate.stream().filter(exact::contains).count();
+        }
+
+        assertThat((double) found / (QUERIES * K)).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void returnsCandidatesMostSimilarFirst() {
+        VectorSegments vectors = vectors();
+        HnswGraph graph = graph(vectors);
+
+        List<HnswGraph.Candidate> candidates = graph.search(VectorSegments.normalize(randomVector()), 32, new BitSet());
+
+        assertThat(candidates).hasSize(32)
+                .isSortedAccordingTo(Comparator.comparingDouble(HnswGraph.Candidate::similarity).reversed());
+    }
+
+    @Test
+    void findsAStoredVectorItselfFirst() {
+        VectorSegments vectors = vectors();
+        HnswGraph graph = graph(vectors);
+
+        for (int slot = 0; slot < VECTORS; slot += 97) {
+            assertThat(graph.search(vectors.get(slot), 16, new BitSet()).get(0).slot()).isEqualTo(slot);
+        }
+    }
+
+    @Test
+    void leavesExcludedSlotsOutOfTheResults() {
+        VectorSegments vectors = vectors();
+        HnswGraph graph = graph(vectors);
+        float[] query = VectorSegments.normalize(randomVector());
+        var excluded = new BitSet();
+        bruteForce(vectors, query, K, excluded).forEach(excluded::set);
+
+        List<HnswGraph.Candidate> candidates = graph.search(query, 64, excluded);
+
+        assertThat(candidates).isNotEmpty().noneMatch(candidate -> excluded.get(candidate.slot()));
+    }
+
+    @Test
+    void emptyGraphFindsNothing() {
+        var graph = new HnswGraph(new VectorSegments(DIMENSIONS, 64), 16, 100);
+
+        assertThat(graph.search(VectorSegments.normalize(randomVector()), 10, new BitSet())).isEmpty();
+    }
+
+    private VectorSegments vectors() {
+        var vectors = new VectorSegments(DIMENSIONS, 1_024);
+        for (int i = 0; i < VECTORS; i++) {
+            vectors.append(randomVector());
+        }
+        return vectors;
+    }
+
+    private static HnswGraph graph(VectorSegments vectors) {
+        var graph = new HnswGraph(vectors, 16, 100);
+        for (int slot = 0; slot < vectors.size(); slot++) {
+            graph.insert(slot);
+        }
+        return graph;
+    }
+
+    private static List<Integer> bruteForce(VectorSegments vectors, float[] query, int k, BitSet excluded) {
+        return IntStream.range(0, vectors.size())
+                .filter(slot -> !excluded.get(slot))
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer slot) -> vectors.similarity(query, slot)).reversed())
+                .limit(k)
+                .toList();
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
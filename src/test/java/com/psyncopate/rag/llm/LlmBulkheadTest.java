@@ -0,0 +1,86 @@
+package com.psyncopate.rag.llm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmBulkheadTest {
+
+    private final LlmBulkhead bulkhead = new LlmBulkhead(new LlmBulkheadProperties(
+            1, 0, Duration.ofMillis(50), Duration.ofSeconds(5), Duration.ofSeconds(60), Duration.ofMillis(200)));
+
+    @AfterEach
+    void shutdown() {
+        bulkhead.shutdown();
+    }
+
+    @Test
+    void returnsTheResultAndFreesTheSlot() {
+        assertThat(bulkhead.call(() -> "first")).isEqualTo("first");
+        assertThat(bulkhead.call(() -> "second")).isEqualTo("second");
+    }
+
+    @Test
+    void anAbandonedCallKeepsItsSlotUntilItReturns() throws InterruptedException {
+        var upstream = new CountDownLatch(1);
+        var returned = new CountDownLatch(1);
+
+        // Like a blocking HTTP read that does not react to the interrupt
+        assertThatIllegalStateException()
+                .isThrownBy(() -> bulkhead.call(() -> {
+                    awaitUninterruptibly(upstream);
+                    returned.countDown();
+                    return "late";
+                }))
+                .withMessageContaining("No response from the chat model");
+        assertThatThrownBy(() -> bulkhead.call(() -> "next")).isInstanceOf(LlmBusyException.class);
+
+        upstream.countDown();
+        assertThat(returned.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(callWhenFree()).isEqualTo("next");
+    }
+
+    @Test
+    void rethrowsTheCallsOwnFailure() {
+        assertThatIllegalStateException()
+                .isThrownBy(() -> bulkhead.call(() -> {
+                    throw new IllegalStateException("rate limited");
+                }))
+                .withMessage("rate limited");
+        assertThat(bulkhead.call(() -> "after")).isEqualTo("after");
+    }
+
+    private String callWhenFree() throws InterruptedException {
+        // The slot is released just after the abandoned call returns
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try {
+                return bulkhead.call(() -> "next");
+            } catch (LlmBusyException e) {
+                Thread.sleep(10);
+            }
+        }
+        throw new AssertionError("The slot was never released");
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
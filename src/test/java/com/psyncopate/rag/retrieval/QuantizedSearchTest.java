@@ -0,0 +1,157 @@
+package com.psyncopate.rag.retrieval;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+/**
+ * Runs {@code schema.sql} and the quantized searches against a real pgvector; skipped where Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class QuantizedSearchTest {
+
+    private static final int DIMENSIONS = 1536; // vector_store.embedding is vector(1536)
+    private static final int CHUNKS = 200;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private static SingleConnectionDataSource dataSource;
+    private static JdbcClient jdbcClient;
+    private static TransactionTemplate transactionTemplate;
+    private static final List<String> ids = new ArrayList<>();
+    private static final List<float[]> embeddings = new ArrayList<>();
+
+    @BeforeAll
+    static void loadChunks() {
+        // One session throughout, so what SET LOCAL leaves behind is visible after the transaction
+        dataSource = new SingleConnectionDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword(), true);
+        jdbcClient = JdbcClient.create(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        runSchema();
+
+        var random = new Random(42);
+        for (int i = 0; i < CHUNKS; i++) {
+            float[] embedding = new float[DIMENSIONS];
+            for (int d = 0; d < DIMENSIONS; d++) {
+                embedding[d] = (float) random.nextGaussian();
+            }
+            String format = i % 10 == 0 ? "excel" : "pdf";
+            ids.add(jdbcClient.sql("INSERT INTO vector_store (content, metadata, embedding) "
+                            + "VALUES (:content, CAST(:metadata AS jsonb), :embedding) RETURNING id::text")
+                    .param("content", "chunk " + i)
+                    .param("metadata", "{\"format\": \"%s\"}".formatted(format))
+                    .param("embedding", new PGvector(embedding))
+                    .query(String.class)
+                    .single());
+            embeddings.add(embedding);
+        }
+    }
+
+    @AfterAll
+    static void close() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void quantizedIndexesAreUsedAndFindTheStoredChunk() {
+        for (QuantizationMode mode : List.of(QuantizationMode.HALFVEC, QuantizationMode.BINARY)) {
+            QuantizedSearch search = search(mode, false);
+            search.createIndex(mode);
+            assertThat(search.indexExists(mode)).isTrue();
+
+            // The planner prefers a sequential scan over 200 rows; the point is that it can match the expression index at all
+            String plan = transactionTemplate.execute(status -> {
+                jdbcClient.sql("SET LOCAL enable_seqscan = off").update();
+                return String.join("\n", jdbcClient.sql("EXPLAIN " + search.nearestSql(mode, false))
+                        .param("embedding", new PGvector(embeddings.get(7)))
+                        .param("k", 5)
+                        .param("candidates", 20)
+                        .query(String.class)
+                        .list());
+            });
+            assertThat(plan).contains("vector_store_embedding_" + mode.name().toLowerCase(Locale.ROOT) + "_idx");
+
+            List<Document> results = search.search(embeddings.get(7), 5, mode, 4);
+            assertThat(results).hasSize(5);
+            assertThat(results.get(0).getId()).isEqualTo(ids.get(7));
+            assertThat(results.get(0).getScore()).isCloseTo(1.0, offset(1e-6));
+        }
+    }
+
+    @Test
+    void filteredSearchReturnsOnlyMatchingChunks() {
+        QuantizedSearch search = search(QuantizationMode.HALFVEC, false);
+        search.createIndex(QuantizationMode.HALFVEC);
+
+        List<Document> results = search.search(embeddings.get(3), 5, new FilterExpressionBuilder().eq("format", "excel").build());
+
+        assertThat(results).hasSize(5);
+        assertThat(results).allSatisfy(document -> assertThat(document.getMetadata()).containsEntry("format", "excel"));
+    }
+
+    @Test
+    void candidateDepthIsRaisedForTheSearchTransactionOnly() {
+        QuantizedSearch search = search(QuantizationMode.HALFVEC, false);
+
+        assertThat(search.withCandidateDepth(400, false, () -> setting("hnsw.ef_search"))).isEqualTo("400");
+        assertThat(search.withCandidateDepth(10, true, () -> setting("hnsw.ef_search"))).isEqualTo("200");
+        assertThat(search.withCandidateDepth(10, true, () -> setting("hnsw.iterative_scan"))).isEqualTo("relaxed_order");
+        assertThat(search.withCandidateDepth(5_000, false, () -> setting("hnsw.ef_search"))).isEqualTo("1000");
+
+        assertThat(setting("hnsw.ef_search")).isEqualTo("40");
+        assertThat(setting("hnsw.iterative_scan")).isEqualTo("off");
+    }
+
+    @Test
+    void dropsTheFloatIndexOnceTheQuantizedIndexIsBuiltAndSchemaRestoresIt() {
+        assertThat(search(QuantizationMode.NONE, false).indexExists(QuantizationMode.NONE)).isTrue();
+
+        QuantizedSearch halfvec = search(QuantizationMode.HALFVEC, true);
+        halfvec.initializeIndex();
+
+        assertThat(halfvec.indexExists(QuantizationMode.NONE)).isFalse();
+        assertThat(halfvec.indexExists(QuantizationMode.HALFVEC)).isTrue();
+        assertThat(halfvec.search(embeddings.get(11), 3, null).get(0).getId()).isEqualTo(ids.get(11));
+
+        runSchema();
+        assertThat(halfvec.indexExists(QuantizationMode.NONE)).isTrue();
+    }
+
+    private static QuantizedSearch search(QuantizationMode mode, boolean dropFloatIndex) {
+        // Searches are always given the embedding, so no embedding model is needed
+        return new QuantizedSearch(jdbcClient, transactionTemplate, null, new ObjectMapper(),
+                new QuantizationProperties(mode, 4, DIMENSIONS, 200, dropFloatIndex));
+    }
+
+    private static String setting(String name) {
+        return jdbcClient.sql("SELECT current_setting(:name)").param("name", name).query(String.class).single();
+    }
+
+    private static void runSchema() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql ")).execute(dataSource);
+    }
+}
@@ -0,0 +1,105 @@
+package com.psyncopate.rag.source;
+
+import com.psyncopate.rag.source.ChunkDeduplicator.Duplicate;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.psyncopate.rag.source.IngestionManifest.SOURCE_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChunkDeduplicatorTest {
+
+    private static final String RESTART = """
+            To restart a broker, drain its partition leadership first with the preferred replica election tool,
+            then stop the service, wait until the controller reports the broker as offline, apply the change,
+            start the service again and wait for the under-replicated partition count to return to zero before
+            moving on to the next broker in the rolling restart of the cluster.""";
+
+    @Test
+    void simHashIgnoresCaseAndPunctuation() {
+        assertThat(ChunkDeduplicator.simHash("Restart the broker, then wait."))
+                .isEqualTo(ChunkDeduplicator.simHash("restart THE broker then wait"));
+    }
+
+    @Test
+    void simHashOfAnEditedWordStaysWithinTheAllowedDistance() {
+        long original = ChunkDeduplicator.simHash(RESTART);
+        long edited = ChunkDeduplicator.simHash(RESTART.replace("apply the change", "apply the update"));
+
+        assertThat(Long.bitCount(original ^ edited)).isLessThanOrEqualTo(6);
+    }
+
+    @Test
+    void collapsesNearDuplicatesAcrossFilesAndRecordsTheirLocation() {
+        var dedup = new ChunkDeduplicator(0.9);
+        Document canonical = chunk("a.pdf", RESTART, ChunkMetadata.PAGE, 3);
+        Document copy = chunk("b.pdf", RESTART.replace("apply the change", "apply the update"), ChunkMetadata.PAGE, 7);
+
+        assertThat(dedup.apply(List.of(canonical))).containsExactly(canonical);
+        assertThat(dedup.apply(List.of(copy))).isEmpty();
+
+        assertThat(canonical.getMetadata()).containsKeys(ChunkDeduplicator.FINGERPRINT_KEY, ChunkDeduplicator.VALUES_KEY);
+        assertThat(dedup.takeDuplicates("b.pdf"))
+                .containsExactly(new Duplicate(canonical.getId(), "a.pdf", "b.pdf", "page 7"));
+        assertThat(dedup.kept()).isEqualTo(1);
+        assertThat(dedup.dropped()).isEqualTo(1);
+        assertThat(dedup.droppedTokens()).isPositive();
+    }
+
+    @Test
+    void recordsCopiesWithinTheSameFile() {
+        var dedup = new ChunkDeduplicator(0.9);
+        Document canonical = chunk("a.xlsx", RESTART, ChunkMetadata.SHEET, "Topics");
+        Document copy = chunk("a.xlsx", RESTART, ChunkMetadata.SHEET, "Archive");
+
+        assertThat(dedup.apply(List.of(canonical, copy))).containsExactly(canonical);
+        assertThat(dedup.takeDuplicates("a.xlsx"))
+                .containsExactly(new Duplicate(canonical.getId(), "a.xlsx", "a.xlsx", "sheet Archive"));
+    }
+
+    @Test
+    void keepsChunksThatDifferOnlyInValues() {
+        var dedup = new ChunkDeduplicator(0.9);
+        String text = RESTART + " The broker listens on port 9092 with a session timeout of 45000 ms.";
+        Document original = chunk("a.pdf", text, ChunkMetadata.PAGE, 1);
+        Document changed = chunk("b.pdf", text.replace("9092", "9093"), ChunkMetadata.PAGE, 1);
+
+        assertThat(Long.bitCount(ChunkDeduplicator.simHash(original.getText()) ^ ChunkDeduplicator.simHash(changed.getText())))
+                .isLessThanOrEqualTo(6);
+        assertThat(dedup.apply(List.of(original, changed))).containsExactly(original, changed);
+        assertThat(dedup.takeDuplicates("b.pdf")).isEmpty();
+    }
+
+    @Test
+    void findsRegisteredChunksThroughTheirBands() {
+        var dedup = new ChunkDeduplicator(0.9);
+        dedup.register("stored", "a.pdf", String.format("%016x", ChunkDeduplicator.simHash(RESTART)),
+                String.format("%016x", ChunkDeduplicator.valueHash(RESTART)));
+        // Chunks stored before values were hashed are never matched
+        dedup.register("legacy", "c.pdf", String.format("%016x", ChunkDeduplicator.simHash(RESTART + " legacy")), null);
+
+        assertThat(dedup.apply(List.of(chunk("b.pdf", RESTART, ChunkMetadata.PAGE, 2)))).isEmpty();
+        assertThat(dedup.takeDuplicates("b.pdf"))
+                .containsExactly(new Duplicate("stored", "a.pdf", "b.pdf", "page 2"));
+        assertThat(dedup.apply(List.of(chunk("d.pdf", "Unrelated text about consumer group offsets", ChunkMetadata.PAGE, 1))))
+                .hasSize(1);
+    }
+
+    @Test
+    void zeroDistanceOnlyCollapsesIdenticalFingerprints() {
+        var dedup = new ChunkDeduplicator(1.0);
+        Document original = chunk("a.pdf", RESTART, ChunkMetadata.PAGE, 1);
+        Document edited = chunk("b.pdf", RESTART.replace("rolling restart", "rolling upgrade"), ChunkMetadata.PAGE, 1);
+        Document identical = chunk("c.pdf", RESTART, ChunkMetadata.PAGE, 1);
+
+        assertThat(dedup.apply(List.of(original, edited, identical))).containsExactly(original, edited);
+    }
+
+    private static Document chunk(String source, String text, String locationKey, Object location) {
+        return new Document(text, new HashMap<>(Map.of(SOURCE_KEY, source, locationKey, location)));
+    }
+}
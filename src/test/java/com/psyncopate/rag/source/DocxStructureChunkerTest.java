@@ -0,0 +1,116 @@
+package com.psyncopate.rag.source;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocxStructureChunkerTest {
+
+    private static final String HEADER = "| Property | Default | Description |";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void repeatsTheTableHeaderInEveryChunkOfASplitTable() throws IOException {
+        Path file = write("topics.docx", document -> {
+            XWPFTable table = document.createTable(41, 3);
+            fill(table.getRow(0), "Property", "Default", "Description");
+            for (int i = 1; i <= 40; i++) {
+                fill(table.getRow(i), "property.number." + i, String.valueOf(i * 100), "Description of property " + i);
+            }
+        });
+
+        List<Document> chunks = new DocxStructureChunker(120).chunk(file);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        for (Document chunk : chunks) {
+            assertThat(chunk.getText()).startsWith("Document: topics.docx").contains("Table:\n" + HEADER);
+            assertThat(dataRows(chunk)).isPositive();
+        }
+        assertThat(chunks.stream().mapToLong(DocxStructureChunkerTest::dataRows).sum()).isEqualTo(40);
+        assertThat(String.join("\n", chunks.stream().map(Document::getText).toList()))
+                .contains("| property.number.1 | 100 |", "| property.number.40 | 4000 |");
+    }
+
+    @Test
+    void keepsAnOversizedRowWithItsHeaderWithoutAHeaderOnlyChunk() throws IOException {
+        String longDescription = "This description is far longer than the chunk budget allows. ".repeat(30);
+        Path file = write("oversized.docx", document -> {
+            XWPFTable table = document.createTable(4, 3);
+            fill(table.getRow(0), "Property", "Default", "Description");
+            fill(table.getRow(1), "huge.property", "1", longDescription);
+            fill(table.getRow(2), "small.property", "2", "Short");
+            fill(table.getRow(3), "other.huge.property", "3", longDescription);
+        });
+
+        List<Document> chunks = new DocxStructureChunker(80).chunk(file);
+
+        assertThat(chunks).hasSize(3);
+        assertThat(chunks).allSatisfy(chunk -> {
+            assertThat(chunk.getText()).contains("Table:\n" + HEADER);
+            assertThat(dataRows(chunk)).isEqualTo(1);
+        });
+        assertThat(chunks.get(0).getText()).contains("| huge.property |");
+        assertThat(chunks.get(1).getText()).contains("| small.property |");
+        assertThat(chunks.get(2).getText()).contains("| other.huge.property |");
+    }
+
+    @Test
+    void recordsTheHeadingHierarchyOfEveryChunk() throws IOException {
+        Path file = write("guide.docx", document -> {
+            heading(document, "Heading1", "Kafka");
+            document.createParagraph().createRun().setText("Kafka is operated by the platform team.");
+            heading(document, "Heading2", "Restart procedure");
+            document.createParagraph().createRun().setText("Restart one broker at a time.");
+        });
+
+        List<Document> chunks = new DocxStructureChunker(500).chunk(file);
+
+        assertThat(chunks).hasSize(2);
+        assertThat(chunks.get(0).getMetadata()).containsEntry(ChunkMetadata.SECTION, "Kafka")
+                .containsEntry(ChunkMetadata.CHUNKING, DocxStructureChunker.STRUCTURE);
+        assertThat(chunks.get(1).getMetadata()).containsEntry(ChunkMetadata.SECTION, "Kafka > Restart procedure");
+        assertThat(chunks.get(1).getText()).contains("Section: Kafka > Restart procedure", "Restart one broker at a time.");
+    }
+
+    private Path write(String name, DocumentContent content) throws IOException {
+        Path file = directory.resolve(name);
+        try (var document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+            content.addTo(document);
+            document.write(out);
+        }
+        return file;
+    }
+
+    private static void fill(XWPFTableRow row, String... values) {
+        for (int i = 0; i < values.length; i++) {
+            row.getCell(i).setText(values[i]);
+        }
+    }
+
+    private static void heading(XWPFDocument document, String style, String text) {
+        var paragraph = document.createParagraph();
+        paragraph.setStyle(style);
+        paragraph.createRun().setText(text);
+    }
+
+    private static long dataRows(Document chunk) {
+        return chunk.getText().lines().filter(line -> line.startsWith("| ") && !line.equals(HEADER)).count();
+    }
+
+    private interface DocumentContent {
+        void addTo(XWPFDocument document);
+    }
+}
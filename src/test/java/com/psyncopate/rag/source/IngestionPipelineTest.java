@@ -0,0 +1,66 @@
+package com.psyncopate.rag.source;
+
+import com.knuddels.jtokkit.api.EncodingType;
+import com.psyncopate.rag.source.IngestionPipeline.IngestionReport;
+import com.psyncopate.rag.source.IngestionPipeline.SourceFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import static com.psyncopate.rag.source.IngestionManifest.SOURCE_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestionPipelineTest {
+
+    // One writer and a flush size above the chunk count: every chunk of the run shares one buffer
+    private static final IngestionProperties PROPERTIES =
+            new IngestionProperties(2, 1, 1, 16, 1_000, 200, 0.1, 50, 800, 500, 800, 50, 1, 10);
+
+    private final List<Document> written = Collections.synchronizedList(new ArrayList<>());
+    private final List<Path> ingested = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void anOversizedChunkFailsOnlyItsOwnFile() throws InterruptedException {
+        var pipeline = new IngestionPipeline(PROPERTIES,
+                new TokenCountBatchingStrategy(EncodingType.CL100K_BASE, PROPERTIES.maxBatchTokens(), PROPERTIES.reservePercentage()),
+                written::addAll);
+        SourceFile normal = file("normal.docx", IntStream.range(0, 5).mapToObj(i -> "Short paragraph " + i).toList());
+        SourceFile oversized = file("oversized.docx", List.of("Short paragraph", "word ".repeat(1_000)));
+
+        IngestionReport report = pipeline.run(List.of(normal, oversized), (file, chunks, latency) -> ingested.add(file.path()));
+
+        assertThat(report.failedFiles()).isEqualTo(1);
+        assertThat(ingested).containsExactly(normal.path());
+        assertThat(written).hasSize(5).allSatisfy(chunk ->
+                assertThat(chunk.getMetadata()).containsEntry(SOURCE_KEY, "normal.docx"));
+        assertThat(report.chunks()).isEqualTo(5);
+    }
+
+    @Test
+    void writesEveryFileWhenAllChunksFit() throws InterruptedException {
+        var pipeline = new IngestionPipeline(PROPERTIES,
+                new TokenCountBatchingStrategy(EncodingType.CL100K_BASE, PROPERTIES.maxBatchTokens(), PROPERTIES.reservePercentage()),
+                written::addAll);
+
+        IngestionReport report = pipeline.run(List.of(file("a.pdf", List.of("One", "Two")), file("b.pdf", List.of("Three"))),
+                (file, chunks, latency) -> ingested.add(file.path()));
+
+        assertThat(report.failedFiles()).isZero();
+        assertThat(report.chunks()).isEqualTo(3);
+        assertThat(ingested).containsExactlyInAnyOrder(Path.of("a.pdf"), Path.of("b.pdf"));
+    }
+
+    private static SourceFile file(String name, List<String> texts) {
+        return new SourceFile(Path.of(name), "TEST",
+                (path, sink) -> sink.accept(texts.stream().map(Document::new).toList()),
+                UnaryOperator.identity(), Map.of(SOURCE_KEY, name));
+    }
+}
@@ -0,0 +1,95 @@
+package com.psyncopate.rag.source;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingExcelReaderTest {
+
+    private static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    private static final String HEADER = "Columns: Broker | Listener | Port | Description";
+    private static final int MAX_TOKENS = 120;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void countsTheTitleInTheTokenBudget() throws IOException, InterruptedException {
+        Path file = write("brokers.xlsx", sheet -> {
+            for (int i = 1; i <= 60; i++) {
+                fill(sheet.createRow(i), "broker-" + i, "SASL_SSL", String.valueOf(9000 + i), "Listener of broker " + i);
+            }
+        });
+
+        List<Document> chunks = read(file);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        for (Document chunk : chunks) {
+            assertThat(chunk.getText()).startsWith("Workbook: brokers.xlsx\nSheet: Brokers (rows ").contains("\n" + HEADER + "\n");
+            assertThat(ENCODING.countTokens(chunk.getText())).isLessThanOrEqualTo(MAX_TOKENS);
+        }
+        assertThat(chunks.stream().mapToLong(StreamingExcelReaderTest::dataRows).sum()).isEqualTo(60);
+    }
+
+    @Test
+    void repeatsTheHeaderInEveryPieceOfAnOversizedRow() throws IOException, InterruptedException {
+        String longDescription = "This description is far longer than the chunk budget allows. ".repeat(30);
+        Path file = write("oversized.xlsx", sheet -> {
+            fill(sheet.createRow(1), "broker-1", "PLAINTEXT", "9092", "Short");
+            fill(sheet.createRow(2), "broker-2", "SSL", "9093", longDescription);
+        });
+
+        List<Document> chunks = read(file);
+
+        List<Document> pieces = chunks.stream().filter(chunk -> chunk.getText().contains("(rows 3-3)")).toList();
+        assertThat(pieces).hasSizeGreaterThan(1);
+        for (Document piece : pieces) {
+            assertThat(piece.getText()).startsWith("Workbook: oversized.xlsx\nSheet: Brokers (rows 3-3)\n" + HEADER + "\n");
+            assertThat(ENCODING.countTokens(piece.getText())).isLessThanOrEqualTo(MAX_TOKENS);
+            assertThat(piece.getMetadata()).containsEntry(ChunkMetadata.ROW_START, 3).containsEntry(ChunkMetadata.ROW_END, 3);
+        }
+    }
+
+    private static List<Document> read(Path file) throws IOException, InterruptedException {
+        var chunks = new ArrayList<Document>();
+        new StreamingExcelReader(50, MAX_TOKENS).read(file, chunks::addAll);
+        return chunks;
+    }
+
+    private static long dataRows(Document chunk) {
+        return chunk.getText().lines().filter(line -> line.startsWith("broker-")).count();
+    }
+
+    private Path write(String name, Consumer<XSSFSheet> content) throws IOException {
+        Path file = directory.resolve(name);
+        try (var workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            XSSFSheet sheet = workbook.createSheet("Brokers");
+            fill(sheet.createRow(0), "Broker", "Listener", "Port", "Description");
+            content.accept(sheet);
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    private static void fill(XSSFRow row, String... values) {
+        for (int i = 0; i < values.length; i++) {
+            row.createCell(i).setCellValue(values[i]);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.psyncopate.rag.source;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorStoreBulkLoaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void encodesRowsInTheBinaryCopyFormat() throws IOException {
+        UUID id = UUID.randomUUID();
+        var document = new Document(id.toString(), "Restart one broker at a time — ü", Map.of("source", "a.pdf", "page_number", 3));
+        float[] embedding = {0.25f, -1.5f, 3.0f};
+
+        var in = new DataInputStream(new ByteArrayInputStream(
+                VectorStoreBulkLoader.encode(List.of(document), List.of(embedding), objectMapper)));
+
+        assertThat(in.readNBytes(11)).containsExactly('P', 'G', 'C', 'O', 'P', 'Y', '\n', 0xFF, '\r', '\n', 0);
+        assertThat(in.readInt()).as("flags").isZero();
+        assertThat(in.readInt()).as("header extension").isZero();
+
+        assertThat(in.readShort()).as("fields").isEqualTo((short) 4);
+
+        assertThat(in.readInt()).isEqualTo(16);
+        assertThat(new UUID(in.readLong(), in.readLong())).isEqualTo(id);
+
+        byte[] content = in.readNBytes(in.readInt());
+        assertThat(new String(content, StandardCharsets.UTF_8)).isEqualTo(document.getText());
+
+        int metadataLength = in.readInt();
+        assertThat(in.readByte()).as("jsonb version").isEqualTo((byte) 1);
+        assertThat(objectMapper.readValue(in.readNBytes(metadataLength - 1), Map.class))
+                .isEqualTo(Map.of("source", "a.pdf", "page_number", 3));
+
+        assertThat(in.readInt()).isEqualTo(4 + 4 * embedding.length);
+        assertThat(in.readShort()).as("dimensions").isEqualTo((short) 3);
+        assertThat(in.readShort()).as("unused").isZero();
+        assertThat(new float[]{in.readFloat(), in.readFloat(), in.readFloat()}).containsExactly(embedding);
+
+        assertThat(in.readShort()).as("trailer").isEqualTo((short) -1);
+        assertThat(in.available()).isZero();
+    }
+
+    @Test
+    void encodesAnEmptyBatchAsHeaderAndTrailer() {
+        assertThat(VectorStoreBulkLoader.encode(List.of(), List.of(), objectMapper)).hasSize(11 + 4 + 4 + 2);
+    }
+}